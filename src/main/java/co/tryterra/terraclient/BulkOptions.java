@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient;
+
+import co.tryterra.terraclient.api.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Class representing the options used when fetching data for many users at once.
+ */
+public class BulkOptions {
+    private final int maxConcurrency;
+    private final RequestConfig requestConfig;
+
+    BulkOptions(Builder builder) {
+        this.maxConcurrency = builder.maxConcurrency;
+        this.requestConfig = builder.requestConfig;
+    }
+
+    /**
+     * Builder class for {@link BulkOptions} objects.
+     */
+    public static class Builder {
+        private int maxConcurrency = 16;
+        private RequestConfig requestConfig = null;
+
+        Builder() {}
+
+        /**
+         * Create a {@link BulkOptions} object from this builder.
+         *
+         * @return the created {@link BulkOptions} object
+         */
+        public BulkOptions build() {
+            return new BulkOptions(this);
+        }
+
+        /**
+         * Set the maximum number of users whose data will be fetched at the same time. Results that
+         * have not yet been requested by the subscriber also count towards this limit, so a slow
+         * subscriber slows down fetching rather than causing results to pile up in memory. If this
+         * is not specified, it will default to {@code 16}.
+         *
+         * @param value the maximum number of concurrent fetches
+         * @return this builder object for method chaining
+         */
+        public Builder maxConcurrency(int value) {
+            if (value < 1) {
+                throw new IllegalArgumentException("maxConcurrency must be at least 1");
+            }
+            this.maxConcurrency = value;
+            return this;
+        }
+
+        /**
+         * Set the per-request configuration used for the request made for each user. If this is not
+         * specified, the client's default {@link RequestConfig} will be used.
+         *
+         * @param value the per-request configuration to use
+         * @return this builder object for method chaining
+         */
+        public Builder requestConfig(RequestConfig value) {
+            this.requestConfig = Objects.requireNonNull(value, "requestConfig cannot be null");
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The maximum number of users whose data is fetched at the same time.
+     *
+     * @return the maximum number of concurrent fetches
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * The per-request configuration used for the request made for each user, or {@code null} if
+     * the client's default is used.
+     *
+     * @return the per-request configuration
+     */
+    @Nullable
+    public RequestConfig getRequestConfig() {
+        return requestConfig;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient;
+
+/**
+ * The groups of API endpoints which are isolated from each other by bulkheads, so that slow
+ * requests to one group can't use up the connections and threads needed by the others.
+ *
+ * @see TerraClientFactory.Builder#bulkhead(EndpointClass, int, int)
+ */
+public enum EndpointClass {
+    /**
+     * The data endpoints, such as {@code /activity} and {@code /sleep}, as well as {@code /athlete}.
+     */
+    DATA,
+    /**
+     * The endpoints returning information about users and providers, {@code /subscriptions},
+     * {@code /userInfo} and {@code /integrations}.
+     */
+    METADATA,
+    /**
+     * The authentication endpoints, such as {@code /auth/generateWidgetSession}.
+     */
+    AUTH
+}
@@ -16,7 +16,11 @@
 
 package co.tryterra.terraclient;
 
+import co.tryterra.terraclient.api.annotations.Nullable;
+
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 /**
  * Class representing request configuration parameters used when making calls to
@@ -26,11 +30,53 @@ public class RequestConfig {
     private final boolean toWebhook;
     private final Samples withSamples;
     private final boolean retryIfRateLimited;
+    private final ParseMode parseMode;
+    private final ParsePolicy parsePolicy;
+    private final Executor parseExecutor;
+    private final long inlineParseThreshold;
+    private final Duration rangeWindow;
+    private final int maxConcurrentWindows;
+    private final Duration minRangeWindow;
+    private final Duration maxRangeWindow;
+    private final long targetWindowBytes;
+    private final Duration targetWindowLatency;
+    private final int maxAttempts;
+    private final Duration retryBackoffBase;
+    private final Duration retryBackoffCap;
+    private final boolean retryJitter;
+    private final boolean respectRetryAfter;
+    private final boolean coalesce;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final Duration deadline;
+    private final double hedgePercentile;
+    private final Duration hedgeMinDelay;
 
     RequestConfig(Builder builder) {
         this.toWebhook = builder.toWebhook;
         this.withSamples = builder.withSamples;
         this.retryIfRateLimited = builder.retryIfRateLimited;
+        this.parseMode = builder.parseMode;
+        this.parsePolicy = builder.parsePolicy;
+        this.parseExecutor = builder.parseExecutor;
+        this.inlineParseThreshold = builder.inlineParseThreshold;
+        this.rangeWindow = builder.rangeWindow;
+        this.maxConcurrentWindows = builder.maxConcurrentWindows;
+        this.minRangeWindow = builder.minRangeWindow;
+        this.maxRangeWindow = builder.maxRangeWindow;
+        this.targetWindowBytes = builder.targetWindowBytes;
+        this.targetWindowLatency = builder.targetWindowLatency;
+        this.maxAttempts = builder.maxAttempts;
+        this.retryBackoffBase = builder.retryBackoffBase;
+        this.retryBackoffCap = builder.retryBackoffCap;
+        this.retryJitter = builder.retryJitter;
+        this.respectRetryAfter = builder.respectRetryAfter;
+        this.coalesce = builder.coalesce;
+        this.connectTimeout = builder.connectTimeout;
+        this.readTimeout = builder.readTimeout;
+        this.deadline = builder.deadline;
+        this.hedgePercentile = builder.hedgePercentile;
+        this.hedgeMinDelay = builder.hedgeMinDelay;
     }
 
     /**
@@ -52,6 +98,46 @@ public class RequestConfig {
         ACCOUNT_DEFAULT
     }
 
+    /**
+     * Enum representing the ways in which a data response body can be parsed.
+     */
+    public enum ParseMode {
+        /**
+         * Read the whole response body into a {@link com.fasterxml.jackson.databind.JsonNode} tree,
+         * then convert each item of the data array into its model class.
+         */
+        TREE,
+        /**
+         * Read the response body as a stream, binding each item of the data array directly into its
+         * model class without building a tree for it. This keeps peak memory usage much lower for
+         * large responses, but the data array will not be available through
+         * {@link co.tryterra.terraclient.api.TerraApiResponse#getRawBody()}.
+         */
+        STREAMING
+    }
+
+    /**
+     * Enum representing the threads on which a response body can be parsed.
+     */
+    public enum ParsePolicy {
+        /**
+         * Parse on the parse executor, which is the client's parse pool unless another executor has
+         * been set with {@link Builder#parseExecutor(Executor)}. This keeps parsing off the HTTP
+         * client's threads at the cost of a thread hop per response.
+         */
+        EXECUTOR,
+        /**
+         * Parse on the thread that received the response. This avoids the thread hop, which is
+         * cheaper for small responses, but a large response will hold up the HTTP client's thread.
+         */
+        INLINE,
+        /**
+         * Parse inline if the response declares a body no larger than
+         * {@link Builder#inlineParseThreshold(long)}, and on the parse executor otherwise.
+         */
+        SIZE_THRESHOLD
+    }
+
     /**
      * Builder class for {@link RequestConfig} instances.
      */
@@ -59,6 +145,27 @@ public class RequestConfig {
         private boolean toWebhook = true;
         private boolean retryIfRateLimited = false;
         private Samples withSamples = Samples.ACCOUNT_DEFAULT;
+        private ParseMode parseMode = ParseMode.TREE;
+        private ParsePolicy parsePolicy = ParsePolicy.EXECUTOR;
+        private Executor parseExecutor = null;
+        private long inlineParseThreshold = 16 * 1024;
+        private Duration rangeWindow = null;
+        private int maxConcurrentWindows = 4;
+        private Duration minRangeWindow = null;
+        private Duration maxRangeWindow = null;
+        private long targetWindowBytes = 4 * 1024 * 1024;
+        private Duration targetWindowLatency = Duration.ofSeconds(5);
+        private int maxAttempts = 1;
+        private Duration retryBackoffBase = Duration.ofMillis(500);
+        private Duration retryBackoffCap = Duration.ofSeconds(30);
+        private boolean retryJitter = true;
+        private boolean respectRetryAfter = true;
+        private boolean coalesce = false;
+        private Duration connectTimeout = null;
+        private Duration readTimeout = null;
+        private Duration deadline = null;
+        private double hedgePercentile = 0;
+        private Duration hedgeMinDelay = null;
 
         Builder() {}
 
@@ -107,6 +214,297 @@ public class RequestConfig {
             this.withSamples = value;
             return this;
         }
+
+        /**
+         * Set how the response body of data requests will be parsed. If this is not specified, it
+         * will default to {@link ParseMode#TREE}.
+         *
+         * @param value {@link ParseMode} enum value to parse response bodies with
+         * @return this builder object for method chaining
+         */
+        public Builder parseMode(ParseMode value) {
+            Objects.requireNonNull(value, "Value must be an item from the ParseMode enum");
+            this.parseMode = value;
+            return this;
+        }
+
+        /**
+         * Set which thread the response body will be parsed on. If this is not specified, it will
+         * default to {@link ParsePolicy#EXECUTOR}.
+         *
+         * @param value {@link ParsePolicy} enum value to choose the parsing thread with
+         * @return this builder object for method chaining
+         */
+        public Builder parsePolicy(ParsePolicy value) {
+            Objects.requireNonNull(value, "Value must be an item from the ParsePolicy enum");
+            this.parsePolicy = value;
+            return this;
+        }
+
+        /**
+         * Set the executor that response bodies will be parsed on when they are not parsed inline.
+         * If this is not specified, the client's parse pool will be used.
+         *
+         * @param value the executor to parse responses on
+         * @return this builder object for method chaining
+         */
+        public Builder parseExecutor(Executor value) {
+            this.parseExecutor = Objects.requireNonNull(value, "parseExecutor cannot be null");
+            return this;
+        }
+
+        /**
+         * Set the largest declared response body size, in bytes, that will be parsed inline when
+         * using {@link ParsePolicy#SIZE_THRESHOLD}. Responses without a declared size are always
+         * parsed on the parse executor. If this is not specified, it will default to 16 KiB.
+         *
+         * @param value the largest body size to parse inline
+         * @return this builder object for method chaining
+         */
+        public Builder inlineParseThreshold(long value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("inlineParseThreshold cannot be negative");
+            }
+            this.inlineParseThreshold = value;
+            return this;
+        }
+
+        /**
+         * Set the size of the windows that data requests for a time range will be split into. Each
+         * window will be fetched as a separate request, and the results merged back together into
+         * a single response, ordered by start time and with duplicate items removed. If this is not
+         * specified, the whole range will be fetched in a single request.
+         * <br>
+         * Splitting only applies to requests which have an end time.
+         *
+         * @param value the size of each window, or {@code null} to disable splitting
+         * @return this builder object for method chaining
+         */
+        public Builder rangeWindow(Duration value) {
+            if (value != null && (value.isNegative() || value.isZero())) {
+                throw new IllegalArgumentException("rangeWindow must be positive");
+            }
+            this.rangeWindow = value;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of windows that will be fetched concurrently when a time range is
+         * split up using {@link #rangeWindow(Duration)}. If this is not specified, it will default to {@code 4}.
+         *
+         * @param value the maximum number of concurrent window requests
+         * @return this builder object for method chaining
+         */
+        public Builder maxConcurrentWindows(int value) {
+            if (value < 1) {
+                throw new IllegalArgumentException("maxConcurrentWindows must be at least 1");
+            }
+            this.maxConcurrentWindows = value;
+            return this;
+        }
+
+        /**
+         * Enable adaptive sizing of the windows that data requests for a time range are split into.
+         * The size of each new window will be grown or shrunk based on the body size and latency of
+         * the windows fetched before it, aiming for the targets set by
+         * {@link #targetWindowSize(long, Duration)}. Windows which time out or fail with a 5xx response
+         * will be split in half and fetched again, as long as the halves are no smaller than
+         * {@code minWindow}.
+         * <br>
+         * If {@link #rangeWindow(Duration)} is set, it will be used as the size of the first window,
+         * otherwise the first window will be 7 days long.
+         *
+         * @param minWindow the smallest window that will be requested
+         * @param maxWindow the largest window that will be requested
+         * @return this builder object for method chaining
+         */
+        public Builder adaptiveRangeWindow(Duration minWindow, Duration maxWindow) {
+            Objects.requireNonNull(minWindow, "minWindow cannot be null");
+            Objects.requireNonNull(maxWindow, "maxWindow cannot be null");
+            if (minWindow.isNegative() || minWindow.isZero()) {
+                throw new IllegalArgumentException("minWindow must be positive");
+            }
+            if (maxWindow.compareTo(minWindow) < 0) {
+                throw new IllegalArgumentException("maxWindow cannot be smaller than minWindow");
+            }
+            this.minRangeWindow = minWindow;
+            this.maxRangeWindow = maxWindow;
+            return this;
+        }
+
+        /**
+         * Set the response body size and latency that adaptively sized windows will aim for. If this
+         * is not specified, it will default to 4 MiB and 5 seconds.
+         *
+         * @param bytes the target response body size of a single window, in bytes
+         * @param latency the target latency of a single window
+         * @return this builder object for method chaining
+         */
+        public Builder targetWindowSize(long bytes, Duration latency) {
+            Objects.requireNonNull(latency, "latency cannot be null");
+            if (bytes < 1) {
+                throw new IllegalArgumentException("bytes must be at least 1");
+            }
+            if (latency.isNegative() || latency.isZero()) {
+                throw new IllegalArgumentException("latency must be positive");
+            }
+            this.targetWindowBytes = bytes;
+            this.targetWindowLatency = latency;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of times a request will be attempted by the client. Requests are
+         * retried if they are rate limited ({@code 429}), if the API is temporarily unavailable
+         * ({@code 502}, {@code 503} or {@code 504}), or if a non-{@code POST} request fails with a
+         * network error. If this is not specified, it will default to {@code 1} (no retries).
+         * <br>
+         * This is independent of {@link #retryIfRateLimited(boolean)}, which asks the API to retry
+         * requests to the provider on its side.
+         *
+         * @param value the maximum number of attempts, including the first
+         * @return this builder object for method chaining
+         */
+        public Builder maxAttempts(int value) {
+            if (value < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1");
+            }
+            this.maxAttempts = value;
+            return this;
+        }
+
+        /**
+         * Set the exponential backoff used between attempts of a request. The delay before the
+         * {@code n}th retry is {@code base * 2^(n - 1)}, limited to {@code cap}. If this is not
+         * specified, it will default to a base of 500 milliseconds and a cap of 30 seconds.
+         *
+         * @param base the delay before the first retry
+         * @param cap the maximum delay between attempts
+         * @return this builder object for method chaining
+         */
+        public Builder retryBackoff(Duration base, Duration cap) {
+            Objects.requireNonNull(base, "base cannot be null");
+            Objects.requireNonNull(cap, "cap cannot be null");
+            if (base.isNegative() || cap.compareTo(base) < 0) {
+                throw new IllegalArgumentException("base cannot be negative and cap cannot be smaller than base");
+            }
+            this.retryBackoffBase = base;
+            this.retryBackoffCap = cap;
+            return this;
+        }
+
+        /**
+         * Set whether the backoff delay will be randomised between zero and its computed value, so
+         * that clients which were rate limited together do not all retry at the same moment. If this
+         * is not specified, it will default to {@code true}.
+         *
+         * @param value whether to apply jitter to the backoff delay
+         * @return this builder object for method chaining
+         */
+        public Builder retryJitter(boolean value) {
+            this.retryJitter = value;
+            return this;
+        }
+
+        /**
+         * Set whether the {@code Retry-After} and {@code RateLimit-Reset} response headers will be
+         * honoured when retrying. If they are, a retry will never be sent before the time the API asked
+         * for, and the request will not be retried at all if that time is further away than the backoff cap.
+         * If this is not specified, it will default to {@code true}.
+         *
+         * @param value whether to honour rate limit headers
+         * @return this builder object for method chaining
+         */
+        public Builder respectRetryAfter(boolean value) {
+            this.respectRetryAfter = value;
+            return this;
+        }
+
+        /**
+         * Set whether the request may share its HTTP exchange with an identical request that is
+         * already in flight from the same client, rather than being sent again. Data requests that
+         * return their data in the response body may also be served from an in-flight request for a
+         * wider time range of the same data type and user. Coalesced callers receive the same
+         * response, so its parsed data can't be modified and its raw body should be treated as
+         * read-only. If this is not specified, it will default to {@code false}.
+         *
+         * @param value whether to coalesce the request with in-flight requests
+         * @return this builder object for method chaining
+         */
+        public Builder coalesce(boolean value) {
+            this.coalesce = value;
+            return this;
+        }
+
+        /**
+         * Set the timeout for establishing a connection to the API, overriding the HTTP client's
+         * connect timeout for this request. If this is not specified, the HTTP client's timeout is used.
+         *
+         * @param value the connect timeout
+         * @return this builder object for method chaining
+         */
+        public Builder connectTimeout(Duration value) {
+            this.connectTimeout = requirePositive(value, "connectTimeout");
+            return this;
+        }
+
+        /**
+         * Set the maximum time to wait for data on the connection once it has been established,
+         * overriding the HTTP client's read timeout for this request. If this is not specified, the
+         * HTTP client's timeout is used.
+         *
+         * @param value the read timeout
+         * @return this builder object for method chaining
+         */
+        public Builder readTimeout(Duration value) {
+            this.readTimeout = requirePositive(value, "readTimeout");
+            return this;
+        }
+
+        /**
+         * Set the total time budget for the request, covering rate limiting, every attempt and
+         * backoff delay, and parsing. If the budget runs out, the returned future fails with a
+         * {@link co.tryterra.terraclient.exceptions.DeadlineExceededException} and any outstanding
+         * HTTP call is cancelled. For split time ranges, the budget covers every window. If this is
+         * not specified, requests have no total time limit.
+         *
+         * @param value the total time budget
+         * @return this builder object for method chaining
+         */
+        public Builder deadline(Duration value) {
+            this.deadline = requirePositive(value, "deadline");
+            return this;
+        }
+
+        /**
+         * Enable hedging for GET requests. If no response has arrived once the given percentile of
+         * recent response times for the same endpoint has passed, an identical second request is
+         * sent and whichever response arrives first is used. The other request is cancelled. The
+         * delay is never shorter than {@code minDelay}, which is also used until enough response
+         * times have been recorded. Hedged requests count against the client's retry budget, so
+         * that hedging can't double the load on an API that is already slow. If this is not
+         * specified, requests are not hedged.
+         *
+         * @param percentile the percentile of response times to hedge after, e.g. {@code 0.95}
+         * @param minDelay the minimum time to wait before hedging
+         * @return this builder object for method chaining
+         */
+        public Builder hedge(double percentile, Duration minDelay) {
+            if (!(percentile > 0 && percentile < 1)) {
+                throw new IllegalArgumentException("percentile must be between 0 and 1");
+            }
+            this.hedgePercentile = percentile;
+            this.hedgeMinDelay = requirePositive(minDelay, "minDelay");
+            return this;
+        }
+
+        private static Duration requirePositive(Duration value, String name) {
+            Objects.requireNonNull(value, name + " cannot be null");
+            if (value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException(name + " must be positive");
+            }
+            return value;
+        }
     }
 
     public static Builder builder() {
@@ -149,4 +547,218 @@ public class RequestConfig {
     public boolean isRetryIfRateLimited(){
         return retryIfRateLimited;
     }
+
+    /**
+     * The way in which the response body of data requests will be parsed.
+     *
+     * @return the parse mode for data responses
+     */
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+
+    /**
+     * The policy deciding which thread the response body will be parsed on.
+     *
+     * @return the parse policy
+     */
+    public ParsePolicy getParsePolicy() {
+        return parsePolicy;
+    }
+
+    /**
+     * The executor that response bodies are parsed on when not parsed inline, or {@code null} if
+     * the client's parse pool is used.
+     *
+     * @return the parse executor
+     */
+    @Nullable
+    public Executor getParseExecutor() {
+        return parseExecutor;
+    }
+
+    /**
+     * The largest declared response body size, in bytes, that is parsed inline when using
+     * {@link ParsePolicy#SIZE_THRESHOLD}.
+     *
+     * @return the inline parse threshold
+     */
+    public long getInlineParseThreshold() {
+        return inlineParseThreshold;
+    }
+
+    /**
+     * The size of the windows that data requests for a time range will be split into.
+     *
+     * @return the window size, or {@code null} if ranges are fetched in a single request
+     */
+    public Duration getRangeWindow() {
+        return rangeWindow;
+    }
+
+    /**
+     * The maximum number of windows of a split time range that will be fetched concurrently.
+     *
+     * @return the maximum number of concurrent window requests
+     */
+    public int getMaxConcurrentWindows() {
+        return maxConcurrentWindows;
+    }
+
+    /**
+     * Whether the windows that time range requests are split into are sized adaptively.
+     *
+     * @return whether adaptive window sizing is enabled
+     */
+    public boolean isAdaptiveRangeWindow() {
+        return minRangeWindow != null;
+    }
+
+    /**
+     * The smallest window that will be requested when adaptive window sizing is enabled.
+     *
+     * @return the minimum window size, or {@code null} if adaptive sizing is disabled
+     */
+    public Duration getMinRangeWindow() {
+        return minRangeWindow;
+    }
+
+    /**
+     * The largest window that will be requested when adaptive window sizing is enabled.
+     *
+     * @return the maximum window size, or {@code null} if adaptive sizing is disabled
+     */
+    public Duration getMaxRangeWindow() {
+        return maxRangeWindow;
+    }
+
+    /**
+     * The response body size, in bytes, that adaptively sized windows aim for.
+     *
+     * @return the target body size of a window
+     */
+    public long getTargetWindowBytes() {
+        return targetWindowBytes;
+    }
+
+    /**
+     * The latency that adaptively sized windows aim for.
+     *
+     * @return the target latency of a window
+     */
+    public Duration getTargetWindowLatency() {
+        return targetWindowLatency;
+    }
+
+    /**
+     * The maximum number of times a request will be attempted by the client.
+     *
+     * @return the maximum number of attempts, including the first
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * The delay before the first retry of a request.
+     *
+     * @return the backoff base
+     */
+    public Duration getRetryBackoffBase() {
+        return retryBackoffBase;
+    }
+
+    /**
+     * The maximum delay between attempts of a request.
+     *
+     * @return the backoff cap
+     */
+    public Duration getRetryBackoffCap() {
+        return retryBackoffCap;
+    }
+
+    /**
+     * Whether the backoff delay between attempts is randomised.
+     *
+     * @return whether jitter is applied
+     */
+    public boolean isRetryJitter() {
+        return retryJitter;
+    }
+
+    /**
+     * Whether the {@code Retry-After} and {@code RateLimit-Reset} response headers are honoured when retrying.
+     *
+     * @return whether rate limit headers are honoured
+     */
+    public boolean isRespectRetryAfter() {
+        return respectRetryAfter;
+    }
+
+    /**
+     * Whether the request may share its HTTP exchange with an equivalent in-flight request.
+     *
+     * @return whether the request is coalesced
+     */
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    /**
+     * The connect timeout for this request, or {@code null} if the HTTP client's timeout is used.
+     *
+     * @return the connect timeout
+     */
+    @Nullable
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * The read timeout for this request, or {@code null} if the HTTP client's timeout is used.
+     *
+     * @return the read timeout
+     */
+    @Nullable
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * The total time budget for this request, or {@code null} if there is no total time limit.
+     *
+     * @return the total time budget
+     */
+    @Nullable
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Whether GET requests are hedged.
+     *
+     * @return whether requests are hedged
+     */
+    public boolean isHedging() {
+        return hedgeMinDelay != null;
+    }
+
+    /**
+     * The percentile of recent response times after which a hedged request is sent.
+     *
+     * @return the hedging percentile
+     */
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * The minimum time to wait before sending a hedged request, or {@code null} if requests are not hedged.
+     *
+     * @return the minimum hedging delay
+     */
+    @Nullable
+    public Duration getHedgeMinDelay() {
+        return hedgeMinDelay;
+    }
 }
@@ -17,7 +17,33 @@
 package co.tryterra.terraclient;
 
 import co.tryterra.terraclient.api.TerraClientV2;
+import co.tryterra.terraclient.api.TerraClientV2Async;
+import co.tryterra.terraclient.api.annotations.Nullable;
+import co.tryterra.terraclient.impl.v2.AdaptiveConcurrencyLimiter;
+import co.tryterra.terraclient.impl.v2.Bulkheads;
+import co.tryterra.terraclient.impl.v2.CircuitBreaker;
+import co.tryterra.terraclient.impl.v2.ClientResources;
+import co.tryterra.terraclient.impl.v2.RateLimiter;
+import co.tryterra.terraclient.impl.v2.RestClientV2;
+import co.tryterra.terraclient.impl.v2.RetryBudget;
 import co.tryterra.terraclient.impl.v2.TerraClientV2Impl;
+import co.tryterra.terraclient.transport.CachingDns;
+import co.tryterra.terraclient.transport.ContentDecoder;
+import co.tryterra.terraclient.transport.HttpTransport;
+import co.tryterra.terraclient.transport.OkHttpTransport;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A factory for creating a Terra client instance, which will be used for all
@@ -77,4 +103,660 @@ public class TerraClientFactory {
     public static TerraClientV2 getClientV2(String xApiKey, String devId, String apiUrl, RequestConfig requestConfig) {
         return new TerraClientV2Impl(xApiKey, devId, apiUrl, requestConfig);
     }
+
+    /**
+     * Creates a new {@link TerraClientV2Async} instance using the authentication information
+     * provided, as well as the default request config. Requests will be made
+     * to the default API base URL ({@code https://api.tryterra.co/v2}).
+     *
+     * @param xApiKey your Terra API key
+     * @param devId your Terra developer ID
+     * @return the created instance
+     */
+    public static TerraClientV2Async getAsyncClientV2(String xApiKey, String devId) {
+        return new TerraClientV2Impl(xApiKey, devId, null, RequestConfig.builder().build());
+    }
+
+    /**
+     * Creates a new {@link TerraClientV2Async} instance using the authentication information
+     * provided, as well as the given request config. Requests will be made
+     * to the default API base URL ({@code https://api.tryterra.co/v2}).
+     *
+     * @param xApiKey your Terra API key
+     * @param devId your Terra developer ID
+     * @param requestConfig the default per-request configuration to use
+     * @return the created instance
+     */
+    public static TerraClientV2Async getAsyncClientV2(String xApiKey, String devId, RequestConfig requestConfig) {
+        return new TerraClientV2Impl(xApiKey, devId, null, requestConfig);
+    }
+
+    /**
+     * Creates a new {@link TerraClientV2Async} instance using the authentication information
+     * provided, as well as the given request config. Requests will be made to the provided API base URL.
+     *
+     * @param xApiKey your Terra API key
+     * @param devId your Terra developer ID
+     * @param apiUrl the API base url to make requests to
+     * @param requestConfig the default per-request configuration to use
+     * @return the created instance
+     */
+    public static TerraClientV2Async getAsyncClientV2(String xApiKey, String devId, String apiUrl, RequestConfig requestConfig) {
+        return new TerraClientV2Impl(xApiKey, devId, apiUrl, requestConfig);
+    }
+
+    /**
+     * Creates a new {@link Builder} that can be used to configure a transport stack (HTTP client,
+     * dispatcher limits, connection pool and parse executor) which is then shared by every client
+     * created from it.
+     *
+     * @return the created builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder for {@link TerraClientV2} instances which share a single set of transport resources.
+     * <br>
+     * The resources are created when the first client is requested from the builder, and every
+     * subsequent client will reuse them. Once this has happened the transport settings can no longer
+     * be changed, and attempting to do so will throw an {@link IllegalStateException}.
+     */
+    public static class Builder {
+        private OkHttpClient httpClient;
+        private HttpTransport transport;
+        private Integer maxRequests;
+        private Integer maxRequestsPerHost;
+        private Integer connectionPoolSize;
+        private Duration keepAlive;
+        private Duration dnsCacheTtl;
+        private int warmUpConnections = 0;
+        private ExecutorService parseExecutor;
+        private boolean virtualThreads = false;
+        private RetryBudget retryBudget;
+        private final Map<String, RateLimiter.Limit> endpointRateLimits = new HashMap<>();
+        private RateLimiter.Limit providerRateLimit;
+        private final Map<String, Duration> cacheTtls = new HashMap<>();
+        private Integer cacheMaxEntries;
+        private final Map<EndpointClass, Bulkheads.Limit> bulkheads = new EnumMap<>(EndpointClass.class);
+        private boolean defaultDataBulkhead = false;
+        private CircuitBreaker.Config circuitBreaker;
+        private AdaptiveConcurrencyLimiter.Config adaptiveConcurrency;
+        private final List<ContentDecoder> contentDecoders = new ArrayList<>();
+        private String apiUrl;
+        private RequestConfig requestConfig = RequestConfig.builder().build();
+
+        private ClientResources resources;
+
+        Builder() {}
+
+        private void checkNotBuilt() {
+            if (resources != null) {
+                throw new IllegalStateException("Transport settings cannot be changed after a client has been created");
+            }
+        }
+
+        /**
+         * Set the {@link OkHttpClient} that requests will be made with. Its connection pool and
+         * dispatcher will be shared with the created clients unless they are overridden by
+         * any of the other settings of this builder. If this is not specified, a new client will be created.
+         *
+         * @param value the HTTP client to use
+         * @return this builder object for method chaining
+         */
+        public Builder httpClient(OkHttpClient value) {
+            checkNotBuilt();
+            this.httpClient = Objects.requireNonNull(value, "httpClient cannot be null");
+            return this;
+        }
+
+        /**
+         * Set the {@link HttpTransport} that requests will be sent through, such as a
+         * {@link co.tryterra.terraclient.transport.JdkHttpTransport} or a custom implementation. If
+         * this is set, the OkHttp client settings of this builder are ignored. If this is not specified,
+         * an {@link co.tryterra.terraclient.transport.OkHttpTransport} using the OkHttp client settings
+         * of this builder will be created.
+         *
+         * @param value the HTTP transport to use
+         * @return this builder object for method chaining
+         */
+        public Builder transport(HttpTransport value) {
+            checkNotBuilt();
+            this.transport = Objects.requireNonNull(value, "transport cannot be null");
+            return this;
+        }
+
+        /**
+         * Set the maximum number of requests that can be executing concurrently across all created
+         * clients. If this is not specified, it will default to the OkHttp default of {@code 64}.
+         *
+         * @param value the maximum number of concurrent requests
+         * @return this builder object for method chaining
+         */
+        public Builder maxRequests(int value) {
+            checkNotBuilt();
+            if (value < 1) {
+                throw new IllegalArgumentException("maxRequests must be at least 1");
+            }
+            this.maxRequests = value;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of requests that can be executing concurrently against a single host.
+         * If this is not specified, it will default to the OkHttp default of {@code 5}.
+         *
+         * @param value the maximum number of concurrent requests per host
+         * @return this builder object for method chaining
+         */
+        public Builder maxRequestsPerHost(int value) {
+            checkNotBuilt();
+            if (value < 1) {
+                throw new IllegalArgumentException("maxRequestsPerHost must be at least 1");
+            }
+            this.maxRequestsPerHost = value;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of idle connections to keep in the connection pool. If this is
+         * not specified, it will default to the OkHttp default of {@code 5}.
+         *
+         * @param value the maximum number of idle connections
+         * @return this builder object for method chaining
+         */
+        public Builder connectionPoolSize(int value) {
+            checkNotBuilt();
+            if (value < 0) {
+                throw new IllegalArgumentException("connectionPoolSize cannot be negative");
+            }
+            this.connectionPoolSize = value;
+            return this;
+        }
+
+        /**
+         * Set how long idle connections will be kept in the connection pool before being evicted.
+         * If this is not specified, it will default to the OkHttp default of 5 minutes.
+         *
+         * @param value the keep-alive duration
+         * @return this builder object for method chaining
+         */
+        public Builder keepAlive(Duration value) {
+            checkNotBuilt();
+            Objects.requireNonNull(value, "keepAlive cannot be null");
+            if (value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException("keepAlive must be positive");
+            }
+            this.keepAlive = value;
+            return this;
+        }
+
+        /**
+         * Cache the addresses of the API host for the given time, so that new connections don't each
+         * wait for a DNS lookup. If this is not specified, every new connection resolves the host
+         * through the system resolver, which may have its own cache.
+         *
+         * @param value how long resolved addresses are cached for
+         * @return this builder object for method chaining
+         */
+        public Builder dnsCacheTtl(Duration value) {
+            checkNotBuilt();
+            Objects.requireNonNull(value, "dnsCacheTtl cannot be null");
+            if (value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException("dnsCacheTtl must be positive");
+            }
+            this.dnsCacheTtl = value;
+            return this;
+        }
+
+        /**
+         * Open the given number of connections to the API in the background when the first client is
+         * created, so that the first requests after startup don't pay for DNS, TCP and TLS setup.
+         * Every client created by this builder shares the same connections, so they are only opened once.
+         * If the connection pool size has not been set, the pool will keep at least this many idle
+         * connections. Over HTTP/2, which OkHttp negotiates with the API by default, a single
+         * connection is opened and every request is multiplexed over it. If this is not specified,
+         * connections are opened when the first requests are made.
+         *
+         * @see TerraClientV2#warmUp(int)
+         *
+         * @param value the number of connections to open
+         * @return this builder object for method chaining
+         */
+        public Builder warmUpConnections(int value) {
+            checkNotBuilt();
+            if (value < 0) {
+                throw new IllegalArgumentException("warmUpConnections cannot be negative");
+            }
+            this.warmUpConnections = value;
+            return this;
+        }
+
+        /**
+         * Set the executor that response bodies will be parsed on. If this is not specified, a fixed
+         * pool with four threads per available processor will be created and shared between all
+         * created clients.
+         *
+         * @param value the executor to parse responses on
+         * @return this builder object for method chaining
+         */
+        public Builder parseExecutor(ExecutorService value) {
+            checkNotBuilt();
+            this.parseExecutor = Objects.requireNonNull(value, "parseExecutor cannot be null");
+            return this;
+        }
+
+        /**
+         * Set whether response bodies will be parsed on virtual threads, with each response parsed
+         * on its own thread, when the running JDK supports them (JDK 21 and above). On older JDKs the
+         * default fixed pool is used instead. This has no effect if an executor is set with
+         * {@link #parseExecutor(ExecutorService)}. If this is not specified, it will default to {@code false}.
+         *
+         * @see TerraExecutors#newVirtualThreadExecutor()
+         *
+         * @param value whether to parse responses on virtual threads
+         * @return this builder object for method chaining
+         */
+        public Builder virtualThreads(boolean value) {
+            checkNotBuilt();
+            this.virtualThreads = value;
+            return this;
+        }
+
+        /**
+         * Set the budget that limits how many retries can be sent by created clients, relative to the
+         * number of requests they send, over a sliding window of ten seconds. The budget is shared by
+         * all created clients, so that an outage cannot turn into a storm of retries. If this is not
+         * specified, it will default to one retry for every five requests plus ten retries per second.
+         *
+         * @see RequestConfig.Builder#maxAttempts(int)
+         *
+         * @param ratio the number of retries allowed per request
+         * @param minRetriesPerSecond the number of retries that are always allowed each second
+         * @return this builder object for method chaining
+         */
+        public Builder retryBudget(double ratio, int minRetriesPerSecond) {
+            checkNotBuilt();
+            this.retryBudget = new RetryBudget(ratio, minRetriesPerSecond);
+            return this;
+        }
+
+        /**
+         * Set a client-side rate limit for requests to a single endpoint, such as {@code /activity}.
+         * Each developer ID gets its own token bucket for the endpoint, which is shared by all created
+         * clients. Requests over the limit are delayed without blocking the calling thread until a
+         * token becomes available, rather than being sent and rejected by the API.
+         *
+         * @see TerraClientV2#getStats()
+         *
+         * @param endpoint the endpoint path relative to the API base URL, e.g. {@code /activity}
+         * @param permitsPerSecond the sustained number of requests allowed per second
+         * @param burst the number of requests that can be sent at once before the limit applies
+         * @return this builder object for method chaining
+         */
+        public Builder rateLimit(String endpoint, double permitsPerSecond, int burst) {
+            checkNotBuilt();
+            Objects.requireNonNull(endpoint, "endpoint cannot be null");
+            this.endpointRateLimits.put(endpoint, new RateLimiter.Limit(permitsPerSecond, burst));
+            return this;
+        }
+
+        /**
+         * Set a client-side rate limit for requests made on behalf of users of a single provider. Each
+         * developer ID and provider pair gets its own token bucket, which is shared by all created
+         * clients. This limit is applied in addition to any endpoint limits, and only to requests
+         * for which the user's provider is known.
+         *
+         * @param permitsPerSecond the sustained number of requests allowed per second
+         * @param burst the number of requests that can be sent at once before the limit applies
+         * @return this builder object for method chaining
+         */
+        public Builder providerRateLimit(double permitsPerSecond, int burst) {
+            checkNotBuilt();
+            this.providerRateLimit = new RateLimiter.Limit(permitsPerSecond, burst);
+            return this;
+        }
+
+        /**
+         * Enable caching of successful responses from a metadata endpoint for the given time. The
+         * endpoints that can be cached are {@code /userInfo} ({@link TerraClientV2#getUser(String)}),
+         * {@code /subscriptions} ({@link TerraClientV2#getAllUsers()}), {@code /integrations}
+         * ({@link TerraClientV2#listProviders()}) and {@code /athlete}
+         * ({@link TerraClientV2#getAthleteForUser(co.tryterra.terraclient.api.PartialUser)}, only when
+         * the data is not sent to the webhook). Cache hits return the same parsed response object.
+         * Once an entry is 80% of the way to expiring, the next hit also refreshes it in the background.
+         * The cache is shared by all created clients, and is cleared when a user is deauthenticated.
+         *
+         * @param endpoint the endpoint path relative to the API base URL, e.g. {@code /userInfo}
+         * @param ttl how long responses are cached for
+         * @return this builder object for method chaining
+         */
+        public Builder cacheTtl(String endpoint, Duration ttl) {
+            checkNotBuilt();
+            Objects.requireNonNull(endpoint, "endpoint cannot be null");
+            Objects.requireNonNull(ttl, "ttl cannot be null");
+            if (ttl.isNegative() || ttl.isZero()) {
+                throw new IllegalArgumentException("ttl must be positive");
+            }
+            this.cacheTtls.put(endpoint, ttl);
+            return this;
+        }
+
+        /**
+         * Set the maximum number of responses that will be cached, after which the least recently
+         * used responses are evicted. If this is not specified, it will default to {@code 1000}.
+         *
+         * @see #cacheTtl(String, Duration)
+         *
+         * @param value the maximum number of cached responses
+         * @return this builder object for method chaining
+         */
+        public Builder cacheMaxEntries(int value) {
+            checkNotBuilt();
+            if (value < 1) {
+                throw new IllegalArgumentException("cacheMaxEntries must be at least 1");
+            }
+            this.cacheMaxEntries = value;
+            return this;
+        }
+
+        /**
+         * Set the bulkhead for a group of endpoints, which limits how many requests to them can run
+         * at once across all created clients. A request holds its slot until its response has been
+         * parsed, and requests beyond the limit wait in a queue. Once the queue is full, further
+         * requests fail with a {@link co.tryterra.terraclient.exceptions.BulkheadFullException}
+         * without being sent. If this is not specified, requests are not limited.
+         *
+         * @see #dataBulkhead()
+         *
+         * @param endpointClass the group of endpoints to limit
+         * @param maxConcurrent the maximum number of requests that can run at once
+         * @param maxQueued the maximum number of requests that can wait for a slot
+         * @return this builder object for method chaining
+         */
+        public Builder bulkhead(EndpointClass endpointClass, int maxConcurrent, int maxQueued) {
+            checkNotBuilt();
+            Objects.requireNonNull(endpointClass, "endpointClass cannot be null");
+            this.bulkheads.put(endpointClass, new Bulkheads.Limit(maxConcurrent, maxQueued));
+            return this;
+        }
+
+        /**
+         * Limit data requests so that they can use three quarters of the dispatcher's per-host
+         * request limit, with an unbounded queue, so that they can never hold up metadata and
+         * authentication requests. A bulkhead set for data requests with
+         * {@link #bulkhead(EndpointClass, int, int)} takes precedence over this.
+         *
+         * @return this builder object for method chaining
+         */
+        public Builder dataBulkhead() {
+            checkNotBuilt();
+            this.defaultDataBulkhead = true;
+            return this;
+        }
+
+        /**
+         * Enable circuit breakers which open a circuit for 30 seconds once at least half of its
+         * last 20 requests have failed.
+         *
+         * @see #circuitBreaker(double, int, int, Duration)
+         *
+         * @return this builder object for method chaining
+         */
+        public Builder circuitBreaker() {
+            checkNotBuilt();
+            this.circuitBreaker = ClientResources.createDefaultCircuitBreakerConfig();
+            return this;
+        }
+
+        /**
+         * Enable circuit breakers, which are kept for each endpoint and provider pair and
+         * shared by all created clients. A circuit opens once enough of its most recent requests
+         * have failed with a connection error or a 5xx response, after which requests through it
+         * fail with a {@link co.tryterra.terraclient.exceptions.CircuitOpenException} without being
+         * sent. Once the circuit has been open for the given time, a single probe request is let
+         * through, and the circuit closes if it succeeds or stays open for another period if it
+         * fails. Requests for users whose provider is not known, such as those created with
+         * {@link TerraClientV2#userFromId(String)}, don't go through a circuit. If this is not
+         * specified, no circuit breakers are used.
+         *
+         * @param failureRateThreshold the fraction of recent requests that must have failed for the circuit to open
+         * @param windowSize the number of recent requests that the failure rate is computed over
+         * @param minimumCalls the number of requests that must have been made before the circuit can open
+         * @param openDuration how long the circuit stays open before a probe request is let through
+         * @return this builder object for method chaining
+         */
+        public Builder circuitBreaker(double failureRateThreshold, int windowSize, int minimumCalls, Duration openDuration) {
+            checkNotBuilt();
+            Objects.requireNonNull(openDuration, "openDuration cannot be null");
+            this.circuitBreaker = new CircuitBreaker.Config(failureRateThreshold, windowSize, minimumCalls, openDuration);
+            return this;
+        }
+
+        /**
+         * Enable adaptive limiting of the number of requests in flight across all created clients,
+         * starting at {@code 20} requests and staying between {@code 1} and {@code 200}.
+         *
+         * @see #adaptiveConcurrency(int, int, int)
+         *
+         * @return this builder object for method chaining
+         */
+        public Builder adaptiveConcurrency() {
+            return adaptiveConcurrency(20, 1, 200);
+        }
+
+        /**
+         * Enable adaptive limiting of the number of requests in flight across all created clients.
+         * The limit grows while response times stay close to the fastest recently seen, and shrinks
+         * once responses slow down or the API starts rate limiting or failing requests, so that large
+         * backfills settle at the highest throughput the API will sustain without manual tuning.
+         * Requests over the limit wait without blocking the calling thread. Requests that the API
+         * holds and retries itself because of {@link RequestConfig.Builder#retryIfRateLimited(boolean)}
+         * are seen as slower responses, and shrink the limit in the same way as rejections.
+         * <br>
+         * Unless the dispatcher limits have been set on this builder or an HTTP client has been
+         * provided, the dispatcher will allow up to {@code maxLimit} concurrent requests so that it
+         * does not cap the limit. The current limit is reported by {@link TerraClientV2#getStats()}.
+         *
+         * @param initialLimit the limit to start with
+         * @param minLimit the lowest the limit can go
+         * @param maxLimit the highest the limit can go
+         * @return this builder object for method chaining
+         */
+        public Builder adaptiveConcurrency(int initialLimit, int minLimit, int maxLimit) {
+            checkNotBuilt();
+            this.adaptiveConcurrency = new AdaptiveConcurrencyLimiter.Config(initialLimit, minLimit, maxLimit);
+            return this;
+        }
+
+        /**
+         * Register a decoder for a content coding that the API can compress responses with, in
+         * addition to {@code gzip}, which is always supported. Every registered coding is advertised
+         * to the API, and responses are decompressed as they are parsed rather than being buffered.
+         * Decoders for codings such as {@code br} or {@code zstd} can be provided with a library of
+         * your choice. A decoder for a coding that is already registered replaces it.
+         * <br>
+         * The number of bytes received and decoded for each endpoint is reported by
+         * {@link TerraClientV2#getStats()}.
+         *
+         * @param value the decoder to register
+         * @return this builder object for method chaining
+         */
+        public Builder contentDecoder(ContentDecoder value) {
+            checkNotBuilt();
+            this.contentDecoders.add(Objects.requireNonNull(value, "value cannot be null"));
+            return this;
+        }
+
+        /**
+         * Set the API base URL that created clients will make requests to. If this is not specified,
+         * it will default to {@code https://api.tryterra.co/v2}.
+         *
+         * @param value the API base url to make requests to
+         * @return this builder object for method chaining
+         */
+        public Builder apiUrl(@Nullable String value) {
+            this.apiUrl = value;
+            return this;
+        }
+
+        /**
+         * Set the default per-request configuration for created clients. If this is not specified,
+         * the default {@link RequestConfig} will be used.
+         *
+         * @param value the default per-request configuration to use
+         * @return this builder object for method chaining
+         */
+        public Builder requestConfig(RequestConfig value) {
+            this.requestConfig = Objects.requireNonNull(value, "requestConfig cannot be null");
+            return this;
+        }
+
+        synchronized ClientResources getResources() {
+            // Resources are shut down with the last client using them, so later clients get new ones
+            if (resources == null || resources.isShutdown()) {
+                var builder = ClientResources.builder();
+                if (transport != null) {
+                    builder.transport(transport);
+                } else {
+                    var client = createHttpClient();
+                    boolean ownsDispatcher = httpClient == null || client.dispatcher() != httpClient.dispatcher();
+                    builder.transport(new OkHttpTransport(client, ownsDispatcher));
+                }
+                if (parseExecutor != null) {
+                    builder.executorService(parseExecutor);
+                } else if (virtualThreads) {
+                    builder.executorService(TerraExecutors.newVirtualThreadExecutor());
+                }
+                if (retryBudget != null) {
+                    builder.retryBudget(retryBudget);
+                }
+                endpointRateLimits.forEach(builder::endpointRateLimit);
+                if (providerRateLimit != null) {
+                    builder.providerRateLimit(providerRateLimit);
+                }
+                cacheTtls.forEach(builder::cacheTtl);
+                if (cacheMaxEntries != null) {
+                    builder.cacheMaxEntries(cacheMaxEntries);
+                }
+                if (defaultDataBulkhead) {
+                    builder.defaultDataBulkhead();
+                }
+                bulkheads.forEach(builder::bulkhead);
+                if (circuitBreaker != null) {
+                    builder.circuitBreaker(circuitBreaker);
+                }
+                if (adaptiveConcurrency != null) {
+                    builder.adaptiveConcurrencyLimit(adaptiveConcurrency);
+                }
+                contentDecoders.forEach(builder::contentDecoder);
+                resources = builder.build();
+                if (warmUpConnections > 0) {
+                    resources.warmUp(RestClientV2.baseUrlOf(apiUrl), warmUpConnections);
+                }
+            }
+            return resources;
+        }
+
+        OkHttpClient createHttpClient() {
+            var builder = httpClient == null ? new OkHttpClient.Builder() : httpClient.newBuilder();
+
+            boolean adaptiveDispatcher = adaptiveConcurrency != null && httpClient == null;
+            if (maxRequests != null || maxRequestsPerHost != null || adaptiveDispatcher) {
+                var dispatcher = new Dispatcher();
+                int defaultMaxRequests = dispatcher.getMaxRequests();
+                int defaultMaxRequestsPerHost = dispatcher.getMaxRequestsPerHost();
+                if (adaptiveDispatcher) {
+                    // The adaptive limit decides how many requests are in flight, so the dispatcher shouldn't cap it
+                    defaultMaxRequests = Math.max(defaultMaxRequests, adaptiveConcurrency.getMaxLimit());
+                    defaultMaxRequestsPerHost = adaptiveConcurrency.getMaxLimit();
+                }
+                dispatcher.setMaxRequests(maxRequests == null ? defaultMaxRequests : maxRequests);
+                dispatcher.setMaxRequestsPerHost(
+                        maxRequestsPerHost == null ? defaultMaxRequestsPerHost : maxRequestsPerHost
+                );
+                builder.dispatcher(dispatcher);
+            }
+            if (connectionPoolSize != null || keepAlive != null || warmUpConnections > 5) {
+                builder.connectionPool(new ConnectionPool(
+                        connectionPoolSize == null ? Math.max(5, warmUpConnections) : connectionPoolSize,
+                        keepAlive == null ? Duration.ofMinutes(5).toMillis() : keepAlive.toMillis(),
+                        TimeUnit.MILLISECONDS
+                ));
+            }
+            if (dnsCacheTtl != null) {
+                builder.dns(new CachingDns(dnsCacheTtl));
+            }
+            return builder.build();
+        }
+
+        private synchronized TerraClientV2Impl createClient(String xApiKey, String devId, RequestConfig requestConfig) {
+            // The client retains the resources under the same lock that getResources() checks them under
+            var current = getResources();
+            try {
+                return new TerraClientV2Impl(xApiKey, devId, apiUrl, requestConfig, current);
+            } catch (IllegalStateException ex) {
+                if (!current.isShutdown()) {
+                    throw ex;
+                }
+            }
+            // The last client released the resources while this one was being created, so it gets new ones
+            return new TerraClientV2Impl(xApiKey, devId, apiUrl, requestConfig, getResources());
+        }
+
+        /**
+         * Creates a new {@link TerraClientV2} instance using the authentication information provided,
+         * as well as the request config and API base URL set on this builder. The created client
+         * shares its transport resources with every other client created by this builder.
+         *
+         * @param xApiKey your Terra API key
+         * @param devId your Terra developer ID
+         * @return the created instance
+         */
+        public TerraClientV2 getClientV2(String xApiKey, String devId) {
+            return getClientV2(xApiKey, devId, requestConfig);
+        }
+
+        /**
+         * Creates a new {@link TerraClientV2} instance using the authentication information and
+         * request config provided, as well as the API base URL set on this builder. The created client
+         * shares its transport resources with every other client created by this builder.
+         *
+         * @param xApiKey your Terra API key
+         * @param devId your Terra developer ID
+         * @param requestConfig the default per-request configuration to use
+         * @return the created instance
+         */
+        public TerraClientV2 getClientV2(String xApiKey, String devId, RequestConfig requestConfig) {
+            return createClient(xApiKey, devId, requestConfig);
+        }
+
+        /**
+         * Creates a new {@link TerraClientV2Async} instance using the authentication information provided,
+         * as well as the request config and API base URL set on this builder. The created client
+         * shares its transport resources with every other client created by this builder.
+         *
+         * @param xApiKey your Terra API key
+         * @param devId your Terra developer ID
+         * @return the created instance
+         */
+        public TerraClientV2Async getAsyncClientV2(String xApiKey, String devId) {
+            return getAsyncClientV2(xApiKey, devId, requestConfig);
+        }
+
+        /**
+         * Creates a new {@link TerraClientV2Async} instance using the authentication information and
+         * request config provided, as well as the API base URL set on this builder. The created client
+         * shares its transport resources with every other client created by this builder.
+         *
+         * @param xApiKey your Terra API key
+         * @param devId your Terra developer ID
+         * @param requestConfig the default per-request configuration to use
+         * @return the created instance
+         */
+        public TerraClientV2Async getAsyncClientV2(String xApiKey, String devId, RequestConfig requestConfig) {
+            return createClient(xApiKey, devId, requestConfig);
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Factory methods for the executors that responses are parsed and webhook handlers are run on.
+ * <br>
+ * On JDK 21 and above these can run each task on its own virtual thread, which lets blocking
+ * webhook handlers and blocking {@link java.util.concurrent.Future#get()} call sites scale to a
+ * very large number of concurrent operations. On older JDKs a fixed pool of platform threads is
+ * used instead.
+ */
+public final class TerraExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(TerraExecutors.class);
+    // Looked up reflectively so that the library can still be built for and run on JDK 11
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    private TerraExecutors() {}
+
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether the running JDK supports virtual threads.
+     *
+     * @return whether virtual threads are supported
+     */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * Creates the default fixed pool of platform threads, with four threads per available processor.
+     *
+     * @return the created executor
+     */
+    public static ExecutorService newPlatformThreadExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread if the running JDK supports
+     * them, or the default fixed pool of platform threads otherwise.
+     *
+     * @return the created executor
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+            logger.debug("Virtual threads are not supported by this JDK, falling back to a platform thread pool");
+            return newPlatformThreadExecutor();
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            logger.warn("Could not create a virtual thread executor, falling back to a platform thread pool", ex);
+            return newPlatformThreadExecutor();
+        }
+    }
+}
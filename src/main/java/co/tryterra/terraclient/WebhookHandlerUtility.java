@@ -17,36 +17,91 @@
 package co.tryterra.terraclient;
 
 import co.tryterra.terraclient.api.TerraWebhookPayload;
+import co.tryterra.terraclient.api.TypedPayload;
+import co.tryterra.terraclient.api.User;
 import co.tryterra.terraclient.api.annotations.Nullable;
+import co.tryterra.terraclient.exceptions.BodyParsingException;
+import co.tryterra.terraclient.exceptions.WebhookQueueFullException;
+import co.tryterra.terraclient.impl.BoundedDispatcher;
+import co.tryterra.terraclient.impl.DeduplicationCache;
+import co.tryterra.terraclient.impl.InFlightWork;
+import co.tryterra.terraclient.impl.StreamingResponseReader;
 import co.tryterra.terraclient.impl.TerraWebhookPayloadImpl;
+import co.tryterra.terraclient.impl.TypedPayloadImpl;
+import co.tryterra.terraclient.impl.UserImpl;
+import co.tryterra.terraclient.impl.WebhookTypeReader;
+import co.tryterra.terraclient.models.v2.activity.Activity;
+import co.tryterra.terraclient.models.v2.body.Body;
+import co.tryterra.terraclient.models.v2.daily.Daily;
+import co.tryterra.terraclient.models.v2.menstruation.Menstruation;
+import co.tryterra.terraclient.models.v2.nutrition.Nutrition;
+import co.tryterra.terraclient.models.v2.sleep.Sleep;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
 
 /**
  * Class which provides various utilities to assist in handling webhook
  * payloads received from Terra.
+ * <br>
+ * The utility should be closed once it is no longer needed, so that handler methods that are still
+ * running can finish and the threads it created are stopped.
  */
-public class WebhookHandlerUtility {
+public class WebhookHandlerUtility implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(WebhookHandlerUtility.class);
-    private static final byte[] HEX_ARRAY = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final int DEFAULT_DISPATCH_QUEUE_CAPACITY = 10_000;
+
+    /**
+     * What to do with a payload when the dispatch queue is full.
+     *
+     * @see #configureDispatchQueue(int, OverflowPolicy)
+     */
+    public enum OverflowPolicy {
+        /**
+         * Run the handler method on the thread that called
+         * {@link #parseAndDispatchWebhookPayload(String)}, which slows down the caller until the
+         * queue has room again.
+         */
+        CALLER_RUNS,
+        /**
+         * Drop the payload without running its handler method.
+         */
+        DISCARD,
+        /**
+         * Throw a {@link WebhookQueueFullException}, which should be turned into a
+         * {@code 503 Service Unavailable} response so that Terra sends the webhook again later.
+         */
+        THROW
+    }
 
     private final ExecutorService executorService;
-    private final HashMap<String, Consumer<TerraWebhookPayload>> payloadHandlers;
+    private final boolean ownsExecutorService;
+    private final InFlightWork inFlightWork = new InFlightWork();
+    private final HashMap<String, Route> routes;
     private final ObjectMapper objectMapper;
     private final String secret;
+    private volatile WebhookSignatureVerifier signatureVerifier;
+    private volatile DeduplicationCache deduplicationCache;
+    private final BoundedDispatcher dispatcher;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+    private final AtomicLong rejectedPayloads = new AtomicLong();
+    private final AtomicLong callerRunsPayloads = new AtomicLong();
 
     /**
      * Constructor for this class
@@ -54,20 +109,30 @@ public class WebhookHandlerUtility {
      * @param secret the value of your webhook signing secret - found on the developer dashboard
      */
     public WebhookHandlerUtility(String secret) {
-        this.executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
-        this.payloadHandlers = new HashMap<>();
-        this.objectMapper = new ObjectMapper();
-        this.secret = secret;
+        this(secret, TerraExecutors.newPlatformThreadExecutor(), true);
     }
 
-    static String bytesToHex(byte[] bytes) {
-        byte[] hexChars = new byte[bytes.length * 2];
-        for (int j = 0; j < bytes.length; j++) {
-            int v = bytes[j] & 0xFF;
-            hexChars[j * 2] = HEX_ARRAY[v >>> 4];
-            hexChars[j * 2 + 1] = HEX_ARRAY[v & 0x0F];
-        }
-        return new String(hexChars, StandardCharsets.UTF_8);
+    /**
+     * Constructor for this class, which runs handler methods on the given executor. Use
+     * {@link TerraExecutors#newVirtualThreadExecutor()} to run each handler on its own virtual
+     * thread where the JDK supports it, which suits handlers that block. The executor is not shut
+     * down when this utility is.
+     *
+     * @param secret the value of your webhook signing secret - found on the developer dashboard
+     * @param executorService the executor to run handler methods on
+     */
+    public WebhookHandlerUtility(String secret, ExecutorService executorService) {
+        this(secret, executorService, false);
+    }
+
+    private WebhookHandlerUtility(String secret, ExecutorService executorService, boolean ownsExecutorService) {
+        this.executorService = Objects.requireNonNull(executorService, "executorService cannot be null");
+        this.ownsExecutorService = ownsExecutorService;
+        this.dispatcher = new BoundedDispatcher(executorService, DEFAULT_DISPATCH_QUEUE_CAPACITY);
+        this.routes = new HashMap<>();
+        this.objectMapper = new ObjectMapper();
+        this.secret = secret;
+        this.signatureVerifier = secret == null || secret.isEmpty() ? null : new WebhookSignatureVerifier(secret);
     }
 
     static Mac getMacInstance(String algorithm) {
@@ -88,33 +153,34 @@ public class WebhookHandlerUtility {
      * @throws IllegalStateException if your secret key is invalid
      */
     public boolean verifySignature(String signatureHeader, String requestBody) {
-        var pattern = Pattern.compile("t=(?<t>\\d+),v1=(?<s>[\\da-f]+)");
-        var matcher = pattern.matcher(signatureHeader);
-        if (!matcher.matches()) {
-            logger.debug("Signature header is malformed");
-            return false;
-        }
-
-        String timestamp = matcher.group("t");
-        String signature = matcher.group("s");
+        return getSignatureVerifier().verify(signatureHeader, requestBody);
+    }
 
-        SecretKeySpec secretKeySpec = new SecretKeySpec(
-                secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"
-        );
+    /**
+     * Verify the signature of the incoming webhook to ensure that it was sent by Terra, using the
+     * raw bytes of the request body so that it doesn't need to be decoded first.
+     *
+     * @param signatureHeader the value of the {@code terra-signature} header sent with the webhook request
+     * @param requestBody the raw bytes of the request body sent with the webhook request
+     * @return boolean indicating whether the signature could be verified successfully
+     * @throws IllegalStateException if your jdk installation is missing the HmacSHA256 algorithm
+     * @throws IllegalStateException if your secret key is invalid
+     */
+    public boolean verifySignature(String signatureHeader, byte[] requestBody) {
+        return getSignatureVerifier().verify(signatureHeader, requestBody);
+    }
 
-        Mac digest = getMacInstance("HmacSHA256");
-        try {
-            digest.init(secretKeySpec);
-        } catch (InvalidKeyException ex) {
-            throw new IllegalStateException("Secret key is invalid", ex);
+    /**
+     * The verifier that signatures are checked with, which can also be used on its own.
+     *
+     * @return the signature verifier
+     * @throws IllegalStateException if your secret key is invalid
+     */
+    public WebhookSignatureVerifier getSignatureVerifier() {
+        if (signatureVerifier == null) {
+            throw new IllegalStateException("Secret key is invalid");
         }
-
-        digest.update(timestamp.getBytes(StandardCharsets.UTF_8));
-        digest.update(".".getBytes(StandardCharsets.UTF_8));
-        digest.update(requestBody.getBytes(StandardCharsets.UTF_8));
-
-        String encodedSignature = bytesToHex(digest.doFinal()).toLowerCase();
-        return encodedSignature.equals(signature);
+        return signatureVerifier;
     }
 
     /**
@@ -138,27 +204,92 @@ public class WebhookHandlerUtility {
      * Parses the raw payload sent with a webhook request into a {@link TerraWebhookPayload} and
      * then dispatches it to the correct handler method for its event type. If no handler exists
      * for the event type then it will be dispatched to the default handler, or discarded if no
-     * default handler exists.
+     * default handler exists. The event type is read before anything else, so a payload that is
+     * discarded is never parsed in full. If the dispatch queue is full, the payload is handled
+     * according to the overflow policy.
      *
      * @see #addEventHandler(String, Consumer)
      * @see #addDefaultEventHandler(Consumer)
+     * @see #enableDeduplication(int, Duration)
+     * @see #configureDispatchQueue(int, OverflowPolicy)
      *
      * @param rawPayload the raw string payload to parse and dispatch to a handler
+     * @throws IllegalStateException if this utility has been shut down, in which case the webhook
+     * should be refused so that it is sent again to another instance
+     * @throws WebhookQueueFullException if the dispatch queue is full and the overflow policy is
+     * {@link OverflowPolicy#THROW}
      */
     public void parseAndDispatchWebhookPayload(String rawPayload) {
-        var parsedPayload = parseWebhookPayload(rawPayload);
-        if (parsedPayload == null) {
-            return;
+        if (!inFlightWork.tryStart()) {
+            throw new IllegalStateException("The webhook handler utility has been shut down");
         }
+        boolean dispatched = false;
+        try {
+            var cache = deduplicationCache;
+            var payloadBytes = cache == null ? null : rawPayload.getBytes(StandardCharsets.UTF_8);
+            if (cache != null && !cache.markSeen(payloadBytes)) {
+                logger.debug("Dropping payload that has already been dispatched");
+                return;
+            }
+
+            String type;
+            try {
+                type = WebhookTypeReader.readType(objectMapper.getFactory(), rawPayload);
+            } catch (IOException ex) {
+                logger.debug("Payload type could not be read", ex);
+                return;
+            }
 
-        var handler = payloadHandlers.containsKey(parsedPayload.getType())
-                ? payloadHandlers.get(parsedPayload.getType()) : payloadHandlers.get("default");
-        if (handler == null) {
-            logger.debug("No handler found for event type {}", parsedPayload.getType());
+            // Only payloads that will be handled are parsed in full
+            var route = type != null && routes.containsKey(type) ? routes.get(type) : routes.get("default");
+            if (route == null) {
+                logger.debug("No handler found for event type {}", type);
+                return;
+            }
+
+            var invocation = route.bind(rawPayload);
+            if (invocation == null) {
+                return;
+            }
+
+            dispatched = dispatcher.offer(() -> {
+                try {
+                    invocation.run();
+                } finally {
+                    inFlightWork.finish();
+                }
+            });
+            if (!dispatched) {
+                handleOverflow(invocation, cache, payloadBytes);
+            }
+        } finally {
+            if (!dispatched) {
+                inFlightWork.finish();
+            }
+        }
+    }
+
+    private void handleOverflow(Runnable invocation, @Nullable DeduplicationCache cache, @Nullable byte[] payloadBytes) {
+        var policy = overflowPolicy;
+        if (policy == OverflowPolicy.CALLER_RUNS) {
+            callerRunsPayloads.incrementAndGet();
+            try {
+                invocation.run();
+            } catch (RuntimeException ex) {
+                logger.warn("Handler method failed while running on the calling thread", ex);
+            }
             return;
         }
 
-        executorService.submit(() -> handler.accept(parsedPayload));
+        rejectedPayloads.incrementAndGet();
+        // The payload wasn't handled, so a retry from Terra must not be dropped as a duplicate
+        if (cache != null) {
+            cache.forget(payloadBytes);
+        }
+        if (policy == OverflowPolicy.THROW) {
+            throw new WebhookQueueFullException("The webhook dispatch queue is full");
+        }
+        logger.warn("Discarding payload because the webhook dispatch queue is full");
     }
 
     /**
@@ -171,7 +302,7 @@ public class WebhookHandlerUtility {
      * @return this instance, for method chaining
      */
     public WebhookHandlerUtility addEventHandler(String eventName, Consumer<TerraWebhookPayload> consumer) {
-        payloadHandlers.put(eventName, consumer);
+        routes.put(eventName, treeRoute(consumer));
         return this;
     }
 
@@ -183,7 +314,287 @@ public class WebhookHandlerUtility {
      * @return this instance, for method chaining
      */
     public WebhookHandlerUtility addDefaultEventHandler(Consumer<TerraWebhookPayload> consumer) {
-        payloadHandlers.put("default", consumer);
+        routes.put("default", treeRoute(consumer));
         return this;
     }
+
+    /**
+     * Registers a handler method for {@code activity} events, which will be called with the
+     * payload's data already bound to {@link Activity} objects. The data is bound straight from the
+     * raw payload without building a tree of it first. This replaces any other handler for the event.
+     *
+     * @param consumer the handler method to call when the event is received
+     * @return this instance, for method chaining
+     */
+    public WebhookHandlerUtility onActivity(Consumer<TypedPayload<List<Activity>>> consumer) {
+        routes.put("activity", dataRoute(Activity.class, consumer));
+        return this;
+    }
+
+    /**
+     * Registers a handler method for {@code body} events, which will be called with the payload's
+     * data already bound to {@link Body} objects.
+     *
+     * @see #onActivity(Consumer)
+     *
+     * @param consumer the handler method to call when the event is received
+     * @return this instance, for method chaining
+     */
+    public WebhookHandlerUtility onBody(Consumer<TypedPayload<List<Body>>> consumer) {
+        routes.put("body", dataRoute(Body.class, consumer));
+        return this;
+    }
+
+    /**
+     * Registers a handler method for {@code daily} events, which will be called with the payload's
+     * data already bound to {@link Daily} objects.
+     *
+     * @see #onActivity(Consumer)
+     *
+     * @param consumer the handler method to call when the event is received
+     * @return this instance, for method chaining
+     */
+    public WebhookHandlerUtility onDaily(Consumer<TypedPayload<List<Daily>>> consumer) {
+        routes.put("daily", dataRoute(Daily.class, consumer));
+        return this;
+    }
+
+    /**
+     * Registers a handler method for {@code menstruation} events, which will be called with the
+     * payload's data already bound to {@link Menstruation} objects.
+     *
+     * @see #onActivity(Consumer)
+     *
+     * @param consumer the handler method to call when the event is received
+     * @return this instance, for method chaining
+     */
+    public WebhookHandlerUtility onMenstruation(Consumer<TypedPayload<List<Menstruation>>> consumer) {
+        routes.put("menstruation", dataRoute(Menstruation.class, consumer));
+        return this;
+    }
+
+    /**
+     * Registers a handler method for {@code nutrition} events, which will be called with the
+     * payload's data already bound to {@link Nutrition} objects.
+     *
+     * @see #onActivity(Consumer)
+     *
+     * @param consumer the handler method to call when the event is received
+     * @return this instance, for method chaining
+     */
+    public WebhookHandlerUtility onNutrition(Consumer<TypedPayload<List<Nutrition>>> consumer) {
+        routes.put("nutrition", dataRoute(Nutrition.class, consumer));
+        return this;
+    }
+
+    /**
+     * Registers a handler method for {@code sleep} events, which will be called with the payload's
+     * data already bound to {@link Sleep} objects.
+     *
+     * @see #onActivity(Consumer)
+     *
+     * @param consumer the handler method to call when the event is received
+     * @return this instance, for method chaining
+     */
+    public WebhookHandlerUtility onSleep(Consumer<TypedPayload<List<Sleep>>> consumer) {
+        routes.put("sleep", dataRoute(Sleep.class, consumer));
+        return this;
+    }
+
+    /**
+     * Parses a received payload for a handler, and returns the call to the handler to run.
+     */
+    private interface Route {
+        @Nullable
+        Runnable bind(String rawPayload);
+    }
+
+    private Route treeRoute(Consumer<TerraWebhookPayload> consumer) {
+        Objects.requireNonNull(consumer, "consumer cannot be null");
+        return rawPayload -> {
+            var parsedPayload = parseWebhookPayload(rawPayload);
+            return parsedPayload == null ? null : () -> consumer.accept(parsedPayload);
+        };
+    }
+
+    private <T> Route dataRoute(Class<T> parseTo, Consumer<TypedPayload<List<T>>> consumer) {
+        Objects.requireNonNull(consumer, "consumer cannot be null");
+        return rawPayload -> {
+            var boundPayload = bindDataPayload(rawPayload, parseTo);
+            return boundPayload == null ? null : () -> consumer.accept(boundPayload);
+        };
+    }
+
+    @Nullable
+    <T> TypedPayload<List<T>> bindDataPayload(String rawPayload, Class<T> parseTo) {
+        var items = new ArrayList<T>();
+        try (var reader = new StreamingResponseReader<>(
+                objectMapper.getFactory().createParser(rawPayload), objectMapper, "data", parseTo)) {
+            T item;
+            while ((item = reader.readNext()) != null) {
+                items.add(item);
+            }
+            var envelope = reader.getEnvelope();
+            var userNode = envelope.get("user");
+            Optional<User> user = userNode == null || userNode.isNull()
+                    ? Optional.empty()
+                    : Optional.of(objectMapper.treeToValue(userNode, UserImpl.class));
+            return new TypedPayloadImpl<>(envelope.path("type").asText(), user, Collections.unmodifiableList(items), envelope);
+        } catch (IOException | BodyParsingException ex) {
+            logger.debug("Payload could not be bound to {}", parseTo.getSimpleName(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Rejects webhooks whose signature timestamp is further than the replay window from the current
+     * time in {@link #verifySignature(String, String)}, so that a captured webhook can't be sent again
+     * later. The window should allow for clock differences with Terra as well as delivery delays.
+     *
+     * @param replayWindow the longest accepted difference between the signature timestamp and the current time
+     * @return this instance, for method chaining
+     * @throws IllegalStateException if your secret key is invalid
+     */
+    public WebhookHandlerUtility enableReplayProtection(Duration replayWindow) {
+        Objects.requireNonNull(replayWindow, "replayWindow cannot be null");
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalStateException("Secret key is invalid");
+        }
+        this.signatureVerifier = new WebhookSignatureVerifier(secret, replayWindow);
+        return this;
+    }
+
+    /**
+     * Drops payloads passed to {@link #parseAndDispatchWebhookPayload(String)} that are identical to
+     * one dispatched within the time to live, before they are parsed, so that deliveries retried by
+     * Terra don't reach the handler methods twice. Up to {@code maxEntries} payload hashes are kept,
+     * and the oldest are forgotten first once there are more.
+     * <br>
+     * A payload is remembered as soon as it is received, whether or not its handler method succeeds.
+     *
+     * @param maxEntries the largest number of payloads to remember
+     * @param ttl how long to remember each payload for
+     * @return this instance, for method chaining
+     */
+    public WebhookHandlerUtility enableDeduplication(int maxEntries, Duration ttl) {
+        Objects.requireNonNull(ttl, "ttl cannot be null");
+        this.deduplicationCache = new DeduplicationCache(maxEntries, ttl);
+        return this;
+    }
+
+    /**
+     * The number of payloads that have been dropped because they were duplicates.
+     *
+     * @see #enableDeduplication(int, Duration)
+     *
+     * @return the number of duplicate payloads
+     */
+    public long getDuplicatePayloadCount() {
+        var cache = deduplicationCache;
+        return cache == null ? 0 : cache.getDuplicates();
+    }
+
+    /**
+     * Limits how many payloads can wait for a thread to run their handler method on, so that a burst
+     * of webhooks can't use up all available memory. Once the limit is reached, further payloads are
+     * handled according to the overflow policy. By default up to 10000 payloads can wait, and the
+     * handler methods of further payloads are run on the calling thread.
+     * <br>
+     * The queue can be reconfigured at any time. Payloads that are already queued stay queued, and
+     * the queue metrics carry on from their current values.
+     *
+     * @param capacity the largest number of payloads that can wait to be handled
+     * @param overflowPolicy what to do with payloads received while the queue is full
+     * @return this instance, for method chaining
+     */
+    public WebhookHandlerUtility configureDispatchQueue(int capacity, OverflowPolicy overflowPolicy) {
+        Objects.requireNonNull(overflowPolicy, "overflowPolicy cannot be null");
+        dispatcher.setCapacity(capacity);
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * The number of payloads that are waiting for their handler method to start.
+     *
+     * @return the current depth of the dispatch queue
+     */
+    public int getDispatchQueueDepth() {
+        return dispatcher.getQueueDepth();
+    }
+
+    /**
+     * The total time that dispatched payloads have waited in the queue before their handler method started.
+     *
+     * @return the total queue wait time
+     */
+    public Duration getTotalDispatchQueueWait() {
+        return Duration.ofNanos(dispatcher.getTotalWaitNanos());
+    }
+
+    /**
+     * The longest time that a dispatched payload has waited in the queue before its handler method started.
+     *
+     * @return the maximum queue wait time
+     */
+    public Duration getMaxDispatchQueueWait() {
+        return Duration.ofNanos(dispatcher.getMaxWaitNanos());
+    }
+
+    /**
+     * The number of payloads that were discarded or refused with a {@link WebhookQueueFullException}
+     * because the dispatch queue was full.
+     *
+     * @return the number of rejected payloads
+     */
+    public long getRejectedPayloadCount() {
+        return rejectedPayloads.get();
+    }
+
+    /**
+     * The number of payloads whose handler method was run on the calling thread because the
+     * dispatch queue was full.
+     *
+     * @return the number of payloads run on the calling thread
+     */
+    public long getCallerRunsPayloadCount() {
+        return callerRunsPayloads.get();
+    }
+
+    /**
+     * Shuts down this utility. Payloads dispatched after this is called are rejected with an
+     * {@link IllegalStateException}, and handler methods that are already queued or running are given
+     * up to the drain timeout to finish. The executor that handler methods run on is then shut down,
+     * if it was created by this utility.
+     * <br>
+     * This method blocks until the handler methods have finished or the timeout has passed.
+     *
+     * @param drainTimeout the longest time to wait for handler methods to finish
+     * @return whether every handler method finished before the timeout
+     */
+    public boolean shutdown(Duration drainTimeout) {
+        Objects.requireNonNull(drainTimeout, "drainTimeout cannot be null");
+        if (drainTimeout.isNegative()) {
+            throw new IllegalArgumentException("drainTimeout cannot be negative");
+        }
+        inFlightWork.shutdown();
+        boolean drained = inFlightWork.awaitDrained(drainTimeout);
+        if (!drained) {
+            logger.warn("{} webhook handlers were still running when the utility was shut down", inFlightWork.getInFlight());
+        }
+        if (ownsExecutorService) {
+            executorService.shutdown();
+        }
+        return drained;
+    }
+
+    /**
+     * Shuts down this utility, waiting up to 30 seconds for handler methods to finish.
+     *
+     * @see #shutdown(Duration)
+     */
+    @Override
+    public void close() {
+        shutdown(Duration.ofSeconds(30));
+    }
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient;
+
+import co.tryterra.terraclient.api.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Verifies the {@code terra-signature} header of webhooks sent by Terra against the raw bytes of
+ * their request bodies. A verifier can be shared between threads. Each thread keeps a {@link Mac}
+ * that has already been keyed with the secret, and the expected digest is compared in constant time
+ * without being hex encoded, so that verifying a webhook costs little more than hashing its body.
+ * <br>
+ * A verifier can also be given a replay window, in which case a webhook is only accepted if the
+ * timestamp it was signed with is within that window of the current time, so that a captured
+ * webhook can't be sent again later.
+ */
+public class WebhookSignatureVerifier {
+    private static final Logger logger = LoggerFactory.getLogger(WebhookSignatureVerifier.class);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int DIGEST_LENGTH = 32;
+
+    private final SecretKeySpec secretKeySpec;
+    private final ThreadLocal<Mac> macs;
+    private final long replayWindowSeconds;
+    private final LongSupplier epochSecondClock;
+
+    /**
+     * Constructor for this class
+     *
+     * @param secret the value of your webhook signing secret - found on the developer dashboard
+     * @throws IllegalStateException if your jdk installation is missing the HmacSHA256 algorithm
+     * @throws IllegalStateException if your secret key is invalid
+     */
+    public WebhookSignatureVerifier(String secret) {
+        this(secret, null);
+    }
+
+    /**
+     * Constructor for this class, which rejects webhooks whose signature timestamp is further than
+     * the replay window from the current time in either direction.
+     *
+     * @param secret the value of your webhook signing secret - found on the developer dashboard
+     * @param replayWindow the longest accepted difference between the signature timestamp and the
+     *                     current time, or {@code null} to accept any timestamp
+     * @throws IllegalStateException if your jdk installation is missing the HmacSHA256 algorithm
+     * @throws IllegalStateException if your secret key is invalid
+     */
+    public WebhookSignatureVerifier(String secret, @Nullable Duration replayWindow) {
+        this(secret, replayWindow, () -> System.currentTimeMillis() / 1000);
+    }
+
+    WebhookSignatureVerifier(String secret, Duration replayWindow, LongSupplier epochSecondClock) {
+        Objects.requireNonNull(secret, "secret cannot be null");
+        if (secret.isEmpty()) {
+            throw new IllegalStateException("Secret key is invalid");
+        }
+        if (replayWindow != null && replayWindow.getSeconds() < 1) {
+            throw new IllegalArgumentException("replayWindow must be at least one second");
+        }
+        this.secretKeySpec = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.replayWindowSeconds = replayWindow == null ? -1 : replayWindow.getSeconds();
+        this.epochSecondClock = epochSecondClock;
+        // Fail on construction rather than on the first webhook
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        macs.get();
+    }
+
+    private Mac newMac() {
+        var mac = WebhookHandlerUtility.getMacInstance(ALGORITHM);
+        try {
+            mac.init(secretKeySpec);
+        } catch (InvalidKeyException ex) {
+            throw new IllegalStateException("Secret key is invalid", ex);
+        }
+        return mac;
+    }
+
+    /**
+     * Verify the signature of the incoming webhook to ensure that it was sent by Terra.
+     *
+     * @param signatureHeader the value of the {@code terra-signature} header sent with the webhook request
+     * @param requestBody the raw bytes of the request body sent with the webhook request
+     * @return boolean indicating whether the signature could be verified successfully
+     */
+    public boolean verify(String signatureHeader, byte[] requestBody) {
+        Objects.requireNonNull(requestBody, "requestBody cannot be null");
+        return verify(signatureHeader, ByteBuffer.wrap(requestBody));
+    }
+
+    /**
+     * Verify the signature of the incoming webhook to ensure that it was sent by Terra. The
+     * remaining bytes of the buffer are verified, and its position is left unchanged.
+     *
+     * @param signatureHeader the value of the {@code terra-signature} header sent with the webhook request
+     * @param requestBody the raw bytes of the request body sent with the webhook request
+     * @return boolean indicating whether the signature could be verified successfully
+     */
+    public boolean verify(String signatureHeader, ByteBuffer requestBody) {
+        Objects.requireNonNull(requestBody, "requestBody cannot be null");
+        var header = SignatureHeader.parse(signatureHeader);
+        if (header == null) {
+            logger.debug("Signature header is malformed");
+            return false;
+        }
+        if (replayWindowSeconds >= 0 && !isWithinReplayWindow(header.parseTimestamp(signatureHeader))) {
+            logger.debug("Signature timestamp is outside of the replay window");
+            return false;
+        }
+
+        var mac = macs.get();
+        for (int i = header.timestampStart; i < header.timestampEnd; i++) {
+            mac.update((byte) signatureHeader.charAt(i));
+        }
+        mac.update((byte) '.');
+        mac.update(requestBody.duplicate());
+        return MessageDigest.isEqual(mac.doFinal(), header.signature);
+    }
+
+    private boolean isWithinReplayWindow(long timestamp) {
+        return timestamp >= 0 && Math.abs(epochSecondClock.getAsLong() - timestamp) <= replayWindowSeconds;
+    }
+
+    /**
+     * Verify the signature of the incoming webhook to ensure that it was sent by Terra. Prefer
+     * {@link #verify(String, byte[])} where the raw body is available, which saves encoding it again.
+     *
+     * @param signatureHeader the value of the {@code terra-signature} header sent with the webhook request
+     * @param requestBody the raw string request body sent with the webhook request
+     * @return boolean indicating whether the signature could be verified successfully
+     */
+    public boolean verify(String signatureHeader, String requestBody) {
+        Objects.requireNonNull(requestBody, "requestBody cannot be null");
+        return verify(signatureHeader, requestBody.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A parsed {@code terra-signature} header, of the form {@code t=<timestamp>,v1=<hex signature>}.
+     */
+    static final class SignatureHeader {
+        final int timestampStart;
+        final int timestampEnd;
+        final byte[] signature;
+
+        private SignatureHeader(int timestampStart, int timestampEnd, byte[] signature) {
+            this.timestampStart = timestampStart;
+            this.timestampEnd = timestampEnd;
+            this.signature = signature;
+        }
+
+        static SignatureHeader parse(String header) {
+            if (header == null || !header.startsWith("t=")) {
+                return null;
+            }
+            int timestampStart = 2;
+            int timestampEnd = timestampStart;
+            while (timestampEnd < header.length() && isDigit(header.charAt(timestampEnd))) {
+                timestampEnd++;
+            }
+            if (timestampEnd == timestampStart || !header.startsWith(",v1=", timestampEnd)) {
+                return null;
+            }
+
+            int signatureStart = timestampEnd + 4;
+            int hexLength = header.length() - signatureStart;
+            // Anything but a SHA-256 digest can't match, so there is no need to decode it
+            if (hexLength != DIGEST_LENGTH * 2) {
+                return null;
+            }
+            var signature = new byte[DIGEST_LENGTH];
+            for (int i = 0; i < DIGEST_LENGTH; i++) {
+                int high = hexValue(header.charAt(signatureStart + i * 2));
+                int low = hexValue(header.charAt(signatureStart + i * 2 + 1));
+                if (high < 0 || low < 0) {
+                    return null;
+                }
+                signature[i] = (byte) (high << 4 | low);
+            }
+            return new SignatureHeader(timestampStart, timestampEnd, signature);
+        }
+
+        /**
+         * Parses the timestamp of the header this was parsed from.
+         *
+         * @param header the header
+         * @return the timestamp in seconds since the epoch, or {@code -1} if it is too large
+         */
+        long parseTimestamp(String header) {
+            // Anything longer can't be a timestamp in seconds, and could overflow
+            if (timestampEnd - timestampStart > 18) {
+                return -1;
+            }
+            long timestamp = 0;
+            for (int i = timestampStart; i < timestampEnd; i++) {
+                timestamp = timestamp * 10 + (header.charAt(i) - '0');
+            }
+            return timestamp;
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static int hexValue(char c) {
+            if (c >= '0' && c <= '9') {
+                return c - '0';
+            }
+            if (c >= 'a' && c <= 'f') {
+                return c - 'a' + 10;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.api;
+
+import co.tryterra.terraclient.api.annotations.Nullable;
+
+/**
+ * The result of fetching data for a single user as part of a bulk fetch. Exactly one of
+ * {@link #getResponse()} and {@link #getError()} is non-null.
+ *
+ * @param <T> the type of the response body data
+ */
+public interface BulkResult<T> {
+    /**
+     * The user that the data was fetched for.
+     *
+     * @return the user
+     */
+    PartialUser getUser();
+
+    /**
+     * The API response for the user, or {@code null} if the request failed without a response.
+     *
+     * @return the API response
+     */
+    @Nullable
+    TerraApiResponse<T> getResponse();
+
+    /**
+     * The exception that caused the request to fail without a response, or {@code null} if a
+     * response was received.
+     *
+     * @return the exception that caused the request to fail
+     */
+    @Nullable
+    Throwable getError();
+
+    /**
+     * Whether a response was received and that response has a successful HTTP response code.
+     *
+     * @return whether the fetch was successful
+     */
+    default boolean isSuccessful() {
+        return getResponse() != null && getResponse().isSuccessful();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.api;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * A point-in-time snapshot of the client-side transport statistics of a {@link TerraClientV2}.
+ * Clients created from the same {@link co.tryterra.terraclient.TerraClientFactory.Builder}
+ * share their transport resources, and so report the same statistics.
+ */
+public interface ClientStats {
+    /**
+     * The number of requests that are currently waiting for the client-side rate limiter
+     * before they can be sent.
+     *
+     * @return the current rate limiter queue depth
+     */
+    int getRateLimitQueueDepth();
+
+    /**
+     * The total number of requests that have been delayed by the client-side rate limiter.
+     *
+     * @return the number of delayed requests
+     */
+    long getRateLimitedRequestCount();
+
+    /**
+     * The total time that delayed requests have spent waiting for the client-side rate limiter.
+     *
+     * @return the total time spent waiting
+     */
+    Duration getTotalRateLimitWait();
+
+    /**
+     * The longest time that a single request has spent waiting for the client-side rate limiter.
+     *
+     * @return the longest time spent waiting
+     */
+    Duration getMaxRateLimitWait();
+
+    /**
+     * The total number of requests that were served by sharing an equivalent request that was
+     * already in flight, rather than being sent themselves.
+     *
+     * @see co.tryterra.terraclient.RequestConfig.Builder#coalesce(boolean)
+     *
+     * @return the number of coalesced requests
+     */
+    long getCoalescedRequestCount();
+
+    /**
+     * The total number of requests that were served from the response cache.
+     *
+     * @return the number of cache hits
+     */
+    long getCacheHitCount();
+
+    /**
+     * The total number of cacheable requests that were not in the response cache and so were
+     * sent to the API.
+     *
+     * @return the number of cache misses
+     */
+    long getCacheMissCount();
+
+    /**
+     * The total number of hedged requests that have been sent because the original request was
+     * slower than most recent requests to the same endpoint.
+     *
+     * @see co.tryterra.terraclient.RequestConfig.Builder#hedge(double, java.time.Duration)
+     *
+     * @return the number of hedged requests
+     */
+    long getHedgedRequestCount();
+
+    /**
+     * The total number of requests that were rejected without being sent because the bulkhead
+     * for their endpoint was full.
+     *
+     * @see co.tryterra.terraclient.TerraClientFactory.Builder#bulkhead(co.tryterra.terraclient.EndpointClass, int, int)
+     *
+     * @return the number of requests rejected by bulkheads
+     */
+    long getBulkheadRejectedRequestCount();
+
+    /**
+     * The total number of requests that were rejected without being sent because the circuit
+     * breaker for their endpoint was open.
+     *
+     * @see co.tryterra.terraclient.TerraClientFactory.Builder#circuitBreaker(double, int, int, Duration)
+     *
+     * @return the number of requests rejected by circuit breakers
+     */
+    long getCircuitOpenRejectedRequestCount();
+
+    /**
+     * The current limit of the adaptive concurrency limiter on the number of requests in flight.
+     *
+     * @see co.tryterra.terraclient.TerraClientFactory.Builder#adaptiveConcurrency()
+     *
+     * @return the current concurrency limit, or {@code -1} if adaptive concurrency limiting is not enabled
+     */
+    int getConcurrencyLimit();
+
+    /**
+     * The total number of response body bytes received from the API for each endpoint, before
+     * they were decompressed.
+     *
+     * @return the number of bytes received, by endpoint path
+     */
+    Map<String, Long> getWireBytesByEndpoint();
+
+    /**
+     * The total number of response body bytes read for each endpoint after they were decompressed.
+     *
+     * @return the number of decoded bytes, by endpoint path
+     */
+    Map<String, Long> getDecodedBytesByEndpoint();
+
+    /**
+     * The ratio of decoded to received response body bytes for each endpoint, so {@code 4.0} means
+     * that responses were a quarter of their decoded size on the wire.
+     *
+     * @see co.tryterra.terraclient.TerraClientFactory.Builder#contentDecoder(co.tryterra.terraclient.transport.ContentDecoder)
+     *
+     * @return the compression ratio, by endpoint path, for endpoints that have received any bytes
+     */
+    Map<String, Double> getCompressionRatioByEndpoint();
+}
@@ -73,7 +73,8 @@ public interface TerraApiResponse<T> {
     JsonNode getRawBody();
 
     /**
-     * The data parsed from the response body as a list of Java objects.
+     * The data parsed from the response body as a list of Java objects. The list can't be
+     * modified, as the same response may be shared by several callers.
      *
      * @return the parsed data
      */
@@ -87,4 +88,24 @@ public interface TerraApiResponse<T> {
      */
     @Nullable
     User getUser();
+
+    /**
+     * The number of bytes of response body that were received from the API to produce this
+     * response, before it was decompressed.
+     *
+     * @return the number of bytes received, or {@code -1} if it is not known
+     */
+    default long getWireBytes() {
+        return -1;
+    }
+
+    /**
+     * The number of bytes of response body that were parsed to produce this response, after it
+     * was decompressed. This is the same as {@link #getWireBytes()} if the body was not compressed.
+     *
+     * @return the number of decoded bytes, or {@code -1} if it is not known
+     */
+    default long getDecodedBytes() {
+        return -1;
+    }
 }
@@ -16,6 +16,7 @@
 
 package co.tryterra.terraclient.api;
 
+import co.tryterra.terraclient.BulkOptions;
 import co.tryterra.terraclient.RequestConfig;
 import co.tryterra.terraclient.api.annotations.Nullable;
 import co.tryterra.terraclient.models.Athlete;
@@ -29,13 +30,20 @@ import co.tryterra.terraclient.models.v2.menstruation.Menstruation;
 import co.tryterra.terraclient.models.v2.nutrition.Nutrition;
 import co.tryterra.terraclient.models.v2.sleep.Sleep;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.concurrent.Flow;
 import java.util.concurrent.Future;
 
 /**
  * Interface for facilities to make requests to the Terra API.
+ * <br>
+ * A client should be closed once it is no longer needed, so that its threads and connections are
+ * released. Clients created from the same factory builder share these, and they are released once
+ * every one of those clients has been closed.
  */
-public interface TerraClientV2 {
+public interface TerraClientV2 extends AutoCloseable {
     /**
      * Create a new temporary {@link PartialUser} object, without making an API call, that
      * can be passed in to the {@code user} parameter of the data request methods of this class.
@@ -399,4 +407,364 @@ public interface TerraClientV2 {
      * @return future that will contain the API response upon completion
      */
     Future<TerraApiResponse<Sleep>> getSleepForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    /**
+     * Fetches the activity data for many users, making a request to the {@code /activity} endpoint for
+     * each user with the client's default request configuration and at most 16 requests in flight.
+     *
+     * @see #getActivityForUsers(Collection, Instant, Instant, BulkOptions)
+     *
+     * @param users the users to fetch the activity data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Activity>> getActivityForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Fetches the activity data for many users, making a request to the {@code /activity} endpoint for
+     * each user. Requests are only sent once the returned publisher is subscribed to, and the result
+     * for each user is published as soon as it is available rather than once all users are done.
+     * Users are fetched round-robin across their providers, where the provider is known.
+     *
+     * @param users the users to fetch the activity data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param options the options to use for this bulk fetch
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Activity>> getActivityForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime, BulkOptions options);
+
+    /**
+     * Asynchronously makes a request to the {@code /activity} endpoint to fetch the activity data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the activity data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Activity>> streamActivityForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Asynchronously makes a request to the {@code /activity} endpoint to fetch the activity data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the activity data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param requestConfig the config to use for this request
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Activity>> streamActivityForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    /**
+     * Fetches the body data for many users, making a request to the {@code /body} endpoint for
+     * each user with the client's default request configuration and at most 16 requests in flight.
+     *
+     * @see #getBodyForUsers(Collection, Instant, Instant, BulkOptions)
+     *
+     * @param users the users to fetch the body data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Body>> getBodyForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Fetches the body data for many users, making a request to the {@code /body} endpoint for
+     * each user. Requests are only sent once the returned publisher is subscribed to, and the result
+     * for each user is published as soon as it is available rather than once all users are done.
+     * Users are fetched round-robin across their providers, where the provider is known.
+     *
+     * @param users the users to fetch the body data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param options the options to use for this bulk fetch
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Body>> getBodyForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime, BulkOptions options);
+
+    /**
+     * Asynchronously makes a request to the {@code /body} endpoint to fetch the body data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the body data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Body>> streamBodyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Asynchronously makes a request to the {@code /body} endpoint to fetch the body data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the body data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param requestConfig the config to use for this request
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Body>> streamBodyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    /**
+     * Fetches the daily data for many users, making a request to the {@code /daily} endpoint for
+     * each user with the client's default request configuration and at most 16 requests in flight.
+     *
+     * @see #getDailyForUsers(Collection, Instant, Instant, BulkOptions)
+     *
+     * @param users the users to fetch the daily data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Daily>> getDailyForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Fetches the daily data for many users, making a request to the {@code /daily} endpoint for
+     * each user. Requests are only sent once the returned publisher is subscribed to, and the result
+     * for each user is published as soon as it is available rather than once all users are done.
+     * Users are fetched round-robin across their providers, where the provider is known.
+     *
+     * @param users the users to fetch the daily data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param options the options to use for this bulk fetch
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Daily>> getDailyForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime, BulkOptions options);
+
+    /**
+     * Asynchronously makes a request to the {@code /daily} endpoint to fetch the daily data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the daily data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Daily>> streamDailyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Asynchronously makes a request to the {@code /daily} endpoint to fetch the daily data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the daily data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param requestConfig the config to use for this request
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Daily>> streamDailyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    /**
+     * Fetches the menstruation data for many users, making a request to the {@code /menstruation} endpoint for
+     * each user with the client's default request configuration and at most 16 requests in flight.
+     *
+     * @see #getMenstruationForUsers(Collection, Instant, Instant, BulkOptions)
+     *
+     * @param users the users to fetch the menstruation data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Menstruation>> getMenstruationForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Fetches the menstruation data for many users, making a request to the {@code /menstruation} endpoint for
+     * each user. Requests are only sent once the returned publisher is subscribed to, and the result
+     * for each user is published as soon as it is available rather than once all users are done.
+     * Users are fetched round-robin across their providers, where the provider is known.
+     *
+     * @param users the users to fetch the menstruation data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param options the options to use for this bulk fetch
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Menstruation>> getMenstruationForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime, BulkOptions options);
+
+    /**
+     * Asynchronously makes a request to the {@code /menstruation} endpoint to fetch the menstruation data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the menstruation data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Menstruation>> streamMenstruationForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Asynchronously makes a request to the {@code /menstruation} endpoint to fetch the menstruation data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the menstruation data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param requestConfig the config to use for this request
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Menstruation>> streamMenstruationForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    /**
+     * Fetches the nutrition data for many users, making a request to the {@code /nutrition} endpoint for
+     * each user with the client's default request configuration and at most 16 requests in flight.
+     *
+     * @see #getNutritionForUsers(Collection, Instant, Instant, BulkOptions)
+     *
+     * @param users the users to fetch the nutrition data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Nutrition>> getNutritionForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Fetches the nutrition data for many users, making a request to the {@code /nutrition} endpoint for
+     * each user. Requests are only sent once the returned publisher is subscribed to, and the result
+     * for each user is published as soon as it is available rather than once all users are done.
+     * Users are fetched round-robin across their providers, where the provider is known.
+     *
+     * @param users the users to fetch the nutrition data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param options the options to use for this bulk fetch
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Nutrition>> getNutritionForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime, BulkOptions options);
+
+    /**
+     * Asynchronously makes a request to the {@code /nutrition} endpoint to fetch the nutrition data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the nutrition data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Nutrition>> streamNutritionForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Asynchronously makes a request to the {@code /nutrition} endpoint to fetch the nutrition data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the nutrition data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param requestConfig the config to use for this request
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Nutrition>> streamNutritionForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    /**
+     * Fetches the sleep data for many users, making a request to the {@code /sleep} endpoint for
+     * each user with the client's default request configuration and at most 16 requests in flight.
+     *
+     * @see #getSleepForUsers(Collection, Instant, Instant, BulkOptions)
+     *
+     * @param users the users to fetch the sleep data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Sleep>> getSleepForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Fetches the sleep data for many users, making a request to the {@code /sleep} endpoint for
+     * each user. Requests are only sent once the returned publisher is subscribed to, and the result
+     * for each user is published as soon as it is available rather than once all users are done.
+     * Users are fetched round-robin across their providers, where the provider is known.
+     *
+     * @param users the users to fetch the sleep data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param options the options to use for this bulk fetch
+     * @return publisher of the result for each user
+     */
+    Flow.Publisher<BulkResult<Sleep>> getSleepForUsers(Collection<? extends PartialUser> users, Instant startTime, @Nullable Instant endTime, BulkOptions options);
+
+    /**
+     * Asynchronously makes a request to the {@code /sleep} endpoint to fetch the sleep data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the sleep data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Sleep>> streamSleepForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    /**
+     * Asynchronously makes a request to the {@code /sleep} endpoint to fetch the sleep data
+     * for the given user, returning the data as a lazily parsed {@link TerraDataStream} rather
+     * than a fully parsed list.
+     *
+     * @param user the user to fetch the sleep data for
+     * @param startTime the start time to fetch data since
+     * @param endTime then end time to fetch data before
+     * @param requestConfig the config to use for this request
+     * @return future that will contain the open data stream once the response headers are received
+     */
+    Future<TerraDataStream<Sleep>> streamSleepForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    /**
+     * Takes a snapshot of the client-side transport statistics, such as how many requests have
+     * been delayed by the client-side rate limiter. Clients created from the same factory builder
+     * share these statistics.
+     *
+     * @return the current client statistics
+     */
+    ClientStats getStats();
+
+    /**
+     * Asynchronously opens connections to the API ahead of time, so that the first requests made
+     * after startup don't pay for DNS, TCP and TLS setup. The connections are kept in the transport's
+     * connection pool for the requests that follow. Over HTTP/2 a single connection is opened however
+     * many are asked for, as every request is multiplexed over it.
+     * <br>
+     * The warm-up requests are not authenticated and do not count against any rate limit. A warm-up
+     * that fails is not an error, so the returned future always completes normally.
+     *
+     * @param connections the number of connections to open
+     * @return future that will complete once the connections have been opened
+     */
+    Future<Void> warmUp(int connections);
+
+    /**
+     * Shuts down this client. New requests are rejected straight away with an
+     * {@link IllegalStateException}, and requests that are already in flight are given up to the
+     * drain timeout to complete. Once they have, or the timeout has passed, the client's threads are
+     * stopped and its idle connections are closed, unless other clients created from the same factory
+     * builder are still using them. Data streams that have already been opened can still be read until
+     * they are closed.
+     * <br>
+     * This method blocks until the requests in flight have completed or the timeout has passed.
+     *
+     * @param drainTimeout the longest time to wait for requests in flight to complete
+     * @return whether every request in flight completed before the timeout
+     */
+    boolean shutdown(Duration drainTimeout);
+
+    /**
+     * Shuts down this client, waiting up to 30 seconds for requests in flight to complete.
+     *
+     * @see #shutdown(Duration)
+     */
+    @Override
+    default void close() {
+        shutdown(Duration.ofSeconds(30));
+    }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.api;
+
+import co.tryterra.terraclient.RequestConfig;
+import co.tryterra.terraclient.api.annotations.Nullable;
+import co.tryterra.terraclient.models.Athlete;
+import co.tryterra.terraclient.models.AuthenticationResponse;
+import co.tryterra.terraclient.models.GenerateWidgetResponse;
+import co.tryterra.terraclient.models.ProvidersResponse;
+import co.tryterra.terraclient.models.v2.activity.Activity;
+import co.tryterra.terraclient.models.v2.body.Body;
+import co.tryterra.terraclient.models.v2.daily.Daily;
+import co.tryterra.terraclient.models.v2.menstruation.Menstruation;
+import co.tryterra.terraclient.models.v2.nutrition.Nutrition;
+import co.tryterra.terraclient.models.v2.sleep.Sleep;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Variant of {@link TerraClientV2} whose requests return {@link CompletableFuture}s, so that their
+ * results can be composed without blocking a thread on {@link java.util.concurrent.Future#get()}.
+ * <br>
+ * Cancelling a returned future also cancels the underlying HTTP call, including any retry that is
+ * waiting to be sent. If the same request was coalesced with requests from other callers, the HTTP
+ * call is only cancelled once every caller has cancelled their future.
+ */
+public interface TerraClientV2Async extends TerraClientV2 {
+    @Override
+    CompletableFuture<? extends TerraApiResponse<? extends User>> getAllUsers();
+
+    @Override
+    CompletableFuture<? extends TerraApiResponse<? extends User>> getUser(String userId);
+
+    @Override
+    CompletableFuture<? extends TerraApiResponse<? extends User>> getUser(PartialUser user);
+
+    @Override
+    CompletableFuture<TerraApiResponse<ProvidersResponse>> listProviders();
+
+    @Override
+    CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource);
+
+    @Override
+    CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id);
+
+    @Override
+    CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id, String auth_success_redirect_url);
+
+    @Override
+    CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url);
+
+    @Override
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers);
+
+    @Override
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id);
+
+    @Override
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url);
+
+    @Override
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url);
+
+    @Override
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url, String language);
+
+    @Override
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url, String language, boolean show_disconnect);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Void>> deauthenticateUser(PartialUser user);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Athlete>> getAthleteForUser(PartialUser user);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Athlete>> getAthleteForUser(PartialUser user, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Activity>> getActivityForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Activity>> getActivityForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Body>> getBodyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Body>> getBodyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Daily>> getDailyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Daily>> getDailyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Menstruation>> getMenstruationForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Menstruation>> getMenstruationForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Nutrition>> getNutritionForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Nutrition>> getNutritionForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Sleep>> getSleepForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraApiResponse<Sleep>> getSleepForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraDataStream<Activity>> streamActivityForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraDataStream<Activity>> streamActivityForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraDataStream<Body>> streamBodyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraDataStream<Body>> streamBodyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraDataStream<Daily>> streamDailyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraDataStream<Daily>> streamDailyForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraDataStream<Menstruation>> streamMenstruationForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraDataStream<Menstruation>> streamMenstruationForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraDataStream<Nutrition>> streamNutritionForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraDataStream<Nutrition>> streamNutritionForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<TerraDataStream<Sleep>> streamSleepForUser(PartialUser user, Instant startTime, @Nullable Instant endTime);
+
+    @Override
+    CompletableFuture<TerraDataStream<Sleep>> streamSleepForUser(PartialUser user, Instant startTime, @Nullable Instant endTime, RequestConfig requestConfig);
+
+    @Override
+    CompletableFuture<Void> warmUp(int connections);
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.tryterra.terraclient.api;
+
+import co.tryterra.terraclient.api.annotations.Nullable;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * A lazily parsed sequence of data items, backed by an open API response body. Items are
+ * only read from the network and parsed as the caller advances through them, so the
+ * whole response never needs to be held in memory at once.
+ * <br>
+ * The underlying connection is released once the final item has been read, or when this stream
+ * is closed. Streams that are not read to the end <b>must</b> be closed, ideally with a
+ * try-with-resources block.
+ * <br>
+ * If an item cannot be read because the response body is malformed, a
+ * {@link co.tryterra.terraclient.exceptions.TerraRuntimeException} will be thrown.
+ *
+ * @param <T> the type of the data items
+ */
+public interface TerraDataStream<T> extends Iterator<T>, Closeable {
+    /**
+     * The HTTP response code that Terra returned from the request.
+     *
+     * @return the response code
+     */
+    int getResponseCode();
+
+    /**
+     * Whether the request to Terra returned a successful HTTP response code. If it did not,
+     * this stream will not contain any items.
+     *
+     * @return whether the response was successful
+     */
+    boolean isSuccessful();
+
+    /**
+     * The raw JSON body returned with the response, excluding the data items. If the
+     * request was successful, this will only be complete once every item has been read.
+     *
+     * @return the response body, without the data items
+     */
+    JsonNode getRawBody();
+
+    /**
+     * The user that the request fetched data for. This will only be available once every
+     * item has been read.
+     *
+     * @return the request's user
+     */
+    @Nullable
+    User getUser();
+
+    /**
+     * A sequential {@link Stream} view of the remaining items. Closing the returned
+     * stream will also close this object.
+     *
+     * @return a stream of the remaining items
+     */
+    Stream<T> stream();
+
+    /**
+     * Closes the underlying response body, discarding any items that have not been read yet.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Optional;
+
+/**
+ * A webhook payload whose data has already been bound to its model classes, which is passed to
+ * handlers registered for a specific event type, such as
+ * {@link co.tryterra.terraclient.WebhookHandlerUtility#onActivity(java.util.function.Consumer)}.
+ * The payload is bound once, and every method returns the same objects each time it is called.
+ *
+ * @param <T> the type of the bound data
+ */
+public interface TypedPayload<T> {
+    /**
+     * Get the type of the event.
+     *
+     * @return the event type
+     */
+    String getType();
+
+    /**
+     * Get the user that the event is for, if available.
+     *
+     * @return {@link Optional} containing the user for the event
+     */
+    Optional<User> getUser();
+
+    /**
+     * Get the data sent with the event, bound to its model classes.
+     *
+     * @return the bound data
+     */
+    T getData();
+
+    /**
+     * Get every top-level field of the payload other than its data, such as {@code type},
+     * {@code user} and {@code version}.
+     *
+     * @return the payload without its data
+     */
+    JsonNode getEnvelope();
+}
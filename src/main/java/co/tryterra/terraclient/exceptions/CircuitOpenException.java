@@ -0,0 +1,27 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.exceptions;
+
+/**
+ * Exception used to fail a request without sending it because the circuit breaker for its
+ * endpoint is open after too many recent requests to it have failed.
+ */
+public class CircuitOpenException extends TerraException {
+    public CircuitOpenException(String text) {
+        super(text);
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.exceptions;
+
+/**
+ * Exception thrown when a webhook payload can't be dispatched because the dispatch queue of the
+ * {@link co.tryterra.terraclient.WebhookHandlerUtility} is full. The webhook request should be
+ * answered with a {@code 503 Service Unavailable} status, so that Terra sends it again later.
+ */
+public class WebhookQueueFullException extends TerraRuntimeException {
+    public WebhookQueueFullException(String text) {
+        super(text);
+    }
+}
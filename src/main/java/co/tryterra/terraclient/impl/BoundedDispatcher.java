@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs tasks on an executor while limiting how many of them can be waiting to start, whatever the
+ * executor's own queue allows. Tasks offered while the limit is reached are refused, so that the
+ * caller can decide what to do with them instead of letting the queue grow without bound.
+ */
+public class BoundedDispatcher {
+    private final ExecutorService executor;
+    private final LongSupplier nanoClock;
+    private volatile int capacity;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong dispatchedTasks = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public BoundedDispatcher(ExecutorService executor, int capacity) {
+        this(executor, capacity, System::nanoTime);
+    }
+
+    BoundedDispatcher(ExecutorService executor, int capacity, LongSupplier nanoClock) {
+        this.executor = executor;
+        this.nanoClock = nanoClock;
+        setCapacity(capacity);
+    }
+
+    /**
+     * Changes how many tasks can wait to start. Tasks that are already waiting stay queued even if
+     * there are more of them than the new capacity, and no new tasks are accepted until enough of
+     * them have started.
+     *
+     * @param capacity the largest number of tasks that can wait to start
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues a task to run on the executor, unless as many tasks as the capacity allows are
+     * already waiting to start or the executor refuses it.
+     *
+     * @param task the task to run
+     * @return whether the task was queued
+     */
+    public boolean offer(Runnable task) {
+        if (queueDepth.incrementAndGet() > capacity) {
+            queueDepth.decrementAndGet();
+            return false;
+        }
+        long queuedAt = nanoClock.getAsLong();
+        try {
+            executor.submit(() -> {
+                queueDepth.decrementAndGet();
+                long waited = nanoClock.getAsLong() - queuedAt;
+                totalWaitNanos.addAndGet(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                dispatchedTasks.incrementAndGet();
+                task.run();
+            });
+            return true;
+        } catch (RejectedExecutionException ex) {
+            queueDepth.decrementAndGet();
+            return false;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public long getDispatchedTasks() {
+        return dispatchedTasks.get();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.get();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl;
+
+import co.tryterra.terraclient.api.annotations.Nullable;
+import co.tryterra.terraclient.transport.ContentDecoder;
+import co.tryterra.terraclient.transport.TransportResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A response whose body is decoded according to its {@code Content-Encoding} header as it is read,
+ * and which keeps count of the number of bytes read before and after decoding. Bodies with a
+ * coding that has no decoder are passed through unchanged.
+ */
+public class DecodingResponse implements TransportResponse {
+    private final TransportResponse delegate;
+    private final ContentDecoder decoder;
+    private final Consumer<DecodingResponse> onClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private CountingInputStream wireBody;
+    private CountingInputStream decodedBody;
+    private boolean bodyOpened = false;
+
+    public DecodingResponse(TransportResponse delegate, Map<String, ContentDecoder> decoders,
+                            Consumer<DecodingResponse> onClose) {
+        this.delegate = delegate;
+        var encoding = delegate.header("Content-Encoding");
+        this.decoder = encoding == null ? null : decoders.get(encoding.trim().toLowerCase(Locale.ROOT));
+        this.onClose = onClose;
+    }
+
+    @Override
+    public int code() {
+        return delegate.code();
+    }
+
+    @Override
+    public String header(String name) {
+        return delegate.header(name);
+    }
+
+    @Override
+    @Nullable
+    public synchronized InputStream body() {
+        if (!bodyOpened) {
+            bodyOpened = true;
+            var raw = delegate.body();
+            if (raw != null) {
+                wireBody = new CountingInputStream(raw);
+                decodedBody = decoder == null ? wireBody : new CountingInputStream(new LazyDecodedStream(wireBody));
+            }
+        }
+        return decodedBody;
+    }
+
+    /**
+     * The length of the body, which is only known if it was not encoded.
+     *
+     * @return the body length, or {@code -1} if it is not known
+     */
+    @Override
+    public long contentLength() {
+        return decoder == null ? delegate.contentLength() : -1;
+    }
+
+    /**
+     * Whether the body was encoded with a coding that it is being decoded from.
+     *
+     * @return whether the body is decoded
+     */
+    public boolean isDecoded() {
+        return decoder != null;
+    }
+
+    /**
+     * The number of bytes of the body that have been read from the transport so far.
+     *
+     * @return the number of bytes received
+     */
+    public synchronized long getWireBytes() {
+        return wireBody == null ? 0 : wireBody.getCount();
+    }
+
+    /**
+     * The number of bytes of the body that have been read after decoding so far.
+     *
+     * @return the number of decoded bytes
+     */
+    public synchronized long getDecodedBytes() {
+        return decodedBody == null ? 0 : decodedBody.getCount();
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            delegate.close();
+            onClose.accept(this);
+        }
+    }
+
+    /**
+     * Creates the decoding stream on the first read, as decoders may block to read a header.
+     */
+    private class LazyDecodedStream extends InputStream {
+        private final InputStream encoded;
+        private InputStream decoded;
+
+        LazyDecodedStream(InputStream encoded) {
+            this.encoded = encoded;
+        }
+
+        private InputStream decoded() throws IOException {
+            if (decoded == null) {
+                decoded = decoder.decode(encoded);
+            }
+            return decoded;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return decoded().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return decoded().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return decoded == null ? 0 : decoded.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (decoded != null) {
+                decoded.close();
+            } else {
+                encoded.close();
+            }
+        }
+    }
+}
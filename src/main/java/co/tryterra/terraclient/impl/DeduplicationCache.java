@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the payloads that have been seen recently, so that repeated deliveries of the same
+ * payload can be dropped. Payloads are identified by the first 128 bits of their SHA-256 hash,
+ * and are forgotten once they are older than the cache's time to live or once the cache is full,
+ * oldest first.
+ */
+public class DeduplicationCache {
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<Key, Long> seenAt = new LinkedHashMap<>();
+    private final LongAdder duplicates = new LongAdder();
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(DeduplicationCache::newDigest);
+
+    public DeduplicationCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, System::nanoTime);
+    }
+
+    DeduplicationCache(int maxEntries, Duration ttl, LongSupplier nanoClock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Missing algorithm: SHA-256", ex);
+        }
+    }
+
+    /**
+     * Records that a payload has been seen.
+     *
+     * @param payload the raw payload
+     * @return {@code true} if the payload has not been seen within the time to live, or {@code false}
+     * if it is a duplicate
+     */
+    public boolean markSeen(byte[] payload) {
+        var key = keyOf(payload);
+        long now = nanoClock.getAsLong();
+        synchronized (seenAt) {
+            evictExpired(now);
+            if (seenAt.containsKey(key)) {
+                duplicates.increment();
+                return false;
+            }
+            seenAt.put(key, now);
+            if (seenAt.size() > maxEntries) {
+                var eldest = seenAt.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Forgets a payload, so that it is no longer a duplicate if it is seen again. This is used
+     * when a payload could not be handled after all.
+     *
+     * @param payload the raw payload
+     */
+    public void forget(byte[] payload) {
+        var key = keyOf(payload);
+        synchronized (seenAt) {
+            seenAt.remove(key);
+        }
+    }
+
+    private Key keyOf(byte[] payload) {
+        var hash = ByteBuffer.wrap(digests.get().digest(payload));
+        return new Key(hash.getLong(), hash.getLong());
+    }
+
+    private void evictExpired(long now) {
+        // Entries are kept in the order they were seen, so expired ones are always at the front
+        Iterator<Map.Entry<Key, Long>> entries = seenAt.entrySet().iterator();
+        while (entries.hasNext() && now - entries.next().getValue() >= ttlNanos) {
+            entries.remove();
+        }
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    public int size() {
+        synchronized (seenAt) {
+            return seenAt.size();
+        }
+    }
+
+    private static final class Key {
+        private final long high;
+        private final long low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            var other = (Key) o;
+            return high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high * 31 + low);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the units of work that are in progress, so that a component can stop accepting new work
+ * and then wait for the work it has already accepted to finish.
+ */
+public class InFlightWork {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final CompletableFuture<Void> drained = new CompletableFuture<>();
+    private volatile boolean shutdown = false;
+
+    /**
+     * Starts a unit of work, unless shutdown has begun. Every successful call must be followed by
+     * exactly one call to {@link #finish()}.
+     *
+     * @return whether the work was accepted
+     */
+    public boolean tryStart() {
+        inFlight.incrementAndGet();
+        if (shutdown) {
+            finish();
+            return false;
+        }
+        return true;
+    }
+
+    public void finish() {
+        if (inFlight.decrementAndGet() == 0 && shutdown) {
+            drained.complete(null);
+        }
+    }
+
+    /**
+     * Stops accepting new work.
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (inFlight.get() == 0) {
+            drained.complete(null);
+        }
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Waits for the work in progress to finish after {@link #shutdown()} has been called.
+     *
+     * @param timeout the longest time to wait
+     * @return whether all work finished within the timeout
+     */
+    public boolean awaitDrained(Duration timeout) {
+        try {
+            drained.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException ex) {
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
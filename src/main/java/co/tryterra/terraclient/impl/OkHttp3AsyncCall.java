@@ -29,13 +29,21 @@ public class OkHttp3AsyncCall implements Callback, Future<Response> {
 
     public OkHttp3AsyncCall(Call call) {
         this.call = call;
+        this.future = new CompletableFuture<>();
+        // Cancelling the stage returned by asCompletionStage() should also abort the exchange
+        this.future.whenComplete((response, ex) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
         call.enqueue(this);
-        future = new CompletableFuture<>();
     }
 
     @Override
     public void onResponse(Call call, Response response) {
-        future.complete(response);
+        if (!future.complete(response)) {
+            response.close();
+        }
     }
 
     @Override
@@ -16,20 +16,23 @@
 
 package co.tryterra.terraclient.impl;
 
+import co.tryterra.terraclient.RequestConfig;
 import co.tryterra.terraclient.api.PartialUser;
 import co.tryterra.terraclient.api.TerraApiResponse;
 import co.tryterra.terraclient.exceptions.TerraRuntimeException;
 import co.tryterra.terraclient.impl.v2.RestClientV2;
+import co.tryterra.terraclient.transport.TransportResponse;
 import co.tryterra.terraclient.api.User;
 import co.tryterra.terraclient.exceptions.BodyParsingException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Data;
-import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -43,12 +46,19 @@ public class ResponseBodyParser<T> {
     private final String key;
     private final Class<T> parseTo;
     private final RestClientV2 restClient;
+    private final RequestConfig.ParseMode parseMode;
+    private CountingInputStream countingBody;
 
     public ResponseBodyParser(PartialUser user, String key, Class<T> parseTo, RestClientV2 restClient) {
+        this(user, key, parseTo, restClient, RequestConfig.ParseMode.TREE);
+    }
+
+    public ResponseBodyParser(PartialUser user, String key, Class<T> parseTo, RestClientV2 restClient, RequestConfig.ParseMode parseMode) {
         this.user = user;
         this.key = key;
         this.parseTo = parseTo;
         this.restClient = restClient;
+        this.parseMode = parseMode;
     }
 
     @Data
@@ -67,14 +77,20 @@ public class ResponseBodyParser<T> {
         }
     }
 
-    ParsedResponse<T> parseResponse(Response response) throws BodyParsingException {
+    ParsedResponse<T> parseResponse(TransportResponse response) throws BodyParsingException {
         if (response.body() == null) {
             throw new BodyParsingException("No body returned in response");
         }
 
+        if (parseMode == RequestConfig.ParseMode.STREAMING && response.isSuccessful()
+                && key != null && !key.equals("listProvidersAPIRoot") && !parseTo.equals(Void.class)) {
+            return parseResponseStreaming(response);
+        }
+
         JsonNode rawBody;
         try (response) {
-            rawBody = restClient.getObjectMapper().readTree(response.body().string());
+            countingBody = new CountingInputStream(response.body());
+            rawBody = restClient.getObjectMapper().readTree(countingBody);
         } catch (IOException ex) {
             throw new BodyParsingException(ex);
         }
@@ -125,10 +141,37 @@ public class ResponseBodyParser<T> {
         return new ParsedResponse<>(rawBody, parsed, newUser);
     }
 
-    public TerraApiResponse<T> toTerraApiResponse(Response response) {
+    ParsedResponse<T> parseResponseStreaming(TransportResponse response) throws BodyParsingException {
+        var parsed = new ArrayList<T>();
+        ObjectNode envelope;
+        boolean keyFound;
+        countingBody = new CountingInputStream(response.body());
+        try (response; var reader = new StreamingResponseReader<>(
+                restClient.getObjectMapper().getFactory().createParser(countingBody),
+                restClient.getObjectMapper(), key, parseTo)) {
+            T item;
+            while ((item = reader.readNext()) != null) {
+                parsed.add(item);
+            }
+            envelope = reader.getEnvelope();
+            keyFound = reader.isKeyFound();
+        } catch (IOException ex) {
+            throw new BodyParsingException(ex);
+        }
+
+        User newUser = null;
+        if (user != null && envelope.get("user") != null) {
+            newUser = new UserImpl(envelope.get("user"), null, null, null, null, null);
+        }
+        return new ParsedResponse<>(envelope, keyFound ? parsed : null, newUser);
+    }
+
+    public TerraApiResponse<T> toTerraApiResponse(TransportResponse response) {
         try {
             var parsed = parseResponse(response);
-            return new TerraApiResponseImpl<>(response, parsed.getParsedBody(), parsed.getRawBody(), parsed.getUser());
+            return new TerraApiResponseImpl<>(
+                    response, parsed.getParsedBody(), parsed.getRawBody(), parsed.getUser(), countingBody.getCount()
+            );
         } catch (BodyParsingException e) {
             throw new TerraRuntimeException(e);
         }
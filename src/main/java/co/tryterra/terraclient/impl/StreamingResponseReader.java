@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl;
+
+import co.tryterra.terraclient.exceptions.BodyParsingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads a JSON response body token by token, binding each item found under the given key
+ * directly into its model class. Every other top-level field is collected into a small
+ * envelope object, which is complete once all items have been read.
+ *
+ * @param <T> the type that items are bound to
+ */
+public class StreamingResponseReader<T> implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingResponseReader.class);
+
+    private final JsonParser parser;
+    private final ObjectMapper objectMapper;
+    private final String key;
+    private final Class<T> parseTo;
+    private final ObjectNode envelope;
+
+    private boolean started = false;
+    private boolean finished = false;
+    private boolean keyFound = false;
+    private JsonStreamContext arrayContext = null;
+
+    public StreamingResponseReader(JsonParser parser, ObjectMapper objectMapper, String key, Class<T> parseTo) {
+        this.parser = parser;
+        this.objectMapper = objectMapper;
+        this.key = key;
+        this.parseTo = parseTo;
+        this.envelope = objectMapper.createObjectNode();
+    }
+
+    /**
+     * Reads the next item from the body, skipping any items that could not be bound to the
+     * model class.
+     *
+     * @return the next item, or {@code null} if the end of the body has been reached
+     * @throws BodyParsingException if the body is not valid JSON or is not a JSON object
+     */
+    public T readNext() throws BodyParsingException {
+        try {
+            if (!started) {
+                started = true;
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new BodyParsingException("Response body is not a JSON object");
+                }
+            }
+
+            while (true) {
+                if (arrayContext != null) {
+                    var token = parser.nextToken();
+                    if (token == null) {
+                        throw new BodyParsingException("Unexpected end of response body");
+                    }
+                    if (token == JsonToken.END_ARRAY) {
+                        arrayContext = null;
+                        continue;
+                    }
+                    var item = readArrayItem();
+                    if (item != null) {
+                        return item;
+                    }
+                    continue;
+                }
+
+                if (finished) {
+                    return null;
+                }
+
+                var token = parser.nextToken();
+                if (token != JsonToken.FIELD_NAME) {
+                    finished = true;
+                    return null;
+                }
+                var name = parser.getCurrentName();
+                token = parser.nextToken();
+
+                if (!keyFound && name.equals(key)) {
+                    if (token == JsonToken.VALUE_NULL) {
+                        continue;
+                    }
+                    keyFound = true;
+                    if (token == JsonToken.START_ARRAY) {
+                        arrayContext = parser.getParsingContext();
+                        continue;
+                    }
+                    logger.debug("Inner key is not an array, attempting to parse it into a single object");
+                    var item = objectMapper.readValue(parser, parseTo);
+                    if (item != null) {
+                        return item;
+                    }
+                    continue;
+                }
+
+                envelope.set(name, objectMapper.readTree(parser));
+            }
+        } catch (IOException ex) {
+            throw new BodyParsingException(ex);
+        }
+    }
+
+    T readArrayItem() throws IOException {
+        try {
+            return objectMapper.readValue(parser, parseTo);
+        } catch (JsonProcessingException ex) {
+            logger.debug("Could not parse node to object successfully", ex);
+            // Skip over whatever is left of the item so that reading can continue from the next one
+            while (parser.getParsingContext() != arrayContext) {
+                if (parser.nextToken() == null) {
+                    throw ex;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Whether the key was present in the body with a non-null value. This is only accurate once the
+     * end of the body has been reached.
+     *
+     * @return whether the key was found
+     */
+    public boolean isKeyFound() {
+        return keyFound;
+    }
+
+    /**
+     * The top-level fields of the body other than the key. This is only complete once the end of
+     * the body has been reached.
+     *
+     * @return the envelope of the body
+     */
+    public ObjectNode getEnvelope() {
+        return envelope;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -19,21 +19,47 @@ package co.tryterra.terraclient.impl;
 import co.tryterra.terraclient.api.TerraApiResponse;
 import co.tryterra.terraclient.api.User;
 import com.fasterxml.jackson.databind.JsonNode;
-import okhttp3.Response;
+import co.tryterra.terraclient.transport.TransportResponse;
 
+import java.util.Collections;
 import java.util.List;
 
 public class TerraApiResponseImpl<T> implements TerraApiResponse<T> {
-    private final Response response;
+    private final TransportResponse response;
     private final List<T> parsed;
     private final JsonNode rawBody;
     private final User user;
+    private final long bodyBytes;
 
-    public TerraApiResponseImpl(Response response, List<T> parsed, JsonNode rawBody, User user) {
+    public TerraApiResponseImpl(TransportResponse response, List<T> parsed, JsonNode rawBody, User user) {
+        this(response, parsed, rawBody, user, -1);
+    }
+
+    public TerraApiResponseImpl(TransportResponse response, List<T> parsed, JsonNode rawBody, User user, long bodyBytes) {
         this.response = response;
-        this.parsed = parsed;
+        this.parsed = parsed == null ? null : Collections.unmodifiableList(parsed);
         this.rawBody = rawBody;
         this.user = user;
+        this.bodyBytes = bodyBytes;
+    }
+
+    /**
+     * The number of bytes of response body that were read to produce this response.
+     *
+     * @return the size of the response body, or {@code -1} if it is not known
+     */
+    public long getBodyBytes() {
+        return bodyBytes;
+    }
+
+    @Override
+    public long getWireBytes() {
+        return response instanceof DecodingResponse ? ((DecodingResponse) response).getWireBytes() : bodyBytes;
+    }
+
+    @Override
+    public long getDecodedBytes() {
+        return bodyBytes;
     }
 
     @Override
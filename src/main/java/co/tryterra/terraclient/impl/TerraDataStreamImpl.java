@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.tryterra.terraclient.impl;
+
+import co.tryterra.terraclient.api.TerraDataStream;
+import co.tryterra.terraclient.api.User;
+import co.tryterra.terraclient.exceptions.BodyParsingException;
+import co.tryterra.terraclient.exceptions.TerraRuntimeException;
+import com.fasterxml.jackson.databind.JsonNode;
+import co.tryterra.terraclient.transport.TransportResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class TerraDataStreamImpl<T> implements TerraDataStream<T> {
+    private static final Logger logger = LoggerFactory.getLogger(TerraDataStreamImpl.class);
+
+    private final TransportResponse response;
+    private final StreamingResponseReader<T> reader;
+    private final JsonNode errorBody;
+
+    private T nextItem = null;
+    private boolean exhausted = false;
+    private User user = null;
+
+    public TerraDataStreamImpl(TransportResponse response, ObjectMapper objectMapper, String key, Class<T> parseTo) {
+        this.response = response;
+        if (response.body() == null) {
+            response.close();
+            throw new TerraRuntimeException(new BodyParsingException("No body returned in response"));
+        }
+
+        try {
+            if (!response.isSuccessful()) {
+                try (response) {
+                    this.errorBody = objectMapper.readTree(response.body());
+                }
+                this.reader = null;
+                this.exhausted = true;
+            } else {
+                this.errorBody = null;
+                this.reader = new StreamingResponseReader<>(
+                        objectMapper.getFactory().createParser(response.body()),
+                        objectMapper, key, parseTo
+                );
+            }
+        } catch (IOException ex) {
+            response.close();
+            throw new TerraRuntimeException(new BodyParsingException(ex));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextItem != null) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+
+        try {
+            nextItem = reader.readNext();
+        } catch (BodyParsingException ex) {
+            close();
+            throw new TerraRuntimeException(ex);
+        }
+        if (nextItem == null) {
+            var userNode = reader.getEnvelope().get("user");
+            if (userNode != null && !userNode.isNull()) {
+                user = new UserImpl(userNode, null, null, null, null, null);
+            }
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var item = nextItem;
+        nextItem = null;
+        return item;
+    }
+
+    @Override
+    public int getResponseCode() {
+        return response.code();
+    }
+
+    @Override
+    public boolean isSuccessful() {
+        return response.isSuccessful();
+    }
+
+    @Override
+    public JsonNode getRawBody() {
+        return errorBody == null ? reader.getEnvelope() : errorBody;
+    }
+
+    @Override
+    public User getUser() {
+        return user;
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+                false
+        ).onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        exhausted = true;
+        nextItem = null;
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                logger.debug("Could not close response body parser", ex);
+            }
+        }
+        response.close();
+    }
+}
@@ -37,20 +37,43 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+/**
+ * A webhook payload backed by its parsed JSON tree. Each view of the payload is bound from the
+ * tree the first time it is asked for and then kept, so that handlers sharing a payload don't
+ * repeat the work.
+ */
 public class TerraWebhookPayloadImpl implements TerraWebhookPayload {
     private static final Logger logger = LoggerFactory.getLogger(TerraWebhookPayloadImpl.class);
 
     private final JsonNode rawBody;
     private final ObjectMapper objectMapper;
+    private final String type;
+    private final Map<String, Optional<?>> views = new ConcurrentHashMap<>();
+    private volatile Optional<User> user;
 
     public TerraWebhookPayloadImpl(JsonNode rawBody, ObjectMapper objectMapper) {
         this.rawBody = rawBody;
         this.objectMapper = objectMapper;
+        this.type = rawBody.get("type") == null ? null : rawBody.get("type").asText();
+    }
+
+    /**
+     * Binds a view of the payload once, if the payload is of the given type.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Optional<T> view(String viewType, Supplier<Optional<T>> bind) {
+        if (!viewType.equals(type)) {
+            return Optional.empty();
+        }
+        return (Optional<T>) views.computeIfAbsent(viewType, ignored -> bind.get());
     }
 
     <T> T jsonNodeToObject(JsonNode node, Class<T> parseTo) {
@@ -80,114 +103,83 @@ public class TerraWebhookPayloadImpl implements TerraWebhookPayload {
 
     @Override
     public String getType() {
-        return rawBody.get("type").asText();
+        return type;
     }
 
     @Override
     public Optional<User> getUser() {
-        if (rawBody.get("user") == null) {
-            return Optional.empty();
+        var parsedUser = user;
+        if (parsedUser == null) {
+            parsedUser = rawBody.get("user") == null
+                    ? Optional.empty()
+                    : Optional.ofNullable(jsonNodeToObject(rawBody.get("user"), UserImpl.class));
+            user = parsedUser;
         }
-        return Optional.ofNullable(jsonNodeToObject(rawBody.get("user"), UserImpl.class));
+        return parsedUser;
     }
 
     @Override
     public Optional<AuthData> asAuthData() {
-        if (!getType().equals("auth")) {
-            return Optional.empty();
-        }
-        return Optional.of(new AuthData(
-                jsonNodeToObject(rawBody.get("user"), UserImpl.class),
+        return view("auth", () -> Optional.of(new AuthData(
+                getUser().orElse(null),
                 jsonNodeToObject(rawBody.get("reference_id"), String.class),
                 jsonNodeToObject(rawBody.get("widget_session_id"), String.class)
-        ));
+        )));
     }
-    
+
     @Override
     public Optional<DeauthData> asDeauthData() {
-        if (!getType().equals("deauth")) {
-            return Optional.empty();
-        }
-        return Optional.of(new DeauthData(
-                jsonNodeToObject(rawBody.get("user"), UserImpl.class)
-        ));
+        return view("deauth", () -> Optional.of(new DeauthData(getUser().orElse(null))));
     }
 
     @Override
     public Optional<ReauthData> asReauthData() {
-        if (!getType().equals("user_reauth")) {
-            return Optional.empty();
-        }
-        return Optional.of(new ReauthData(
+        return view("user_reauth", () -> Optional.of(new ReauthData(
                 jsonNodeToObject(rawBody.get("old_user"), UserImpl.class),
                 jsonNodeToObject(rawBody.get("new_user"), UserImpl.class)
-        ));
+        )));
     }
 
     @Override
     public Optional<Athlete> asAthlete() {
-        if (!getType().equals("athlete")) {
-            return Optional.empty();
-        }
-        return Optional.ofNullable(jsonNodeToObject(rawBody.get("athlete"), Athlete.class));
+        return view("athlete", () -> Optional.ofNullable(jsonNodeToObject(rawBody.get("athlete"), Athlete.class)));
     }
 
     @Override
     public Optional<List<Activity>> asActivityV2() {
-        if (!getType().equals("activity")) {
-            return Optional.empty();
-        }
-        return Optional.of(parseDataAsList(rawBody.get("data"), Activity.class));
+        return view("activity", () -> Optional.of(parseDataAsList(rawBody.get("data"), Activity.class)));
     }
 
     @Override
     public Optional<List<Body>> asBodyV2() {
-        if (!getType().equals("body")) {
-            return Optional.empty();
-        }
-        return Optional.of(parseDataAsList(rawBody.get("data"), Body.class));
+        return view("body", () -> Optional.of(parseDataAsList(rawBody.get("data"), Body.class)));
     }
 
     @Override
     public Optional<List<Daily>> asDailyV2() {
-        if (!getType().equals("daily")) {
-            return Optional.empty();
-        }
-        return Optional.of(parseDataAsList(rawBody.get("data"), Daily.class));
+        return view("daily", () -> Optional.of(parseDataAsList(rawBody.get("data"), Daily.class)));
     }
 
     @Override
     public Optional<List<Menstruation>> asMenstruationV2() {
-        if (!getType().equals("menstruation")) {
-            return Optional.empty();
-        }
-        return Optional.of(parseDataAsList(rawBody.get("data"), Menstruation.class));
+        return view("menstruation", () -> Optional.of(parseDataAsList(rawBody.get("data"), Menstruation.class)));
     }
 
     @Override
     public Optional<List<Nutrition>> asNutritionV2() {
-        if (!getType().equals("nutrition")) {
-            return Optional.empty();
-        }
-        return Optional.of(parseDataAsList(rawBody.get("data"), Nutrition.class));
+        return view("nutrition", () -> Optional.of(parseDataAsList(rawBody.get("data"), Nutrition.class)));
     }
 
     @Override
     public Optional<List<Sleep>> asSleepV2() {
-        if (!getType().equals("sleep")) {
-            return Optional.empty();
-        }
-        return Optional.of(parseDataAsList(rawBody.get("data"), Sleep.class));
+        return view("sleep", () -> Optional.of(parseDataAsList(rawBody.get("data"), Sleep.class)));
     }
 
     @Override
     public Optional<RequestProcessing> asRequestProcessing() {
-        if (!getType().equals("request_processing")) {
-            return Optional.empty();
-        }
-        return Optional.of(new RequestProcessing(
-                jsonNodeToObject(rawBody.get("user"), UserImpl.class),
+        return view("request_processing", () -> Optional.of(new RequestProcessing(
+                getUser().orElse(null),
                 jsonNodeToObject(rawBody.get("reference"), String.class)
-        ));
+        )));
     }
 }
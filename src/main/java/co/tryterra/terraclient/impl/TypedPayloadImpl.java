@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl;
+
+import co.tryterra.terraclient.api.TypedPayload;
+import co.tryterra.terraclient.api.User;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Optional;
+
+public class TypedPayloadImpl<T> implements TypedPayload<T> {
+    private final String type;
+    private final Optional<User> user;
+    private final T data;
+    private final JsonNode envelope;
+
+    public TypedPayloadImpl(String type, Optional<User> user, T data, JsonNode envelope) {
+        this.type = type;
+        this.user = user;
+        this.data = data;
+        this.envelope = envelope;
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public Optional<User> getUser() {
+        return user;
+    }
+
+    @Override
+    public T getData() {
+        return data;
+    }
+
+    @Override
+    public JsonNode getEnvelope() {
+        return envelope;
+    }
+}
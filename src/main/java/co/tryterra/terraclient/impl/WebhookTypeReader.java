@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl;
+
+import co.tryterra.terraclient.api.annotations.Nullable;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Reads the event type of a webhook payload token by token, stopping as soon as the top-level
+ * {@code type} field has been read. Every value before it is skipped without being built, so
+ * that payloads which have no handler can be discarded without parsing the rest of them.
+ */
+public final class WebhookTypeReader {
+    private WebhookTypeReader() {}
+
+    /**
+     * Reads the event type of a webhook payload.
+     *
+     * @param factory the factory to create the parser with
+     * @param payload the raw payload
+     * @return the event type, or {@code null} if the payload has no top-level {@code type} field
+     * @throws IOException if the payload is not a JSON object, or is malformed before its type
+     */
+    @Nullable
+    public static String readType(JsonFactory factory, String payload) throws IOException {
+        try (var parser = factory.createParser(payload)) {
+            return readType(parser);
+        }
+    }
+
+    /**
+     * Reads the event type of a webhook payload.
+     *
+     * @param factory the factory to create the parser with
+     * @param payload the raw payload bytes
+     * @return the event type, or {@code null} if the payload has no top-level {@code type} field
+     * @throws IOException if the payload is not a JSON object, or is malformed before its type
+     */
+    @Nullable
+    public static String readType(JsonFactory factory, byte[] payload) throws IOException {
+        try (var parser = factory.createParser(payload)) {
+            return readType(parser);
+        }
+    }
+
+    private static String readType(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Webhook payload is not a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean isType = "type".equals(parser.getCurrentName());
+            var value = parser.nextToken();
+            if (isType) {
+                return value.isScalarValue() && value != JsonToken.VALUE_NULL ? parser.getValueAsString() : null;
+            }
+            parser.skipChildren();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Limits the number of requests in flight, adjusting the limit from the response times and
+ * rejections it observes in the style of TCP Vegas. The fastest recent response time is taken to
+ * be the time a request takes without queueing, and the limit grows while responses stay close to
+ * it and shrinks once they slow down, which means requests are queueing somewhere between the
+ * client and the API. Rate limited and failed responses shrink the limit multiplicatively.
+ * <br>
+ * When the API retries rate limited requests itself (the {@code retry_if_rate_limited} flag), those
+ * requests are held by the API instead of being rejected, so they show up here as slower responses
+ * and shrink the limit in the same way.
+ */
+public class AdaptiveConcurrencyLimiter {
+    // The fastest response time is forgotten after this many samples, so that it can recover if the API gets slower
+    static final int NO_LOAD_RTT_RESET_SAMPLES = 1000;
+    static final double DROP_BACKOFF_RATIO = 0.75;
+
+    private final Config config;
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight = 0;
+    private long noLoadRttNanos = 0;
+    private int samples = 0;
+
+    /**
+     * Outcomes of a request sent through the limiter.
+     */
+    public enum Outcome {
+        /**
+         * The API responded without rejecting the request.
+         */
+        SUCCESS,
+        /**
+         * The request was rate limited, failed with a server error, or could not be sent.
+         */
+        DROPPED,
+        /**
+         * The request ended without telling anything about the API's load, for example because it was cancelled.
+         */
+        IGNORED
+    }
+
+    /**
+     * The bounds of the limit.
+     */
+    public static class Config {
+        private final int initialLimit;
+        private final int minLimit;
+        private final int maxLimit;
+
+        /**
+         * Creates a new config.
+         *
+         * @param initialLimit the limit to start with
+         * @param minLimit the lowest the limit can go
+         * @param maxLimit the highest the limit can go
+         */
+        public Config(int initialLimit, int minLimit, int maxLimit) {
+            if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+                throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+            }
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+    }
+
+    public AdaptiveConcurrencyLimiter(Config config) {
+        this.config = config;
+        this.limit = config.initialLimit;
+    }
+
+    /**
+     * Waits for a request to be allowed in flight. Every acquired slot must be given back with
+     * {@link #release(long, Outcome)}, even if the request is no longer needed by the time it is acquired.
+     *
+     * @return future that completes once the request can be sent
+     */
+    public synchronized CompletableFuture<Void> acquire() {
+        if (waiters.isEmpty() && inFlight < (int) limit) {
+            inFlight++;
+            return CompletableFuture.completedFuture(null);
+        }
+        var waiter = new CompletableFuture<Void>();
+        waiters.add(waiter);
+        return waiter;
+    }
+
+    /**
+     * Gives back a slot once its request has received a response, updating the limit.
+     *
+     * @param rttNanos the time from sending the request until its response arrived
+     * @param outcome the outcome of the request
+     */
+    public void release(long rttNanos, Outcome outcome) {
+        var ready = new ArrayDeque<CompletableFuture<Void>>();
+        synchronized (this) {
+            update(rttNanos, outcome);
+            inFlight--;
+            while (!waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                ready.add(waiters.poll());
+            }
+        }
+        // Completed outside the lock, as the waiters go on to send their requests
+        ready.forEach(waiter -> waiter.complete(null));
+    }
+
+    private void update(long rttNanos, Outcome outcome) {
+        if (outcome == Outcome.IGNORED) {
+            return;
+        }
+        if (outcome == Outcome.DROPPED) {
+            limit = Math.max(config.minLimit, limit * DROP_BACKOFF_RATIO);
+            return;
+        }
+
+        if (++samples >= NO_LOAD_RTT_RESET_SAMPLES) {
+            samples = 0;
+            noLoadRttNanos = 0;
+        }
+        if (noLoadRttNanos == 0 || rttNanos < noLoadRttNanos) {
+            noLoadRttNanos = rttNanos;
+        }
+        // Responses can't say anything about a higher limit while most of the current one is unused
+        if (inFlight * 2 < limit) {
+            return;
+        }
+
+        double queued = limit * (1 - (double) noLoadRttNanos / Math.max(rttNanos, 1));
+        double step = Math.max(1, Math.log10(limit));
+        if (queued < 3 * step) {
+            limit = Math.min(config.maxLimit, limit + step);
+        } else if (queued > 6 * step) {
+            limit = Math.max(config.minLimit, limit - step);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
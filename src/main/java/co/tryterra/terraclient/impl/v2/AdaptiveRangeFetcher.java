@@ -0,0 +1,270 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.TerraApiResponse;
+import co.tryterra.terraclient.impl.TerraApiResponseImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Fetches a time range as a series of windows whose size adapts to the body size and latency
+ * of the windows fetched before them. Windows that time out or fail with a server error are split
+ * in half and fetched again.
+ *
+ * @param <T> the type of the data items
+ */
+class AdaptiveRangeFetcher<T> {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveRangeFetcher.class);
+
+    private static final double MAX_GROWTH = 2.0;
+    private static final double MAX_SHRINK = 0.5;
+
+    private final BiFunction<Instant, Instant, CompletableFuture<TerraApiResponse<T>>> fetchWindow;
+    private final ItemIdentity<T> identity;
+    private final Duration minWindow;
+    private final Duration maxWindow;
+    private final long targetBytes;
+    private final Duration targetLatency;
+    private final int maxConcurrency;
+
+    private final CompletableFuture<TerraApiResponse<T>> out = new CompletableFuture<>();
+    private final TreeMap<Instant, TerraApiResponse<T>> results = new TreeMap<>();
+    private final Deque<Instant[]> pending = new ArrayDeque<>();
+    private final Set<CompletableFuture<?>> running = new HashSet<>();
+    private Instant cursor;
+    private Instant endTime;
+    private Duration window;
+    private int inFlight = 0;
+    private final AtomicInteger driveRequests = new AtomicInteger();
+
+    AdaptiveRangeFetcher(
+            BiFunction<Instant, Instant, CompletableFuture<TerraApiResponse<T>>> fetchWindow,
+            ItemIdentity<T> identity,
+            Duration minWindow,
+            Duration maxWindow,
+            long targetBytes,
+            Duration targetLatency,
+            int maxConcurrency
+    ) {
+        this.fetchWindow = fetchWindow;
+        this.identity = identity;
+        this.minWindow = minWindow;
+        this.maxWindow = maxWindow;
+        this.targetBytes = targetBytes;
+        this.targetLatency = targetLatency;
+        this.maxConcurrency = maxConcurrency;
+        this.out.whenComplete((response, ex) -> cancelRunning());
+    }
+
+    private void cancelRunning() {
+        List<CompletableFuture<?>> toCancel;
+        synchronized (this) {
+            toCancel = new ArrayList<>(running);
+        }
+        toCancel.forEach(window -> window.cancel(false));
+    }
+
+    CompletableFuture<TerraApiResponse<T>> fetch(Instant startTime, Instant endTime, Duration initialWindow) {
+        synchronized (this) {
+            this.cursor = startTime;
+            this.endTime = endTime;
+            this.window = clamp(initialWindow);
+            if (!startTime.isBefore(endTime)) {
+                pending.add(new Instant[]{startTime, endTime});
+            }
+        }
+        drive();
+        return out;
+    }
+
+    Duration clamp(Duration value) {
+        if (value.compareTo(minWindow) < 0) {
+            return minWindow;
+        }
+        if (value.compareTo(maxWindow) > 0) {
+            return maxWindow;
+        }
+        return value;
+    }
+
+    synchronized Duration getWindow() {
+        return window;
+    }
+
+    /**
+     * Launches as many windows as allowed, and completes the result once every window is done. The
+     * lock is only held while deciding what to do, so that windows are sent and the result is
+     * completed without it. Only one thread runs the loop at a time, and requests made while it
+     * runs, e.g. by windows that complete straight away, are picked up by it instead of recursing.
+     */
+    private void drive() {
+        if (driveRequests.getAndIncrement() > 0) {
+            return;
+        }
+        do {
+            var toLaunch = new ArrayList<Instant[]>();
+            List<TerraApiResponse<T>> finished;
+            synchronized (this) {
+                finished = planLaunches(toLaunch);
+            }
+            for (var bounds : toLaunch) {
+                launch(bounds);
+            }
+            if (finished != null) {
+                try {
+                    out.complete(WindowedRangeFetcher.merge(finished, identity));
+                } catch (RuntimeException ex) {
+                    out.completeExceptionally(ex);
+                }
+            }
+        } while (driveRequests.decrementAndGet() > 0);
+    }
+
+    /**
+     * Picks the windows to launch next, and returns the results to merge if every window is done.
+     */
+    private List<TerraApiResponse<T>> planLaunches(List<Instant[]> toLaunch) {
+        while (!out.isDone() && inFlight < maxConcurrency) {
+            Instant[] bounds;
+            if (!pending.isEmpty()) {
+                bounds = pending.poll();
+            } else if (cursor.isBefore(endTime)) {
+                var windowEnd = cursor.plus(window);
+                if (windowEnd.isAfter(endTime)) {
+                    windowEnd = endTime;
+                }
+                bounds = new Instant[]{cursor, windowEnd};
+                cursor = windowEnd;
+            } else {
+                break;
+            }
+            inFlight++;
+            toLaunch.add(bounds);
+        }
+
+        if (!out.isDone() && inFlight == 0 && pending.isEmpty() && !cursor.isBefore(endTime)) {
+            return new ArrayList<>(results.values());
+        }
+        return null;
+    }
+
+    private void launch(Instant[] bounds) {
+        long startNanos = System.nanoTime();
+        var windowFuture = fetchWindow.apply(bounds[0], bounds[1]);
+        synchronized (this) {
+            running.add(windowFuture);
+        }
+        if (out.isDone()) {
+            windowFuture.cancel(false);
+        }
+        windowFuture.whenComplete((response, ex) -> onWindowComplete(windowFuture, bounds, startNanos, response, ex));
+    }
+
+    private void onWindowComplete(CompletableFuture<?> windowFuture, Instant[] bounds, long startNanos,
+                                  TerraApiResponse<T> response, Throwable ex) {
+        Throwable failure;
+        synchronized (this) {
+            failure = recordWindow(windowFuture, bounds, startNanos, response, ex);
+        }
+        if (failure != null) {
+            out.completeExceptionally(failure);
+            return;
+        }
+        drive();
+    }
+
+    /**
+     * Records the outcome of a window, splitting it if it should be fetched again.
+     *
+     * @return the exception to fail the whole range with, or {@code null} to carry on
+     */
+    private Throwable recordWindow(CompletableFuture<?> windowFuture, Instant[] bounds, long startNanos,
+                                   TerraApiResponse<T> response, Throwable ex) {
+        running.remove(windowFuture);
+        inFlight--;
+        if (out.isDone()) {
+            return null;
+        }
+
+        var cause = unwrap(ex);
+        boolean retryable = cause instanceof InterruptedIOException
+                || (cause == null && response.getResponseCode() >= 500);
+        if (cause != null && !retryable) {
+            return cause;
+        }
+
+        var length = Duration.between(bounds[0], bounds[1]);
+        if (retryable) {
+            var half = length.dividedBy(2);
+            if (half.compareTo(minWindow) >= 0) {
+                logger.debug("Window {} to {} failed, splitting it in half", bounds[0], bounds[1]);
+                var middle = bounds[0].plus(half);
+                pending.addFirst(new Instant[]{middle, bounds[1]});
+                pending.addFirst(new Instant[]{bounds[0], middle});
+                window = clamp(half);
+                return null;
+            }
+            if (cause != null) {
+                return cause;
+            }
+        } else {
+            adjustWindow(length, response, Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+
+        results.put(bounds[0], response);
+        return null;
+    }
+
+    void adjustWindow(Duration length, TerraApiResponse<T> response, Duration latency) {
+        long bytes = response instanceof TerraApiResponseImpl ? ((TerraApiResponseImpl<T>) response).getBodyBytes() : -1;
+
+        double factor = MAX_GROWTH;
+        if (bytes > 0) {
+            factor = Math.min(factor, (double) targetBytes / bytes);
+        }
+        if (!latency.isZero()) {
+            factor = Math.min(factor, (double) targetLatency.toNanos() / latency.toNanos());
+        }
+        factor = Math.max(MAX_SHRINK, factor);
+
+        window = clamp(Duration.ofMillis((long) (length.toMillis() * factor)));
+        logger.debug("Window of {} took {} for {} bytes, next window is {}", length, latency, bytes, window);
+    }
+
+    static Throwable unwrap(Throwable ex) {
+        while ((ex instanceof CompletionException || ex instanceof ExecutionException) && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.BulkResult;
+import co.tryterra.terraclient.api.PartialUser;
+import co.tryterra.terraclient.api.TerraApiResponse;
+import co.tryterra.terraclient.api.User;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Publishes the results of fetching data for many users, with at most a fixed number of fetches or
+ * undelivered results at once. Users are fetched round-robin across their providers, so that a
+ * slow or rate limited provider does not hold up the users of every other provider. Each result is
+ * published as soon as it completes, and only as fast as the subscriber requests them.
+ *
+ * @param <T> the type of the data items
+ */
+class BulkPublisher<T> implements Flow.Publisher<BulkResult<T>> {
+    private final Deque<PartialUser> pending;
+    private final Function<PartialUser, CompletableFuture<TerraApiResponse<T>>> fetch;
+    private final int maxConcurrency;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    BulkPublisher(Collection<? extends PartialUser> users, Function<PartialUser, CompletableFuture<TerraApiResponse<T>>> fetch,
+                  int maxConcurrency) {
+        this.pending = new ArrayDeque<>(interleaveByProvider(users));
+        this.fetch = fetch;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Orders users so that consecutive users have different providers wherever possible, keeping
+     * the original order within each provider. Users whose provider is unknown are treated as
+     * having the same provider.
+     *
+     * @param users the users to order
+     * @return the ordered users
+     */
+    static List<PartialUser> interleaveByProvider(Collection<? extends PartialUser> users) {
+        var byProvider = new LinkedHashMap<String, Deque<PartialUser>>();
+        for (var user : users) {
+            Objects.requireNonNull(user, "users cannot contain null");
+            var provider = user instanceof User ? ((User) user).getProvider() : null;
+            byProvider.computeIfAbsent(String.valueOf(provider), ignored -> new ArrayDeque<>()).add(user);
+        }
+
+        var ordered = new ArrayList<PartialUser>(users.size());
+        var queues = new ArrayList<>(byProvider.values());
+        while (!queues.isEmpty()) {
+            var iterator = queues.iterator();
+            while (iterator.hasNext()) {
+                var queue = iterator.next();
+                ordered.add(queue.poll());
+                if (queue.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super BulkResult<T>> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber cannot be null");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {}
+
+                @Override
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("A bulk fetch can only be subscribed to once"));
+            return;
+        }
+
+        var subscription = new BulkSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    private class BulkSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super BulkResult<T>> subscriber;
+        private final Deque<BulkResult<T>> ready = new ArrayDeque<>();
+        private final Set<CompletableFuture<?>> running = new HashSet<>();
+
+        private long demand = 0;
+        private int inFlight = 0;
+        private boolean cancelled = false;
+        private Throwable error = null;
+        private boolean draining = false;
+        private boolean missed = false;
+
+        BulkSubscription(Flow.Subscriber<? super BulkResult<T>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    error = new IllegalArgumentException("Requested number of results must be positive");
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            List<CompletableFuture<?>> toCancel;
+            synchronized (this) {
+                cancelled = true;
+                ready.clear();
+                toCancel = new ArrayList<>(running);
+                running.clear();
+            }
+            toCancel.forEach(future -> future.cancel(false));
+        }
+
+        void drain() {
+            synchronized (this) {
+                if (draining) {
+                    missed = true;
+                    return;
+                }
+                draining = true;
+            }
+
+            while (true) {
+                var toStart = new ArrayList<PartialUser>();
+                var toDeliver = new ArrayList<BulkResult<T>>();
+                Throwable failure;
+                boolean complete;
+                synchronized (this) {
+                    missed = false;
+                    if (cancelled) {
+                        draining = false;
+                        return;
+                    }
+                    failure = error;
+                    if (failure != null) {
+                        cancelled = true;
+                    }
+                    while (failure == null && demand > 0 && !ready.isEmpty()) {
+                        toDeliver.add(ready.poll());
+                        demand--;
+                    }
+                    // Undelivered results count towards the limit, so a slow subscriber can't make them pile up
+                    while (failure == null && !pending.isEmpty() && inFlight + ready.size() < maxConcurrency) {
+                        toStart.add(pending.poll());
+                        inFlight++;
+                    }
+                    complete = failure == null && pending.isEmpty() && inFlight == 0 && ready.isEmpty();
+                    if (complete) {
+                        cancelled = true;
+                    }
+                }
+
+                if (failure != null) {
+                    cancel();
+                    subscriber.onError(failure);
+                    return;
+                }
+                toStart.forEach(this::start);
+                toDeliver.forEach(subscriber::onNext);
+                if (complete) {
+                    subscriber.onComplete();
+                    return;
+                }
+
+                synchronized (this) {
+                    if (!missed && toStart.isEmpty() && toDeliver.isEmpty()) {
+                        draining = false;
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void start(PartialUser user) {
+            CompletableFuture<TerraApiResponse<T>> future;
+            try {
+                future = fetch.apply(user);
+            } catch (RuntimeException ex) {
+                future = CompletableFuture.failedFuture(ex);
+            }
+            synchronized (this) {
+                if (!future.isDone()) {
+                    running.add(future);
+                }
+            }
+            var started = future;
+            future.whenComplete((response, ex) -> {
+                synchronized (this) {
+                    running.remove(started);
+                    inFlight--;
+                    if (!cancelled) {
+                        ready.add(new BulkResultImpl<>(user, ex == null ? response : null, AdaptiveRangeFetcher.unwrap(ex)));
+                    }
+                }
+                drain();
+            });
+        }
+    }
+}
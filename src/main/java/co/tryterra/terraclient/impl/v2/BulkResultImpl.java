@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.BulkResult;
+import co.tryterra.terraclient.api.PartialUser;
+import co.tryterra.terraclient.api.TerraApiResponse;
+
+class BulkResultImpl<T> implements BulkResult<T> {
+    private final PartialUser user;
+    private final TerraApiResponse<T> response;
+    private final Throwable error;
+
+    BulkResultImpl(PartialUser user, TerraApiResponse<T> response, Throwable error) {
+        this.user = user;
+        this.response = response;
+        this.error = error;
+    }
+
+    @Override
+    public PartialUser getUser() {
+        return user;
+    }
+
+    @Override
+    public TerraApiResponse<T> getResponse() {
+        return response;
+    }
+
+    @Override
+    public Throwable getError() {
+        return error;
+    }
+}
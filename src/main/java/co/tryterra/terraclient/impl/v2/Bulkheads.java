@@ -0,0 +1,190 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.EndpointClass;
+import co.tryterra.terraclient.exceptions.BulkheadFullException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of requests that can run at once for each {@link EndpointClass}, with a separate
+ * queue per class. A request holds its slot from when it is sent until its response has been
+ * parsed, so that slow data requests can't use up the dispatcher or parse pool needed by
+ * authentication requests. Requests are rejected with a {@link BulkheadFullException} once their
+ * class's queue is full.
+ */
+public class Bulkheads {
+    private static final Set<String> METADATA_ENDPOINTS = Set.of("/subscriptions", "/userInfo", "/integrations");
+
+    private final Map<EndpointClass, Compartment> compartments = new EnumMap<>(EndpointClass.class);
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    /**
+     * The limits of a single bulkhead.
+     */
+    public static class Limit {
+        private final int maxConcurrent;
+        private final int maxQueued;
+
+        /**
+         * Creates a new limit.
+         *
+         * @param maxConcurrent the maximum number of requests that can run at once
+         * @param maxQueued the maximum number of requests that can wait for a slot
+         */
+        public Limit(int maxConcurrent, int maxQueued) {
+            if (maxConcurrent < 1 || maxQueued < 0) {
+                throw new IllegalArgumentException("maxConcurrent must be at least 1 and maxQueued cannot be negative");
+            }
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+        }
+    }
+
+    public Bulkheads(Map<EndpointClass, Limit> limits) {
+        limits.forEach((endpointClass, limit) -> compartments.put(endpointClass, new Compartment(endpointClass, limit)));
+    }
+
+    static EndpointClass classify(String endpoint) {
+        if (endpoint.startsWith("/auth/")) {
+            return EndpointClass.AUTH;
+        }
+        if (METADATA_ENDPOINTS.contains(endpoint)) {
+            return EndpointClass.METADATA;
+        }
+        return EndpointClass.DATA;
+    }
+
+    /**
+     * Runs a call once its endpoint's bulkhead has a free slot.
+     *
+     * @param endpoint the endpoint path of the call, e.g. {@code /activity}
+     * @param call supplier that starts the call
+     * @return future that completes with the result of the call
+     */
+    public <T> CompletableFuture<T> run(String endpoint, Supplier<CompletableFuture<T>> call) {
+        var compartment = compartments.get(classify(endpoint));
+        if (compartment == null) {
+            return call.get();
+        }
+        return compartment.submit(call);
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    private class Compartment {
+        private final EndpointClass endpointClass;
+        private final Limit limit;
+        private final Deque<Runnable> queue = new ArrayDeque<>();
+        private int running = 0;
+        private boolean draining = false;
+
+        Compartment(EndpointClass endpointClass, Limit limit) {
+            this.endpointClass = endpointClass;
+            this.limit = limit;
+        }
+
+        <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+            var out = new CompletableFuture<T>();
+            Runnable start = () -> start(call, out);
+            synchronized (this) {
+                if (running < limit.maxConcurrent) {
+                    running++;
+                } else if (queue.size() < limit.maxQueued) {
+                    queue.add(start);
+                    // A request cancelled while it is queued gives up its place in the queue straight away
+                    out.whenComplete((result, ex) -> {
+                        if (out.isCancelled()) {
+                            synchronized (this) {
+                                queue.remove(start);
+                            }
+                        }
+                    });
+                    return out;
+                } else {
+                    rejectedRequests.incrementAndGet();
+                    out.completeExceptionally(new BulkheadFullException(
+                            "Too many " + endpointClass.name().toLowerCase() + " requests are already running and queued"
+                    ));
+                    return out;
+                }
+            }
+            start.run();
+            return out;
+        }
+
+        private <T> void start(Supplier<CompletableFuture<T>> call, CompletableFuture<T> out) {
+            // Requests cancelled after they were taken off the queue are skipped without being sent
+            if (out.isDone()) {
+                release();
+                return;
+            }
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException ex) {
+                out.completeExceptionally(ex);
+                release();
+                return;
+            }
+            future.whenComplete((result, ex) -> {
+                release();
+                if (ex != null) {
+                    out.completeExceptionally(ex);
+                } else {
+                    SharedCall.completeOrClose(out, result);
+                }
+            });
+            SharedCall.propagateCancellation(out, future);
+        }
+
+        private void release() {
+            synchronized (this) {
+                running--;
+                if (draining) {
+                    // The thread that is already starting queued requests will pick up the freed slot
+                    return;
+                }
+                draining = true;
+            }
+            // Queued requests are started in a loop rather than from each other's completion, so that
+            // a run of requests that fail straight away can't grow the stack with the length of the queue
+            while (true) {
+                Runnable next;
+                synchronized (this) {
+                    if (running >= limit.maxConcurrent || queue.isEmpty()) {
+                        draining = false;
+                        return;
+                    }
+                    next = queue.poll();
+                    running++;
+                }
+                next.run();
+            }
+        }
+    }
+}
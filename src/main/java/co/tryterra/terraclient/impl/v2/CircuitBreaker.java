@@ -0,0 +1,212 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breakers for each endpoint and provider pair. A circuit opens once too many of the most
+ * recent requests through it have failed, after which requests fail fast without being sent. Once
+ * the circuit has been open for a while, a single probe request is let through, and the circuit
+ * closes again if it succeeds.
+ */
+public class CircuitBreaker {
+    private final Config config;
+    private final LongSupplier nanoClock;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    /**
+     * The settings of every circuit.
+     */
+    public static class Config {
+        private final double failureRateThreshold;
+        private final int windowSize;
+        private final int minimumCalls;
+        private final long openNanos;
+
+        /**
+         * Creates a new config.
+         *
+         * @param failureRateThreshold the fraction of recent requests that must have failed for the circuit to open
+         * @param windowSize the number of recent requests that the failure rate is computed over
+         * @param minimumCalls the number of requests that must have been made before the circuit can open
+         * @param openDuration how long the circuit stays open before a probe request is let through
+         */
+        public Config(double failureRateThreshold, int windowSize, int minimumCalls, Duration openDuration) {
+            if (!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+                throw new IllegalArgumentException("failureRateThreshold must be greater than 0 and at most 1");
+            }
+            if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+                throw new IllegalArgumentException("minimumCalls must be between 1 and windowSize");
+            }
+            if (openDuration.isNegative() || openDuration.isZero()) {
+                throw new IllegalArgumentException("openDuration must be positive");
+            }
+            this.failureRateThreshold = failureRateThreshold;
+            this.windowSize = windowSize;
+            this.minimumCalls = minimumCalls;
+            this.openNanos = openDuration.toNanos();
+        }
+    }
+
+    public CircuitBreaker(Config config) {
+        this(config, System::nanoTime);
+    }
+
+    CircuitBreaker(Config config, LongSupplier nanoClock) {
+        this.config = config;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Asks to send a request through a circuit. The outcome of every request that is let through
+     * must be reported to the returned permit.
+     *
+     * @param key the key of the circuit, made of the endpoint and the provider
+     * @return the permit for the request, or {@code null} if the circuit is open
+     */
+    public Permit tryAcquire(String key) {
+        var permit = circuits.computeIfAbsent(key, ignored -> new Circuit()).tryAcquire();
+        if (permit == null) {
+            rejectedRequests.incrementAndGet();
+        }
+        return permit;
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    private enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Permission to send a single request through a circuit.
+     */
+    public static class Permit {
+        /**
+         * Permit for a request that doesn't go through any circuit, whose outcome is ignored.
+         */
+        public static final Permit NONE = new Permit(null, 0);
+
+        private final Circuit circuit;
+        private final long generation;
+
+        private Permit(Circuit circuit, long generation) {
+            this.circuit = circuit;
+            this.generation = generation;
+        }
+
+        public void onSuccess() {
+            if (circuit != null) {
+                circuit.record(generation, true);
+            }
+        }
+
+        public void onFailure() {
+            if (circuit != null) {
+                circuit.record(generation, false);
+            }
+        }
+
+        /**
+         * Reports that the request ended without an outcome, for example because it was cancelled.
+         */
+        public void release() {
+            if (circuit != null) {
+                circuit.release(generation);
+            }
+        }
+    }
+
+    private class Circuit {
+        private final boolean[] failures = new boolean[config.windowSize];
+        private State state = State.CLOSED;
+        // Incremented on every state change, so that outcomes of requests let through in an earlier state are ignored
+        private long generation = 0;
+        private int calls = 0;
+        private int failed = 0;
+        private int next = 0;
+        private long openedAt;
+        private boolean probing = false;
+
+        synchronized Permit tryAcquire() {
+            if (state == State.OPEN) {
+                if (nanoClock.getAsLong() - openedAt < config.openNanos) {
+                    return null;
+                }
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probing) {
+                    return null;
+                }
+                probing = true;
+            }
+            return new Permit(this, generation);
+        }
+
+        synchronized void record(long permitGeneration, boolean success) {
+            if (permitGeneration != generation) {
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                transition(success ? State.CLOSED : State.OPEN);
+                return;
+            }
+
+            if (calls == failures.length) {
+                failed -= failures[next] ? 1 : 0;
+            } else {
+                calls++;
+            }
+            failures[next] = !success;
+            failed += success ? 0 : 1;
+            next = (next + 1) % failures.length;
+            if (calls >= config.minimumCalls && failed >= config.failureRateThreshold * calls) {
+                transition(State.OPEN);
+            }
+        }
+
+        synchronized void release(long permitGeneration) {
+            if (permitGeneration == generation && state == State.HALF_OPEN) {
+                probing = false;
+            }
+        }
+
+        private void transition(State newState) {
+            state = newState;
+            generation++;
+            probing = false;
+            if (newState == State.OPEN) {
+                openedAt = nanoClock.getAsLong();
+            } else if (newState == State.CLOSED) {
+                calls = 0;
+                failed = 0;
+                next = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.EndpointClass;
+import co.tryterra.terraclient.TerraExecutors;
+import co.tryterra.terraclient.api.annotations.Nullable;
+import co.tryterra.terraclient.transport.ContentDecoder;
+import co.tryterra.terraclient.transport.HttpTransport;
+import co.tryterra.terraclient.transport.OkHttpTransport;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The transport resources used by a {@link RestClientV2}. A single instance can be shared
+ * between any number of clients, in which case they will all use the same HTTP transport, parse executor, retry timer, retry budget, rate limiter, bulkheads, circuit breakers,
+ * concurrency limit, content decoders, response cache and response time and transfer statistics, and requests from
+ * clients with the same credentials can be coalesced.
+ * <br>
+ * The resources are shut down once every client using them has been shut down. Only the executors
+ * that were created by the resources themselves are stopped then, and executors that were provided
+ * to the builder are left running.
+ */
+public class ClientResources {
+    private static final Logger logger = LoggerFactory.getLogger(ClientResources.class);
+
+    private final HttpTransport transport;
+    private final ExecutorService executorService;
+    private final ScheduledExecutorService scheduler;
+    private final RetryBudget retryBudget;
+    private final RateLimiter rateLimiter;
+    private final InFlightRequests inFlightRequests = new InFlightRequests();
+    private final ResponseCache responseCache;
+    private final LatencyTracker latencyTracker = new LatencyTracker();
+    private final Bulkheads bulkheads;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Map<String, ContentDecoder> contentDecoders;
+    private final TransferStats transferStats = new TransferStats();
+    private final boolean ownsExecutorService;
+    private final boolean ownsScheduler;
+    // Set to -1 once the last client has released the resources, after which no client can retain them again
+    private final AtomicInteger clients = new AtomicInteger();
+    private volatile boolean shutdown = false;
+
+    ClientResources(Builder builder) {
+        this.transport = builder.transport == null ? new OkHttpTransport() : builder.transport;
+        this.executorService = builder.executorService == null ? createDefaultExecutor() : builder.executorService;
+        this.scheduler = builder.scheduler == null ? createDefaultScheduler() : builder.scheduler;
+        this.ownsExecutorService = builder.executorService == null;
+        this.ownsScheduler = builder.scheduler == null;
+        this.retryBudget = builder.retryBudget == null ? createDefaultRetryBudget() : builder.retryBudget;
+        this.rateLimiter = new RateLimiter(builder.endpointLimits, builder.providerLimit, scheduler);
+        this.responseCache = new ResponseCache(builder.cacheTtls, builder.cacheMaxEntries);
+        var bulkheadLimits = new EnumMap<EndpointClass, Bulkheads.Limit>(EndpointClass.class);
+        if (builder.defaultDataBulkhead) {
+            bulkheadLimits.put(EndpointClass.DATA, createDefaultDataBulkhead(transport));
+        }
+        bulkheadLimits.putAll(builder.bulkheadLimits);
+        this.bulkheads = new Bulkheads(bulkheadLimits);
+        this.circuitBreaker = builder.circuitBreakerConfig == null ? null : new CircuitBreaker(builder.circuitBreakerConfig);
+        this.concurrencyLimiter = builder.concurrencyLimit == null ? null : new AdaptiveConcurrencyLimiter(builder.concurrencyLimit);
+        this.contentDecoders = Collections.unmodifiableMap(new LinkedHashMap<>(builder.contentDecoders));
+    }
+
+    /**
+     * Builder class for {@link ClientResources} instances. Any resource that is not set will be
+     * created with its default configuration, except for bulkheads, circuit breakers and the
+     * adaptive concurrency limit, which are only used once they have been configured.
+     */
+    public static class Builder {
+        private HttpTransport transport;
+        private ExecutorService executorService;
+        private ScheduledExecutorService scheduler;
+        private RetryBudget retryBudget;
+        private final Map<String, RateLimiter.Limit> endpointLimits = new HashMap<>();
+        private RateLimiter.Limit providerLimit;
+        private final Map<String, Duration> cacheTtls = new HashMap<>();
+        private int cacheMaxEntries = 1000;
+        private final Map<EndpointClass, Bulkheads.Limit> bulkheadLimits = new EnumMap<>(EndpointClass.class);
+        private boolean defaultDataBulkhead = false;
+        private CircuitBreaker.Config circuitBreakerConfig;
+        private AdaptiveConcurrencyLimiter.Config concurrencyLimit;
+        private final Map<String, ContentDecoder> contentDecoders = new LinkedHashMap<>();
+
+        Builder() {
+            contentDecoder(ContentDecoder.gzip());
+        }
+
+        public ClientResources build() {
+            return new ClientResources(this);
+        }
+
+        public Builder httpClient(OkHttpClient value) {
+            return transport(new OkHttpTransport(value));
+        }
+
+        public Builder transport(HttpTransport value) {
+            this.transport = Objects.requireNonNull(value, "transport cannot be null");
+            return this;
+        }
+
+        public Builder executorService(ExecutorService value) {
+            this.executorService = Objects.requireNonNull(value, "executorService cannot be null");
+            return this;
+        }
+
+        public Builder scheduler(ScheduledExecutorService value) {
+            this.scheduler = Objects.requireNonNull(value, "scheduler cannot be null");
+            return this;
+        }
+
+        public Builder retryBudget(RetryBudget value) {
+            this.retryBudget = Objects.requireNonNull(value, "retryBudget cannot be null");
+            return this;
+        }
+
+        public Builder endpointRateLimit(String endpoint, RateLimiter.Limit value) {
+            this.endpointLimits.put(
+                    Objects.requireNonNull(endpoint, "endpoint cannot be null"),
+                    Objects.requireNonNull(value, "value cannot be null")
+            );
+            return this;
+        }
+
+        public Builder providerRateLimit(RateLimiter.Limit value) {
+            this.providerLimit = Objects.requireNonNull(value, "value cannot be null");
+            return this;
+        }
+
+        public Builder cacheTtl(String endpoint, Duration ttl) {
+            Objects.requireNonNull(endpoint, "endpoint cannot be null");
+            Objects.requireNonNull(ttl, "ttl cannot be null");
+            if (ttl.isNegative() || ttl.isZero()) {
+                throw new IllegalArgumentException("ttl must be positive");
+            }
+            this.cacheTtls.put(endpoint, ttl);
+            return this;
+        }
+
+        public Builder cacheMaxEntries(int value) {
+            if (value < 1) {
+                throw new IllegalArgumentException("cacheMaxEntries must be at least 1");
+            }
+            this.cacheMaxEntries = value;
+            return this;
+        }
+
+        public Builder bulkhead(EndpointClass endpointClass, Bulkheads.Limit value) {
+            this.bulkheadLimits.put(
+                    Objects.requireNonNull(endpointClass, "endpointClass cannot be null"),
+                    Objects.requireNonNull(value, "value cannot be null")
+            );
+            return this;
+        }
+
+        /**
+         * Limits data requests with the bulkhead created by {@link #createDefaultDataBulkhead(HttpTransport)},
+         * unless a different bulkhead is set for them.
+         *
+         * @return this builder
+         */
+        public Builder defaultDataBulkhead() {
+            this.defaultDataBulkhead = true;
+            return this;
+        }
+
+        public Builder circuitBreaker(CircuitBreaker.Config value) {
+            this.circuitBreakerConfig = Objects.requireNonNull(value, "value cannot be null");
+            return this;
+        }
+
+        public Builder adaptiveConcurrencyLimit(AdaptiveConcurrencyLimiter.Config value) {
+            this.concurrencyLimit = Objects.requireNonNull(value, "value cannot be null");
+            return this;
+        }
+
+        public Builder contentDecoder(ContentDecoder value) {
+            Objects.requireNonNull(value, "value cannot be null");
+            var encoding = Objects.requireNonNull(value.encoding(), "encoding cannot be null");
+            this.contentDecoders.put(encoding.toLowerCase(Locale.ROOT), value);
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a new set of resources with a default {@link OkHttpTransport} and a parse pool
+     * sized at four threads per available processor.
+     *
+     * @return the created resources
+     */
+    public static ClientResources createDefault() {
+        return builder().build();
+    }
+
+    /**
+     * Creates the default parse pool, sized at four threads per available processor.
+     *
+     * @return the created executor
+     */
+    public static ExecutorService createDefaultExecutor() {
+        return TerraExecutors.newPlatformThreadExecutor();
+    }
+
+    /**
+     * Creates the default timer used to schedule retries and rate limited requests, which runs on a
+     * single daemon thread.
+     *
+     * @return the created scheduler
+     */
+    public static ScheduledExecutorService createDefaultScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "terra-client-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates the default retry budget, which allows one retry for every five requests plus
+     * ten retries per second.
+     *
+     * @return the created retry budget
+     */
+    public static RetryBudget createDefaultRetryBudget() {
+        return new RetryBudget(0.2, 10);
+    }
+
+    /**
+     * Creates the default bulkhead for data requests, which lets them use three quarters of the
+     * transport's per-host request limit so that the rest is always left for other requests.
+     * Data requests beyond that are queued without limit.
+     *
+     * @param transport the HTTP transport whose limit the bulkhead is sized for
+     * @return the created limit
+     */
+    public static Bulkheads.Limit createDefaultDataBulkhead(HttpTransport transport) {
+        int maxConcurrent = (int) Math.max(1, transport.getMaxRequestsPerHost() * 3L / 4);
+        return new Bulkheads.Limit(maxConcurrent, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates the default circuit breaker config, which opens a circuit for 30 seconds once at
+     * least half of its last 20 requests have failed.
+     *
+     * @return the created config
+     */
+    public static CircuitBreaker.Config createDefaultCircuitBreakerConfig() {
+        return new CircuitBreaker.Config(0.5, 20, 20, Duration.ofSeconds(30));
+    }
+
+    /**
+     * Opens connections to the API ahead of time through the transport, which every client using
+     * these resources shares. Failures are logged and otherwise ignored.
+     *
+     * @param url the URL to connect to
+     * @param connections the number of connections to open
+     * @return future that completes once the connections have been opened or have failed
+     */
+    public CompletableFuture<Void> warmUp(String url, int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("connections must be at least 1");
+        }
+        return transport.warmUp(url, connections).handle((ignored, ex) -> {
+            if (ex != null) {
+                logger.debug("Could not warm up connections to {}", url, ex);
+            }
+            return null;
+        });
+    }
+
+    void retain() {
+        while (true) {
+            int count = clients.get();
+            if (count < 0 || shutdown) {
+                throw new IllegalStateException("Client resources have been shut down");
+            }
+            if (clients.compareAndSet(count, count + 1)) {
+                return;
+            }
+        }
+    }
+
+    void release() {
+        while (true) {
+            int count = clients.get();
+            int next = count <= 1 ? -1 : count - 1;
+            if (clients.compareAndSet(count, next)) {
+                if (next < 0) {
+                    shutdown();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Shuts down the transport and the executors created by these resources, without waiting for
+     * requests in flight. This is done automatically once every client using the resources has been
+     * shut down, so it only needs to be called for resources that were never given to a client.
+     */
+    public synchronized void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        rateLimiter.failWaiters(new IllegalStateException("Client resources have been shut down"));
+        transport.shutdown();
+        if (ownsExecutorService) {
+            executorService.shutdown();
+        }
+        if (ownsScheduler) {
+            // Requests still waiting on a retry, hedge or deadline timer were failed by their client
+            // when its drain timed out, so no caller is left waiting on a dropped timer. Timers
+            // scheduled after this are rejected, which fails the request that scheduled them.
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isShutdown() {
+        return shutdown || clients.get() < 0;
+    }
+
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * The OkHttp client that requests are sent with, if the transport is an {@link OkHttpTransport}.
+     *
+     * @return the HTTP client, or {@code null} if a different transport is used
+     */
+    @Nullable
+    public OkHttpClient getHttpClient() {
+        return transport instanceof OkHttpTransport ? ((OkHttpTransport) transport).getHttpClient() : null;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    InFlightRequests getInFlightRequests() {
+        return inFlightRequests;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public Bulkheads getBulkheads() {
+        return bulkheads;
+    }
+
+    /**
+     * The circuit breakers, if they were configured.
+     *
+     * @return the circuit breakers, or {@code null} if requests are not sent through circuits
+     */
+    @Nullable
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * The adaptive concurrency limiter, if one was configured.
+     *
+     * @return the limiter, or {@code null} if the number of requests in flight is not adaptively limited
+     */
+    @Nullable
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * The decoders for the content codings that responses can be sent with, by coding name.
+     * The {@code gzip} decoder is included unless it has been replaced.
+     *
+     * @return the content decoders
+     */
+    public Map<String, ContentDecoder> getContentDecoders() {
+        return contentDecoders;
+    }
+
+    LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    TransferStats getTransferStats() {
+        return transferStats;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.ClientStats;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+class ClientStatsImpl implements ClientStats {
+    private final int rateLimitQueueDepth;
+    private final long rateLimitedRequestCount;
+    private final Duration totalRateLimitWait;
+    private final Duration maxRateLimitWait;
+    private final long coalescedRequestCount;
+    private final long cacheHitCount;
+    private final long cacheMissCount;
+    private final long hedgedRequestCount;
+    private final long bulkheadRejectedRequestCount;
+    private final long circuitOpenRejectedRequestCount;
+    private final int concurrencyLimit;
+    private final Map<String, Long> wireBytesByEndpoint;
+    private final Map<String, Long> decodedBytesByEndpoint;
+
+    ClientStatsImpl(RestClientV2 restClient) {
+        var rateLimiter = restClient.getRateLimiter();
+        var responseCache = restClient.getResponseCache();
+        this.rateLimitQueueDepth = rateLimiter.getQueueDepth();
+        this.rateLimitedRequestCount = rateLimiter.getDelayedRequests();
+        this.totalRateLimitWait = Duration.ofNanos(rateLimiter.getTotalWaitNanos());
+        this.maxRateLimitWait = Duration.ofNanos(rateLimiter.getMaxWaitNanos());
+        this.coalescedRequestCount = restClient.getCoalescedRequests();
+        this.cacheHitCount = responseCache.getHits();
+        this.cacheMissCount = responseCache.getMisses();
+        this.hedgedRequestCount = restClient.getHedgedRequests();
+        this.bulkheadRejectedRequestCount = restClient.getBulkheads().getRejectedRequests();
+        var circuitBreaker = restClient.getCircuitBreaker();
+        this.circuitOpenRejectedRequestCount = circuitBreaker == null ? 0 : circuitBreaker.getRejectedRequests();
+        var concurrencyLimiter = restClient.getConcurrencyLimiter();
+        this.concurrencyLimit = concurrencyLimiter == null ? -1 : concurrencyLimiter.getLimit();
+        this.wireBytesByEndpoint = Map.copyOf(restClient.getWireBytesByEndpoint());
+        this.decodedBytesByEndpoint = Map.copyOf(restClient.getDecodedBytesByEndpoint());
+    }
+
+    @Override
+    public int getRateLimitQueueDepth() {
+        return rateLimitQueueDepth;
+    }
+
+    @Override
+    public long getRateLimitedRequestCount() {
+        return rateLimitedRequestCount;
+    }
+
+    @Override
+    public Duration getTotalRateLimitWait() {
+        return totalRateLimitWait;
+    }
+
+    @Override
+    public Duration getMaxRateLimitWait() {
+        return maxRateLimitWait;
+    }
+
+    @Override
+    public long getCoalescedRequestCount() {
+        return coalescedRequestCount;
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        return cacheMissCount;
+    }
+
+    @Override
+    public long getHedgedRequestCount() {
+        return hedgedRequestCount;
+    }
+
+    @Override
+    public long getBulkheadRejectedRequestCount() {
+        return bulkheadRejectedRequestCount;
+    }
+
+    @Override
+    public long getCircuitOpenRejectedRequestCount() {
+        return circuitOpenRejectedRequestCount;
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    @Override
+    public Map<String, Long> getWireBytesByEndpoint() {
+        return wireBytesByEndpoint;
+    }
+
+    @Override
+    public Map<String, Long> getDecodedBytesByEndpoint() {
+        return decodedBytesByEndpoint;
+    }
+
+    @Override
+    public Map<String, Double> getCompressionRatioByEndpoint() {
+        var out = new HashMap<String, Double>();
+        wireBytesByEndpoint.forEach((endpoint, wireBytes) -> {
+            if (wireBytes > 0) {
+                out.put(endpoint, decodedBytesByEndpoint.getOrDefault(endpoint, 0L) / (double) wireBytes);
+            }
+        });
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientStats{rateLimitQueueDepth=" + rateLimitQueueDepth
+                + ", rateLimitedRequestCount=" + rateLimitedRequestCount
+                + ", totalRateLimitWait=" + totalRateLimitWait
+                + ", maxRateLimitWait=" + maxRateLimitWait
+                + ", coalescedRequestCount=" + coalescedRequestCount
+                + ", cacheHitCount=" + cacheHitCount
+                + ", cacheMissCount=" + cacheMissCount
+                + ", hedgedRequestCount=" + hedgedRequestCount
+                + ", bulkheadRejectedRequestCount=" + bulkheadRejectedRequestCount
+                + ", circuitOpenRejectedRequestCount=" + circuitOpenRejectedRequestCount
+                + ", concurrencyLimit=" + concurrencyLimit
+                + ", wireBytesByEndpoint=" + wireBytesByEndpoint
+                + ", decodedBytesByEndpoint=" + decodedBytesByEndpoint + "}";
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.transport.TransportRequest;
+import co.tryterra.terraclient.transport.TransportResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Sends a request, and sends an identical second request if no response has arrived after a
+ * delay. Whichever response arrives first is used, and the other request is cancelled. The
+ * second request is only sent while the shared {@link RetryBudget} allows it.
+ */
+class HedgedCall {
+    private static final Logger logger = LoggerFactory.getLogger(HedgedCall.class);
+
+    private final Function<TransportRequest, CompletableFuture<TransportResponse>> send;
+    private final TransportRequest request;
+    private final Duration delay;
+    private final RetryBudget retryBudget;
+    private final ScheduledExecutorService scheduler;
+    private final Runnable onHedge;
+    private final CompletableFuture<TransportResponse> out = new CompletableFuture<>();
+    private final List<CompletableFuture<TransportResponse>> attempts = new ArrayList<>(2);
+    private int failedAttempts = 0;
+
+    HedgedCall(
+            Function<TransportRequest, CompletableFuture<TransportResponse>> send,
+            TransportRequest request,
+            Duration delay,
+            RetryBudget retryBudget,
+            ScheduledExecutorService scheduler,
+            Runnable onHedge
+    ) {
+        this.send = send;
+        this.request = request;
+        this.delay = delay;
+        this.retryBudget = retryBudget;
+        this.scheduler = scheduler;
+        this.onHedge = onHedge;
+    }
+
+    CompletableFuture<TransportResponse> execute() {
+        attempt();
+        ScheduledFuture<?> timer;
+        try {
+            timer = scheduler.schedule(this::hedge, delay.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ex) {
+            timer = null;
+            out.completeExceptionally(ex);
+        }
+        var hedgeTimer = timer;
+        out.whenComplete((response, ex) -> {
+            if (hedgeTimer != null) {
+                hedgeTimer.cancel(false);
+            }
+            synchronized (this) {
+                for (var attemptFuture : attempts) {
+                    attemptFuture.cancel(false);
+                }
+            }
+        });
+        return out;
+    }
+
+    private void hedge() {
+        if (out.isDone()) {
+            return;
+        }
+        if (!retryBudget.tryAcquireRetry()) {
+            logger.debug("Not hedging request to {}, retry budget exhausted", request.getPath());
+            return;
+        }
+        logger.debug("Hedging request to {} after {}ms", request.getPath(), delay.toMillis());
+        onHedge.run();
+        attempt();
+    }
+
+    private void attempt() {
+        CompletableFuture<TransportResponse> attemptFuture;
+        synchronized (this) {
+            if (out.isDone()) {
+                return;
+            }
+            attemptFuture = send.apply(request);
+            attempts.add(attemptFuture);
+        }
+        attemptFuture.whenComplete((response, ex) -> {
+            if (ex == null) {
+                SharedCall.completeOrClose(out, response);
+                return;
+            }
+            boolean allFailed;
+            synchronized (this) {
+                failedAttempts++;
+                allFailed = failedAttempts == attempts.size();
+            }
+            // Once one attempt has failed, the other is the only one left that can still succeed
+            if (allFailed) {
+                out.completeExceptionally(AdaptiveRangeFetcher.unwrap(ex));
+            }
+        });
+    }
+}
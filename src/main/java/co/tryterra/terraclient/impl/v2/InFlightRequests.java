@@ -0,0 +1,198 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.TerraApiResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Tracks the requests that are currently in flight so that equivalent requests can share a single
+ * HTTP exchange and parsed response. Every caller receives its own copy of the shared future, and
+ * the shared request is only cancelled once every caller has cancelled their copy.
+ */
+class InFlightRequests {
+    private final Map<String, SharedCall<?>> calls = new ConcurrentHashMap<>();
+    private final Map<String, List<RangeCall<?>>> rangeCalls = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+
+    private static class RangeCall<T> {
+        private final Instant startTime;
+        private final Instant endTime;
+        private final SharedCall<TerraApiResponse<T>> call;
+
+        RangeCall(Instant startTime, Instant endTime, SharedCall<TerraApiResponse<T>> call) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.call = call;
+        }
+    }
+
+    /**
+     * Joins the in-flight call with the given key, or starts a new one if there is none.
+     *
+     * @param key the key identifying equivalent calls
+     * @param call supplier that starts the call
+     * @param <T> the type of the call result
+     * @return future that will contain the result of the shared call
+     */
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> coalesce(String key, Supplier<CompletableFuture<T>> call) {
+        while (true) {
+            var existing = (SharedCall<T>) calls.get(key);
+            if (existing != null) {
+                var joined = existing.join();
+                if (joined != null) {
+                    coalescedRequests.incrementAndGet();
+                    return joined;
+                }
+                // Every caller of the existing call cancelled it, so it can't be shared any more
+                calls.remove(key, existing);
+                continue;
+            }
+
+            var shared = new SharedCall<>(new CompletableFuture<T>());
+            if (calls.putIfAbsent(key, shared) != null) {
+                continue;
+            }
+            var joined = shared.join();
+            start(shared, call, () -> calls.remove(key, shared));
+            return joined;
+        }
+    }
+
+    private static <T> void start(SharedCall<T> shared, Supplier<CompletableFuture<T>> call, Runnable onComplete) {
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException ex) {
+            onComplete.run();
+            shared.getSource().completeExceptionally(ex);
+            return;
+        }
+        future.whenComplete((result, ex) -> {
+            // Removed before completing so that later callers never join a finished call
+            onComplete.run();
+            if (ex != null) {
+                shared.getSource().completeExceptionally(ex);
+            } else {
+                SharedCall.completeOrClose(shared.getSource(), result);
+            }
+        });
+        SharedCall.propagateCancellation(shared.getSource(), future);
+    }
+
+    /**
+     * Serves a time range request from an in-flight call for a range that contains it, or starts a
+     * new call if there is none. A contained range is served by filtering the items of the wider
+     * response by their start time. If the wider response is unsuccessful, or has items whose start
+     * time is unknown, a call is made for the contained range instead.
+     *
+     * @param key the key identifying calls for the same data type, user and parameters
+     * @param startTime the start of the range
+     * @param endTime the end of the range
+     * @param identity the identity used to find the start time of items
+     * @param call supplier that starts a call for the range
+     * @param <T> the type of the data items
+     * @return future that will contain the response for the range
+     */
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<TerraApiResponse<T>> coalesceRange(String key, Instant startTime, Instant endTime, ItemIdentity<T> identity,
+                                                            Supplier<CompletableFuture<TerraApiResponse<T>>> call) {
+        var found = new RangeCall[1];
+        var started = new RangeCall<T>(startTime, endTime, new SharedCall<>(new CompletableFuture<>()));
+        rangeCalls.compute(key, (ignored, entries) -> {
+            if (entries == null) {
+                entries = new ArrayList<>();
+            }
+            for (var entry : entries) {
+                if (!entry.startTime.isAfter(startTime) && !entry.endTime.isBefore(endTime)) {
+                    found[0] = entry;
+                    return entries;
+                }
+            }
+            entries.add(started);
+            return entries;
+        });
+
+        var container = (RangeCall<T>) found[0];
+        if (container != null) {
+            var joined = container.call.join();
+            if (joined == null) {
+                return call.get();
+            }
+            coalescedRequests.incrementAndGet();
+            if (container.startTime.equals(startTime) && container.endTime.equals(endTime)) {
+                return joined;
+            }
+            return SharedCall.propagateCancellation(joined.thenCompose(response -> {
+                var filtered = filter(response, startTime, endTime, identity);
+                return filtered == null ? call.get() : CompletableFuture.completedFuture(filtered);
+            }), joined);
+        }
+
+        var joined = started.call.join();
+        start(started.call, call, () -> removeRangeCall(key, started));
+        return joined;
+    }
+
+    private void removeRangeCall(String key, RangeCall<?> entry) {
+        rangeCalls.computeIfPresent(key, (ignored, entries) -> {
+            entries.remove(entry);
+            return entries.isEmpty() ? null : entries;
+        });
+    }
+
+    static <T> TerraApiResponse<T> filter(TerraApiResponse<T> response, Instant startTime, Instant endTime, ItemIdentity<T> identity) {
+        if (!response.isSuccessful() || response.getParsedData() == null) {
+            return null;
+        }
+
+        var items = new ArrayList<T>();
+        for (var item : response.getParsedData()) {
+            var itemStart = identity.startTimeOf(item);
+            if (itemStart == null) {
+                return null;
+            }
+            if (!itemStart.isBefore(startTime) && itemStart.isBefore(endTime)) {
+                items.add(item);
+            }
+        }
+
+        JsonNode envelope = response.getRawBody();
+        if (envelope instanceof ObjectNode) {
+            envelope = envelope.deepCopy();
+            ((ObjectNode) envelope).remove("data");
+        }
+        // The whole shared body was still received and decoded to produce the filtered response
+        return new MergedTerraApiResponse<>(response, items, envelope, response.getUser(),
+                response.getWireBytes(), response.getDecodedBytes());
+    }
+
+    long getCoalescedRequests() {
+        return coalescedRequests.get();
+    }
+}
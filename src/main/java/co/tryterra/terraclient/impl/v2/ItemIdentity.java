@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.tryterra.terraclient.impl.v2;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.function.Function;
+
+/**
+ * Extracts the values used to order and de-duplicate data items from their metadata.
+ *
+ * @param <T> the type of the data items
+ */
+class ItemIdentity<T> {
+    private final Function<T, String> summaryIdOf;
+    private final Function<T, String> startTimeOf;
+    private final Function<T, String> endTimeOf;
+
+    private ItemIdentity(Function<T, String> summaryIdOf, Function<T, String> startTimeOf, Function<T, String> endTimeOf) {
+        this.summaryIdOf = summaryIdOf;
+        this.startTimeOf = startTimeOf;
+        this.endTimeOf = endTimeOf;
+    }
+
+    static <T, M> ItemIdentity<T> of(
+            Function<T, M> metadataOf,
+            Function<M, String> summaryIdOf,
+            Function<M, String> startTimeOf,
+            Function<M, String> endTimeOf
+    ) {
+        return new ItemIdentity<>(
+                item -> metadataOf.apply(item) == null ? null : summaryIdOf.apply(metadataOf.apply(item)),
+                item -> metadataOf.apply(item) == null ? null : startTimeOf.apply(metadataOf.apply(item)),
+                item -> metadataOf.apply(item) == null ? null : endTimeOf.apply(metadataOf.apply(item))
+        );
+    }
+
+    static <T, M> ItemIdentity<T> of(Function<T, M> metadataOf, Function<M, String> startTimeOf, Function<M, String> endTimeOf) {
+        return of(metadataOf, metadata -> null, startTimeOf, endTimeOf);
+    }
+
+    /**
+     * The key that identifies an item across overlapping responses. This is the summary ID when the
+     * item has one, and otherwise the start and end times of the item.
+     *
+     * @param item the item to get the key for
+     * @return the key, or {@code null} if the item has no identifying metadata
+     */
+    String keyOf(T item) {
+        var summaryId = summaryIdOf.apply(item);
+        if (summaryId != null) {
+            return summaryId;
+        }
+        var startTime = startTimeOf.apply(item);
+        var endTime = endTimeOf.apply(item);
+        if (startTime == null && endTime == null) {
+            return null;
+        }
+        return startTime + "/" + endTime;
+    }
+
+    Instant startTimeOf(T item) {
+        var startTime = startTimeOf.apply(item);
+        if (startTime == null) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(startTime).toInstant();
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the most recent response times of each endpoint, so that hedged requests can be sent
+ * once a request has taken longer than most recent requests to the same endpoint.
+ */
+class LatencyTracker {
+    static final int SAMPLE_SIZE = 128;
+    static final int MIN_SAMPLES = 20;
+
+    private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+    private final LongAdder hedgedRequests = new LongAdder();
+
+    void record(String endpoint, long nanos) {
+        samples.computeIfAbsent(endpoint, ignored -> new Samples()).add(nanos);
+    }
+
+    /**
+     * Computes a percentile of the recent response times of an endpoint.
+     *
+     * @param endpoint the endpoint to compute the percentile for
+     * @param percentile the percentile, between 0 and 1
+     * @return the percentile in nanoseconds, or {@code -1} if too few response times have been recorded
+     */
+    long percentileNanos(String endpoint, double percentile) {
+        var endpointSamples = samples.get(endpoint);
+        if (endpointSamples == null) {
+            return -1;
+        }
+        var values = endpointSamples.snapshot();
+        if (values.length < MIN_SAMPLES) {
+            return -1;
+        }
+        Arrays.sort(values);
+        int index = (int) Math.ceil(percentile * values.length) - 1;
+        return values[Math.max(0, Math.min(index, values.length - 1))];
+    }
+
+    void recordHedge() {
+        hedgedRequests.increment();
+    }
+
+    long getHedgedRequests() {
+        return hedgedRequests.sum();
+    }
+
+    private static class Samples {
+        private final long[] values = new long[SAMPLE_SIZE];
+        private int count = 0;
+        private int next = 0;
+
+        synchronized void add(long value) {
+            values[next] = value;
+            next = (next + 1) % SAMPLE_SIZE;
+            count = Math.min(count + 1, SAMPLE_SIZE);
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(values, count);
+        }
+    }
+}
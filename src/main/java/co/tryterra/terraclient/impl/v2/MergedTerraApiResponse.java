@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.TerraApiResponse;
+import co.tryterra.terraclient.api.User;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A response made up of the data of several other responses, which takes its status and
+ * envelope from the first of them.
+ *
+ * @param <T> the type of the parsed data
+ */
+class MergedTerraApiResponse<T> implements TerraApiResponse<T> {
+    private final TerraApiResponse<T> first;
+    private final List<T> parsed;
+    private final JsonNode rawBody;
+    private final User user;
+    private final long wireBytes;
+    private final long decodedBytes;
+
+    MergedTerraApiResponse(TerraApiResponse<T> first, List<T> parsed, JsonNode rawBody, User user,
+                           long wireBytes, long decodedBytes) {
+        this.first = first;
+        this.parsed = parsed == null ? null : Collections.unmodifiableList(parsed);
+        this.rawBody = rawBody;
+        this.user = user;
+        this.wireBytes = wireBytes;
+        this.decodedBytes = decodedBytes;
+    }
+
+    @Override
+    public int getResponseCode() {
+        return first.getResponseCode();
+    }
+
+    @Override
+    public boolean isSuccessful() {
+        return first.isSuccessful();
+    }
+
+    @Override
+    public String getType() {
+        return rawBody.get("type") == null ? null : rawBody.get("type").asText();
+    }
+
+    @Override
+    public String getMessage() {
+        return rawBody.get("message") == null ? null : rawBody.get("message").asText();
+    }
+
+    @Override
+    public JsonNode getRawBody() {
+        return rawBody;
+    }
+
+    @Override
+    public List<T> getParsedData() {
+        return parsed;
+    }
+
+    @Override
+    public User getUser() {
+        return user;
+    }
+
+    @Override
+    public long getWireBytes() {
+        return wireBytes;
+    }
+
+    @Override
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+}
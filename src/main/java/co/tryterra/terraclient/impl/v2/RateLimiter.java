@@ -0,0 +1,308 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Non-blocking token bucket rate limiter with separate buckets per developer ID and endpoint, and
+ * optionally per developer ID and provider. Requests that exceed a bucket's budget are queued as
+ * pending futures, which are completed by a timer as soon as tokens become available.
+ */
+public class RateLimiter {
+    private final Map<String, Limit> endpointLimits;
+    private final Limit providerLimit;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong delayedRequests = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * A rate limit for a single bucket.
+     */
+    public static class Limit {
+        private final double permitsPerSecond;
+        private final int burst;
+
+        /**
+         * Creates a new limit.
+         *
+         * @param permitsPerSecond the rate at which the bucket is refilled
+         * @param burst the maximum number of tokens the bucket can hold
+         */
+        public Limit(double permitsPerSecond, int burst) {
+            if (permitsPerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("permitsPerSecond must be positive and burst must be at least 1");
+            }
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+    }
+
+    public RateLimiter(Map<String, Limit> endpointLimits, @Nullable Limit providerLimit, ScheduledExecutorService scheduler) {
+        this(endpointLimits, providerLimit, scheduler, System::nanoTime);
+    }
+
+    RateLimiter(Map<String, Limit> endpointLimits, Limit providerLimit, ScheduledExecutorService scheduler, LongSupplier nanoClock) {
+        this.endpointLimits = new HashMap<>(endpointLimits);
+        this.providerLimit = providerLimit;
+        this.scheduler = scheduler;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Acquires the permits needed to send a request.
+     *
+     * @param devId the developer ID that the request is made for
+     * @param endpoint the endpoint path of the request, e.g. {@code /activity}
+     * @param provider the provider of the user that the request is for, if known
+     * @return future that completes once the request can be sent
+     */
+    public CompletableFuture<Void> acquire(String devId, String endpoint, @Nullable String provider) {
+        var endpointLimit = endpointLimits.get(endpoint);
+        CompletableFuture<Void> out = endpointLimit == null
+                ? CompletableFuture.completedFuture(null)
+                : bucket("endpoint:" + devId + ":" + endpoint, endpointLimit).acquire();
+        if (providerLimit != null && provider != null) {
+            out = thenAcquire(out, bucket("provider:" + devId + ":" + provider, providerLimit));
+        }
+        return out;
+    }
+
+    /**
+     * Acquires a permit from the bucket once the first future completes. Unlike
+     * {@link CompletableFuture#thenCompose}, cancelling the returned future also cancels the
+     * pending acquisition, so that it doesn't take a token for a request that was cancelled.
+     */
+    private static CompletableFuture<Void> thenAcquire(CompletableFuture<Void> first, Bucket bucket) {
+        var out = new CompletableFuture<Void>();
+        first.whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                out.completeExceptionally(ex);
+                return;
+            }
+            if (out.isDone()) {
+                return;
+            }
+            var second = bucket.acquire();
+            SharedCall.propagateCancellation(out, second);
+            second.whenComplete((ignored2, ex2) -> {
+                if (ex2 != null) {
+                    out.completeExceptionally(ex2);
+                } else {
+                    out.complete(null);
+                }
+            });
+        });
+        return SharedCall.propagateCancellation(out, first);
+    }
+
+    /**
+     * Fails every request that is waiting for a permit. This is done before the scheduler that
+     * grants permits is shut down, as the requests would otherwise wait forever.
+     *
+     * @param cause the exception to fail the waiting requests with
+     */
+    public void failWaiters(Throwable cause) {
+        for (var bucket : buckets.values()) {
+            List<Waiter> taken;
+            synchronized (bucket) {
+                taken = bucket.takeWaiters();
+            }
+            fail(taken, cause);
+        }
+    }
+
+    private static void fail(List<Waiter> waiters, Throwable cause) {
+        for (var waiter : waiters) {
+            waiter.future.completeExceptionally(cause);
+        }
+    }
+
+    private static void failRejected(List<Waiter> waiters) {
+        if (!waiters.isEmpty()) {
+            fail(waiters, new RejectedExecutionException("The rate limiter's scheduler has been shut down"));
+        }
+    }
+
+    private Bucket bucket(String key, Limit limit) {
+        return buckets.computeIfAbsent(key, ignored -> new Bucket(limit));
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public long getDelayedRequests() {
+        return delayedRequests.get();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.get();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    private static class Waiter {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final long enqueuedAt;
+
+        Waiter(long enqueuedAt) {
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private class Bucket {
+        private final Limit limit;
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+        private double tokens;
+        private long lastRefill;
+        private boolean drainScheduled = false;
+
+        Bucket(Limit limit) {
+            this.limit = limit;
+            this.tokens = limit.burst;
+            this.lastRefill = nanoClock.getAsLong();
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(limit.burst, tokens + (now - lastRefill) / 1e9 * limit.permitsPerSecond);
+            lastRefill = now;
+        }
+
+        CompletableFuture<Void> acquire() {
+            Waiter waiter;
+            List<Waiter> rejected;
+            synchronized (this) {
+                var now = nanoClock.getAsLong();
+                refill(now);
+                if (waiters.isEmpty() && tokens >= 1) {
+                    tokens -= 1;
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                waiter = new Waiter(now);
+                waiters.add(waiter);
+                queueDepth.incrementAndGet();
+                delayedRequests.incrementAndGet();
+                rejected = scheduleDrain();
+            }
+            failRejected(rejected);
+            return waiter.future;
+        }
+
+        /**
+         * Schedules a drain unless one is already scheduled. If the scheduler has been shut down, no
+         * permits can be granted any more, so the waiters are taken off the queue and returned to be
+         * failed once the lock has been released.
+         */
+        private List<Waiter> scheduleDrain() {
+            if (drainScheduled) {
+                return List.of();
+            }
+            long delayNanos = (long) (Math.max(0, 1 - tokens) / limit.permitsPerSecond * 1e9);
+            try {
+                scheduler.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ex) {
+                return takeWaiters();
+            }
+            drainScheduled = true;
+            return List.of();
+        }
+
+        private List<Waiter> takeWaiters() {
+            var taken = new ArrayList<>(waiters);
+            waiters.clear();
+            queueDepth.addAndGet(-taken.size());
+            // Any drain that was scheduled won't run, so the next waiter has to schedule its own
+            drainScheduled = false;
+            return taken;
+        }
+
+        private void drain() {
+            var ready = new ArrayList<Waiter>();
+            List<Waiter> rejected = List.of();
+            long now;
+            synchronized (this) {
+                drainScheduled = false;
+                now = nanoClock.getAsLong();
+                refill(now);
+                while (!waiters.isEmpty()) {
+                    var waiter = waiters.peek();
+                    if (waiter.future.isDone()) {
+                        waiters.poll();
+                        queueDepth.decrementAndGet();
+                        continue;
+                    }
+                    if (tokens < 1) {
+                        break;
+                    }
+                    tokens -= 1;
+                    waiters.poll();
+                    queueDepth.decrementAndGet();
+                    ready.add(waiter);
+                }
+                if (!waiters.isEmpty()) {
+                    rejected = scheduleDrain();
+                }
+            }
+            failRejected(rejected);
+
+            for (var waiter : ready) {
+                long waited = now - waiter.enqueuedAt;
+                totalWaitNanos.addAndGet(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                if (!waiter.future.complete(null)) {
+                    // Cancelled after it was taken off the queue, so its token can go to another request
+                    giveBack();
+                }
+            }
+        }
+
+        private void giveBack() {
+            List<Waiter> rejected = List.of();
+            synchronized (this) {
+                tokens = Math.min(limit.burst, tokens + 1);
+                if (!waiters.isEmpty()) {
+                    rejected = scheduleDrain();
+                }
+            }
+            failRejected(rejected);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.TerraApiResponse;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Size-bounded LRU cache of parsed responses, with a separate time-to-live per endpoint. Only
+ * successful responses are cached. Once an entry has passed {@link #REFRESH_AHEAD_FRACTION} of its
+ * time-to-live, the next hit starts a refresh in the background while still being served the cached
+ * response, so that frequently used entries never expire in front of a caller.
+ */
+public class ResponseCache {
+    static final double REFRESH_AHEAD_FRACTION = 0.8;
+
+    private final Map<String, Duration> ttls;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static class Entry {
+        private final SharedCall<TerraApiResponse<?>> call;
+        private final CompletableFuture<TerraApiResponse<?>> future;
+        private long refreshAt;
+        private long expiresAt;
+        private boolean refreshing = false;
+
+        Entry(CompletableFuture<TerraApiResponse<?>> future) {
+            this.call = new SharedCall<>(future);
+            this.future = future;
+        }
+    }
+
+    public ResponseCache(Map<String, Duration> ttls, int maxEntries) {
+        this(ttls, maxEntries, System::nanoTime);
+    }
+
+    ResponseCache(Map<String, Duration> ttls, int maxEntries, LongSupplier nanoClock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.ttls = new HashMap<>(ttls);
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached response for the given key, loading it if it is not cached or has expired.
+     * Callers that miss while the same key is already being loaded share that load.
+     *
+     * @param endpoint the endpoint path of the request, e.g. {@code /userInfo}
+     * @param key the key identifying the request
+     * @param load supplier that sends the request
+     * @param <T> the type of the response data
+     * @return future that will contain the response
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    <T> CompletableFuture<TerraApiResponse<T>> get(String endpoint, String key, Supplier<CompletableFuture<TerraApiResponse<T>>> load) {
+        var ttl = ttls.get(endpoint);
+        if (ttl == null) {
+            return load.get();
+        }
+
+        Entry entry;
+        boolean loading = false;
+        boolean refreshing = false;
+        synchronized (entries) {
+            var now = nanoClock.getAsLong();
+            entry = entries.get(key);
+            if (entry != null && (entry.future.isCompletedExceptionally()
+                    || (entry.future.isDone() && now - entry.expiresAt >= 0))) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(new CompletableFuture<>());
+                entries.put(key, entry);
+                loading = true;
+            } else if (entry.future.isDone() && !entry.refreshing && now - entry.refreshAt >= 0) {
+                entry.refreshing = true;
+                refreshing = true;
+            }
+        }
+
+        if (loading) {
+            misses.incrementAndGet();
+            var joined = entry.call.join();
+            load(key, entry, ttl, (Supplier) load);
+            return (CompletableFuture) joined;
+        }
+
+        if (refreshing) {
+            refresh(key, entry, ttl, (Supplier) load);
+        }
+        if (entry.future.isDone()) {
+            hits.incrementAndGet();
+            // Each caller gets its own copy, so that obtruding a value on it can't change the cached entry
+            return (CompletableFuture) entry.future.copy();
+        }
+        var joined = entry.call.join();
+        if (joined == null) {
+            // Everyone waiting for the load cancelled it, so it won't produce a response to share
+            misses.incrementAndGet();
+            return load.get();
+        }
+        hits.incrementAndGet();
+        return (CompletableFuture) joined;
+    }
+
+    private void load(String key, Entry entry, Duration ttl, Supplier<CompletableFuture<TerraApiResponse<?>>> load) {
+        CompletableFuture<TerraApiResponse<?>> future;
+        try {
+            future = load.get();
+        } catch (RuntimeException ex) {
+            remove(key, entry);
+            entry.future.completeExceptionally(ex);
+            return;
+        }
+        future.whenComplete((response, ex) -> {
+            if (ex == null && response.isSuccessful()) {
+                synchronized (entries) {
+                    setExpiry(entry, ttl);
+                }
+            } else {
+                remove(key, entry);
+            }
+            if (ex != null) {
+                entry.future.completeExceptionally(ex);
+            } else {
+                SharedCall.completeOrClose(entry.future, response);
+            }
+        });
+        SharedCall.propagateCancellation(entry.future, future);
+    }
+
+    private void refresh(String key, Entry entry, Duration ttl, Supplier<CompletableFuture<TerraApiResponse<?>>> load) {
+        CompletableFuture<TerraApiResponse<?>> future;
+        try {
+            future = load.get();
+        } catch (RuntimeException ex) {
+            synchronized (entries) {
+                entry.refreshing = false;
+            }
+            return;
+        }
+        future.whenComplete((response, ex) -> {
+            synchronized (entries) {
+                if (ex == null && response.isSuccessful() && entries.get(key) == entry) {
+                    var refreshed = new Entry(CompletableFuture.completedFuture(response));
+                    setExpiry(refreshed, ttl);
+                    entries.put(key, refreshed);
+                } else {
+                    // Keep serving the current response until it expires, and try again on the next hit
+                    entry.refreshing = false;
+                }
+            }
+        });
+    }
+
+    private void setExpiry(Entry entry, Duration ttl) {
+        var now = nanoClock.getAsLong();
+        entry.expiresAt = now + ttl.toNanos();
+        entry.refreshAt = now + (long) (ttl.toNanos() * REFRESH_AHEAD_FRACTION);
+    }
+
+    private void remove(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Removes every entry whose key matches the given predicate.
+     *
+     * @param keyPredicate the predicate selecting the keys to remove
+     */
+    public void invalidateIf(Predicate<String> keyPredicate) {
+        Objects.requireNonNull(keyPredicate, "keyPredicate cannot be null");
+        synchronized (entries) {
+            entries.keySet().removeIf(keyPredicate);
+        }
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -16,12 +16,20 @@
 
 package co.tryterra.terraclient.impl.v2;
 
+import co.tryterra.terraclient.BulkOptions;
 import co.tryterra.terraclient.RequestConfig;
+import co.tryterra.terraclient.api.BulkResult;
 import co.tryterra.terraclient.api.PartialUser;
 import co.tryterra.terraclient.api.TerraApiResponse;
+import co.tryterra.terraclient.api.TerraDataStream;
 import co.tryterra.terraclient.api.User;
-import co.tryterra.terraclient.impl.OkHttp3AsyncCall;
+import co.tryterra.terraclient.api.annotations.Nullable;
+import co.tryterra.terraclient.exceptions.CircuitOpenException;
+import co.tryterra.terraclient.exceptions.DeadlineExceededException;
+import co.tryterra.terraclient.impl.DecodingResponse;
+import co.tryterra.terraclient.impl.InFlightWork;
 import co.tryterra.terraclient.impl.ResponseBodyParser;
+import co.tryterra.terraclient.impl.TerraDataStreamImpl;
 import co.tryterra.terraclient.impl.UserImpl;
 import co.tryterra.terraclient.models.Athlete;
 import co.tryterra.terraclient.models.AuthenticationResponse;
@@ -33,60 +41,118 @@ import co.tryterra.terraclient.models.v2.daily.Daily;
 import co.tryterra.terraclient.models.v2.menstruation.Menstruation;
 import co.tryterra.terraclient.models.v2.nutrition.Nutrition;
 import co.tryterra.terraclient.models.v2.sleep.Sleep;
+import co.tryterra.terraclient.transport.ContentDecoder;
+import co.tryterra.terraclient.transport.HttpTransport;
+import co.tryterra.terraclient.transport.TransportRequest;
+import co.tryterra.terraclient.transport.TransportResponse;
 
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.HttpUrl;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class RestClientV2 {
+    private static final Logger logger = LoggerFactory.getLogger(RestClientV2.class);
     private static final String DEFAULT_API_URL = "https://api.tryterra.co/v2";
+    private static final Duration DEFAULT_INITIAL_WINDOW = Duration.ofDays(7);
 
-    private final OkHttpClient httpClient;
+    private final HttpTransport transport;
     private final ObjectMapper objectMapper;
     private final ExecutorService executorService;
+    private final ScheduledExecutorService scheduler;
+    private final RetryBudget retryBudget;
+    private final RateLimiter rateLimiter;
+    private final InFlightRequests inFlightRequests;
+    private final ResponseCache responseCache;
+    private final LatencyTracker latencyTracker;
+    private final Bulkheads bulkheads;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Map<String, ContentDecoder> contentDecoders;
+    private final String acceptEncoding;
+    private final TransferStats transferStats;
+    private final ClientResources resources;
+    private final InFlightWork inFlightWork = new InFlightWork();
+    private final Set<CompletableFuture<?>> outstanding = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean released = new AtomicBoolean();
 
     private final String xApiKey;
     private final String devId;
     private final String baseUrl;
+    private final String basePath;
+    private final RequestConfig defaultRequestConfig;
 
     public RestClientV2(String xApiKey, String devId) {
-        this.httpClient = new OkHttpClient();
-        this.objectMapper = new ObjectMapper();
-        this.executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
-
-        this.xApiKey = xApiKey;
-        this.devId = devId;
-        this.baseUrl = DEFAULT_API_URL;
+        this(xApiKey, devId, null, ClientResources.createDefault(), RequestConfig.builder().build());
     }
 
     public RestClientV2(String xApiKey, String devId, String apiUrl) {
-        this.httpClient = new OkHttpClient();
+        this(xApiKey, devId, apiUrl, ClientResources.createDefault(), RequestConfig.builder().build());
+    }
+
+    public RestClientV2(String xApiKey, String devId, String apiUrl, ClientResources resources, RequestConfig defaultRequestConfig) {
+        resources.retain();
+        this.resources = resources;
+        this.transport = resources.getTransport();
         this.objectMapper = new ObjectMapper();
-        this.executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
+        this.executorService = resources.getExecutorService();
+        this.scheduler = resources.getScheduler();
+        this.retryBudget = resources.getRetryBudget();
+        this.rateLimiter = resources.getRateLimiter();
+        this.inFlightRequests = resources.getInFlightRequests();
+        this.responseCache = resources.getResponseCache();
+        this.latencyTracker = resources.getLatencyTracker();
+        this.bulkheads = resources.getBulkheads();
+        this.circuitBreaker = resources.getCircuitBreaker();
+        this.concurrencyLimiter = resources.getConcurrencyLimiter();
+        this.contentDecoders = resources.getContentDecoders();
+        this.acceptEncoding = String.join(", ", contentDecoders.keySet());
+        this.transferStats = resources.getTransferStats();
+        this.defaultRequestConfig = defaultRequestConfig == null ? RequestConfig.builder().build() : defaultRequestConfig;
 
         this.xApiKey = xApiKey;
         this.devId = devId;
-        this.baseUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.baseUrl = baseUrlOf(apiUrl);
+        var parsedBaseUrl = HttpUrl.parse(baseUrl);
+        var path = parsedBaseUrl == null ? "" : parsedBaseUrl.encodedPath();
+        this.basePath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
     }
 
     public ObjectMapper getObjectMapper() {
         return objectMapper;
     }
 
-    Request.Builder addAuthHeadersToBuilder(Request.Builder builder) {
-        return builder
-                .addHeader("X-API-Key", xApiKey)
-                .addHeader("dev-id", devId);
+    TransportRequest.Builder addAuthHeadersToBuilder(TransportRequest.Builder builder) {
+        builder
+                .header("X-API-Key", xApiKey)
+                .header("dev-id", devId);
+        if (!acceptEncoding.isEmpty()) {
+            // Setting this stops OkHttp from decompressing gzip itself, so every transport is decoded the same way
+            builder.header("Accept-Encoding", acceptEncoding);
+        }
+        return builder;
     }
 
     void addQueryParametersToBuilder(HttpUrl.Builder builder, RequestConfig requestConfig, Instant startTime, Instant endTime) {
@@ -108,113 +174,487 @@ public class RestClientV2 {
         }
     }
 
-    <T> CompletableFuture<TerraApiResponse<T>> performAsyncCall(Request request, PartialUser user, String key, Class<T> parseTo) {
-        return new OkHttp3AsyncCall(httpClient.newCall(request))
-                .asCompletionStage()
-                .thenApplyAsync(response -> new ResponseBodyParser<>(user, key, parseTo, this)
-                        .toTerraApiResponse(response), executorService)
-                .toCompletableFuture();
+    TransportRequest buildDataRequest(String path, PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        var url = HttpUrl.parse(baseUrl + path).newBuilder()
+                .addQueryParameter("user_id", user.getId());
+        addQueryParametersToBuilder(url, requestConfig, startTime, endTime);
+
+        return addAuthHeadersToBuilder(TransportRequest.builder())
+                .url(url.build().toString())
+                .tag(PartialUser.class, user)
+                .build();
+    }
+
+    <T> CompletableFuture<TerraApiResponse<T>> performDataCall(String path, PartialUser user, Instant startTime, Instant endTime,
+                                                                 RequestConfig requestConfig, Class<T> parseTo, ItemIdentity<T> identity) {
+        // Data sent to the webhook can't be filtered, so only requests returning it in the body share ranges
+        if (!requestConfig.isCoalesce() || requestConfig.isToWebhook() || startTime == null || endTime == null) {
+            return track(() -> withDeadline(fetchData(path, user, startTime, endTime, requestConfig, parseTo, identity), requestConfig));
+        }
+        var key = String.join("|", coalescingPrefix(), path, user.getId(), requestConfig.getWithSamples().name(),
+                String.valueOf(requestConfig.isRetryIfRateLimited()), parseTo.getName(), requestConfig.getParseMode().name());
+        return track(() -> withDeadline(inFlightRequests.coalesceRange(key, startTime, endTime, identity,
+                () -> fetchData(path, user, startTime, endTime, requestConfig, parseTo, identity)), requestConfig));
+    }
+
+    <T> CompletableFuture<TerraApiResponse<T>> fetchData(String path, PartialUser user, Instant startTime, Instant endTime,
+                                                           RequestConfig requestConfig, Class<T> parseTo, ItemIdentity<T> identity) {
+        boolean split = requestConfig.getRangeWindow() != null || requestConfig.isAdaptiveRangeWindow();
+        if (!split || endTime == null) {
+            var request = buildDataRequest(path, user, startTime, endTime, requestConfig);
+            return performCall(request, user, "data", parseTo, requestConfig);
+        }
+
+        Objects.requireNonNull(startTime, "startTime cannot be null for this request");
+        BiFunction<Instant, Instant, CompletableFuture<TerraApiResponse<T>>> fetchWindow =
+                (windowStart, windowEnd) -> performCall(
+                        buildDataRequest(path, user, windowStart, windowEnd, requestConfig),
+                        user, "data", parseTo, requestConfig
+                );
+
+        if (requestConfig.isAdaptiveRangeWindow()) {
+            return new AdaptiveRangeFetcher<>(
+                    fetchWindow,
+                    identity,
+                    requestConfig.getMinRangeWindow(),
+                    requestConfig.getMaxRangeWindow(),
+                    requestConfig.getTargetWindowBytes(),
+                    requestConfig.getTargetWindowLatency(),
+                    requestConfig.getMaxConcurrentWindows()
+            ).fetch(
+                    startTime,
+                    endTime,
+                    requestConfig.getRangeWindow() == null ? DEFAULT_INITIAL_WINDOW : requestConfig.getRangeWindow()
+            );
+        }
+        return new WindowedRangeFetcher<>(fetchWindow, identity)
+                .fetch(startTime, endTime, requestConfig.getRangeWindow(), requestConfig.getMaxConcurrentWindows());
+    }
+
+    String endpointOf(TransportRequest request) {
+        var path = request.getPath();
+        return path.startsWith(basePath) ? path.substring(basePath.length()) : path;
+    }
+
+    CompletableFuture<TransportResponse> send(TransportRequest request, RequestConfig requestConfig) {
+        var user = request.getTag(PartialUser.class);
+        var provider = user instanceof User ? ((User) user).getProvider() : null;
+        var endpoint = endpointOf(request);
+        var timedRequest = requestConfig.getConnectTimeout() == null && requestConfig.getReadTimeout() == null
+                ? request
+                : request.newBuilder()
+                        .connectTimeout(requestConfig.getConnectTimeout())
+                        .readTimeout(requestConfig.getReadTimeout())
+                        .build();
+
+        // Without the provider, a circuit would be shared by every user of the endpoint, so one failing
+        // provider or user would open it for all of them
+        var circuit = endpoint + "|" + provider;
+        var circuitPermit = circuitBreaker == null || provider == null
+                ? CircuitBreaker.Permit.NONE
+                : circuitBreaker.tryAcquire(circuit);
+        if (circuitPermit == null) {
+            return CompletableFuture.failedFuture(new CircuitOpenException("Too many recent requests to " + circuit + " have failed"));
+        }
+
+        var permit = rateLimiter.acquire(devId, endpoint, provider);
+        var out = new CompletableFuture<TransportResponse>();
+        permit.whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                circuitPermit.release();
+                out.completeExceptionally(ex);
+                return;
+            }
+            if (out.isDone()) {
+                circuitPermit.release();
+                return;
+            }
+            if (concurrencyLimiter == null) {
+                dispatch(timedRequest, endpoint, circuitPermit, out);
+                return;
+            }
+            // The slot is never cancelled, as it has to be given back even if the request is no longer needed
+            concurrencyLimiter.acquire().thenRun(() -> {
+                if (out.isDone()) {
+                    circuitPermit.release();
+                    concurrencyLimiter.release(0, AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+                    return;
+                }
+                dispatch(timedRequest, endpoint, circuitPermit, out);
+            });
+        });
+        return SharedCall.propagateCancellation(out, permit);
+    }
+
+    private void dispatch(TransportRequest request, String endpoint, CircuitBreaker.Permit circuitPermit,
+                          CompletableFuture<TransportResponse> out) {
+        long sentAt = System.nanoTime();
+        CompletableFuture<TransportResponse> exchange;
+        try {
+            exchange = transport.send(request);
+        } catch (RuntimeException ex) {
+            // Nothing was sent, so the permit and slot are given back without counting against either
+            circuitPermit.release();
+            if (concurrencyLimiter != null) {
+                concurrencyLimiter.release(0, AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+            }
+            out.completeExceptionally(ex);
+            return;
+        }
+        exchange.whenComplete((response, callEx) -> {
+            long rttNanos = System.nanoTime() - sentAt;
+            var outcome = AdaptiveConcurrencyLimiter.Outcome.SUCCESS;
+            if (response != null) {
+                latencyTracker.record(endpoint, rttNanos);
+                if (response.code() >= 500) {
+                    circuitPermit.onFailure();
+                    outcome = AdaptiveConcurrencyLimiter.Outcome.DROPPED;
+                } else {
+                    circuitPermit.onSuccess();
+                    if (response.code() == 429) {
+                        outcome = AdaptiveConcurrencyLimiter.Outcome.DROPPED;
+                    }
+                }
+            } else if (AdaptiveRangeFetcher.unwrap(callEx) instanceof IOException) {
+                circuitPermit.onFailure();
+                outcome = AdaptiveConcurrencyLimiter.Outcome.DROPPED;
+            } else {
+                circuitPermit.release();
+                outcome = AdaptiveConcurrencyLimiter.Outcome.IGNORED;
+            }
+            if (concurrencyLimiter != null) {
+                concurrencyLimiter.release(rttNanos, outcome);
+            }
+
+            if (callEx != null) {
+                out.completeExceptionally(callEx);
+                return;
+            }
+            var decoding = new DecodingResponse(response, contentDecoders,
+                    closed -> transferStats.record(endpoint, closed.getWireBytes(), closed.getDecodedBytes()));
+            SharedCall.completeOrClose(out, decoding);
+        });
+        SharedCall.propagateCancellation(out, exchange);
+    }
+
+    RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    CompletableFuture<TransportResponse> execute(TransportRequest request, RequestConfig requestConfig) {
+        Function<TransportRequest, CompletableFuture<TransportResponse>> attempt = requestConfig.isHedging() && request.getMethod().equals("GET")
+                ? r -> hedge(r, requestConfig)
+                : r -> send(r, requestConfig);
+        // Recorded once per logical request, so that both retries and hedges are budgeted against it
+        retryBudget.recordRequest();
+        if (requestConfig.getMaxAttempts() <= 1) {
+            return attempt.apply(request);
+        }
+        return new RetryingCall(attempt, request, requestConfig, retryBudget, scheduler).execute();
+    }
+
+    CompletableFuture<TransportResponse> hedge(TransportRequest request, RequestConfig requestConfig) {
+        var delay = requestConfig.getHedgeMinDelay();
+        long observed = latencyTracker.percentileNanos(endpointOf(request), requestConfig.getHedgePercentile());
+        if (observed > delay.toNanos()) {
+            delay = Duration.ofNanos(observed);
+        }
+        return new HedgedCall(r -> send(r, requestConfig), request, delay, retryBudget, scheduler, latencyTracker::recordHedge)
+                .execute();
+    }
+
+    /**
+     * Fails the returned future with a {@link DeadlineExceededException} if the given future has not completed
+     * within the deadline of the request config, cancelling the given future.
+     */
+    <R> CompletableFuture<R> withDeadline(CompletableFuture<R> future, RequestConfig requestConfig) {
+        var deadline = requestConfig.getDeadline();
+        if (deadline == null || future.isDone()) {
+            return future;
+        }
+        var out = new CompletableFuture<R>();
+        ScheduledFuture<?> timer;
+        try {
+            timer = scheduler.schedule(() -> {
+                if (out.completeExceptionally(new DeadlineExceededException("Request did not complete within " + deadline))) {
+                    future.cancel(false);
+                }
+            }, deadline.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ex) {
+            future.cancel(false);
+            return CompletableFuture.failedFuture(ex);
+        }
+        future.whenComplete((result, ex) -> {
+            timer.cancel(false);
+            if (ex != null) {
+                out.completeExceptionally(ex);
+            } else {
+                SharedCall.completeOrClose(out, result);
+            }
+        });
+        return SharedCall.propagateCancellation(out, future);
+    }
+
+    Bulkheads getBulkheads() {
+        return bulkheads;
+    }
+
+    CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    Map<String, Long> getWireBytesByEndpoint() {
+        return transferStats.getWireBytes();
+    }
+
+    Map<String, Long> getDecodedBytesByEndpoint() {
+        return transferStats.getDecodedBytes();
+    }
+
+    long getHedgedRequests() {
+        return latencyTracker.getHedgedRequests();
+    }
+
+    <T> CompletableFuture<TerraApiResponse<T>> performAsyncCall(TransportRequest request, PartialUser user, String key, Class<T> parseTo) {
+        return performAsyncCall(request, user, key, parseTo, defaultRequestConfig);
+    }
+
+    <T> CompletableFuture<TerraApiResponse<T>> performAsyncCall(TransportRequest request, PartialUser user, String key, Class<T> parseTo, RequestConfig requestConfig) {
+        return track(() -> withDeadline(performCall(request, user, key, parseTo, requestConfig), requestConfig));
+    }
+
+    <T> CompletableFuture<TerraApiResponse<T>> performCall(TransportRequest request, PartialUser user, String key, Class<T> parseTo, RequestConfig requestConfig) {
+        Supplier<CompletableFuture<TerraApiResponse<T>>> call = () -> bulkheads.run(endpointOf(request),
+                () -> parse(execute(request, requestConfig),
+                        response -> new ResponseBodyParser<>(user, key, parseTo, this, requestConfig.getParseMode()).toTerraApiResponse(response),
+                        requestConfig));
+        if (!requestConfig.isCoalesce() || !request.getMethod().equals("GET")) {
+            return call.get();
+        }
+        var coalescingKey = String.join("|", coalescingPrefix(), request.getUrl(), String.valueOf(key),
+                parseTo.getName(), requestConfig.getParseMode().name());
+        return inFlightRequests.coalesce(coalescingKey, call);
+    }
+
+    <R> CompletableFuture<R> parse(CompletableFuture<TransportResponse> exchange, Function<TransportResponse, R> parser, RequestConfig requestConfig) {
+        var executor = requestConfig.getParseExecutor() == null ? executorService : requestConfig.getParseExecutor();
+        CompletableFuture<R> parsed;
+        switch (requestConfig.getParsePolicy()) {
+            case INLINE:
+                parsed = exchange.thenApply(parser);
+                break;
+            case SIZE_THRESHOLD:
+                parsed = exchange.thenCompose(response -> {
+                    long length = response.body() == null ? 0 : response.contentLength();
+                    if (length >= 0 && length <= requestConfig.getInlineParseThreshold()) {
+                        return CompletableFuture.completedFuture(parser.apply(response));
+                    }
+                    return CompletableFuture.supplyAsync(() -> parser.apply(response), executor);
+                });
+                break;
+            default:
+                parsed = exchange.thenApplyAsync(parser, executor);
+                break;
+        }
+        parsed.whenComplete((result, ex) -> {
+            if (parsed.isCancelled()) {
+                exchange.cancel(false);
+                // A cancelled stage skips parsing, so the connection has to be released here instead
+                exchange.thenAccept(TransportResponse::close);
+            }
+        });
+        return parsed;
+    }
+
+    private String coalescingPrefix() {
+        // Requests are only shared between clients using the same credentials
+        return devId + "|" + xApiKey;
+    }
+
+    long getCoalescedRequests() {
+        return inFlightRequests.getCoalescedRequests();
+    }
+
+    <T> CompletableFuture<TerraApiResponse<T>> performCachedCall(String endpoint, TransportRequest request, PartialUser user, String key,
+                                                                   Class<T> parseTo, RequestConfig requestConfig) {
+        var cacheKey = String.join("|", coalescingPrefix(), request.getUrl(), String.valueOf(key),
+                parseTo.getName(), requestConfig.getParseMode().name());
+        return track(() -> withDeadline(responseCache.get(endpoint, cacheKey,
+                () -> performCall(request, user, key, parseTo, requestConfig)), requestConfig));
+    }
+
+    ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    CompletableFuture<Void> warmUp(int connections) {
+        return resources.warmUp(baseUrl, connections);
+    }
+
+    /**
+     * The base URL that requests are made to for the given API URL.
+     *
+     * @param apiUrl the API URL, or {@code null} for the default
+     * @return the base URL, without a trailing slash
+     */
+    public static String baseUrlOf(@Nullable String apiUrl) {
+        if (apiUrl == null) {
+            return DEFAULT_API_URL;
+        }
+        return apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+    }
+
+    <T> Flow.Publisher<BulkResult<T>> performBulkCall(Collection<? extends PartialUser> users, BulkOptions options,
+                                                      Function<PartialUser, CompletableFuture<TerraApiResponse<T>>> fetch) {
+        Objects.requireNonNull(users, "users cannot be null");
+        return new BulkPublisher<>(users, fetch, options.getMaxConcurrency());
+    }
+
+    <T> CompletableFuture<TerraDataStream<T>> performStreamingCall(TransportRequest request, String key, Class<T> parseTo, RequestConfig requestConfig) {
+        return track(() -> withDeadline(bulkheads.run(endpointOf(request), () -> parse(execute(request, requestConfig),
+                response -> new TerraDataStreamImpl<>(response, objectMapper, key, parseTo), requestConfig)), requestConfig));
+    }
+
+    /**
+     * Runs a call as in-flight work of this client, which shutdown waits for, and fails if it
+     * does not finish in time.
+     */
+    <R> CompletableFuture<R> track(Supplier<CompletableFuture<R>> call) {
+        if (!inFlightWork.tryStart()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The client has been shut down"));
+        }
+        CompletableFuture<R> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException ex) {
+            inFlightWork.finish();
+            throw ex;
+        }
+        outstanding.add(future);
+        future.whenComplete((result, ex) -> {
+            outstanding.remove(future);
+            inFlightWork.finish();
+        });
+        return future;
+    }
+
+    boolean shutdown(Duration drainTimeout) {
+        Objects.requireNonNull(drainTimeout, "drainTimeout cannot be null");
+        if (drainTimeout.isNegative()) {
+            throw new IllegalArgumentException("drainTimeout cannot be negative");
+        }
+        inFlightWork.shutdown();
+        boolean drained = inFlightWork.awaitDrained(drainTimeout);
+        if (!drained) {
+            logger.warn("{} requests were still in flight when the client was shut down", inFlightWork.getInFlight());
+            // The timers these requests may be waiting on are dropped once the shared resources shut down
+            var shutdownEx = new IllegalStateException("The client was shut down before the request completed");
+            for (var future : List.copyOf(outstanding)) {
+                future.completeExceptionally(shutdownEx);
+            }
+        }
+        if (released.compareAndSet(false, true)) {
+            resources.release();
+        }
+        return drained;
     }
 
-    Future<? extends TerraApiResponse<? extends User>> getAllUsers() {
+    CompletableFuture<? extends TerraApiResponse<? extends User>> getAllUsers() {
         var url = HttpUrl.parse(baseUrl + "/subscriptions");
         assert url != null;
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).build();
-        return performAsyncCall(request, null, "users", UserImpl.class);
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).build();
+        return performCachedCall("/subscriptions", request, null, "users", UserImpl.class, defaultRequestConfig);
     }
 
-    Future<? extends TerraApiResponse<? extends User>> getUser(String userId) {
+    CompletableFuture<? extends TerraApiResponse<? extends User>> getUser(String userId) {
         var url = HttpUrl.parse(baseUrl + "/userInfo").newBuilder()
                 .addQueryParameter("user_id", userId)
                 .build();
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).build();
-        return performAsyncCall(request, null, "user", UserImpl.class);
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).build();
+        return performCachedCall("/userInfo", request, null, "user", UserImpl.class, defaultRequestConfig);
     }
 
-    Future<TerraApiResponse<ProvidersResponse>> listProviders() {
+    CompletableFuture<TerraApiResponse<ProvidersResponse>> listProviders() {
         var url = HttpUrl.parse(baseUrl + "/integrations").newBuilder()
                 .build();
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).build();
-        return performAsyncCall(request, null, "listProvidersAPIRoot", ProvidersResponse.class);
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).build();
+        return performCachedCall("/integrations", request, null, "listProvidersAPIRoot", ProvidersResponse.class, defaultRequestConfig);
     }
 
-    Future<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource) {
+    CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource) {
         var url = HttpUrl.parse(baseUrl + "/auth/authenticateUser").newBuilder()
                 .addQueryParameter("resource", resource)
                 .build();
-        RequestBody body = RequestBody.create(new byte[0]);
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).post(body).build();
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).post(new byte[0]).build();
         return performAsyncCall(request, null, "auth_url", AuthenticationResponse.class);
     }
 
-    Future<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id) {
+    CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id) {
         var url = HttpUrl.parse(baseUrl + "/auth/authenticateUser").newBuilder()
                 .addQueryParameter("resource", resource)
                 .addQueryParameter("reference_id", reference_id)
                 .build();
-        RequestBody body = RequestBody.create(new byte[0]);
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).post(body).build();
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).post(new byte[0]).build();
         return performAsyncCall(request, null, "auth_url", AuthenticationResponse.class);
     }
 
-    Future<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id, String auth_success_redirect_url) {
+    CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id, String auth_success_redirect_url) {
         var url = HttpUrl.parse(baseUrl + "/auth/authenticateUser").newBuilder()
                 .addQueryParameter("resource", resource)
                 .addQueryParameter("reference_id", reference_id)
                 .addQueryParameter("auth_success_redirect_url", auth_success_redirect_url)
                 .build();
-        RequestBody body = RequestBody.create(new byte[0]);
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).post(body).build();
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).post(new byte[0]).build();
         return performAsyncCall(request, null, "auth_url", AuthenticationResponse.class);
     }
 
 
-    Future<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url) {
+    CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url) {
         var url = HttpUrl.parse(baseUrl + "/auth/authenticateUser").newBuilder()
                 .addQueryParameter("resource", resource)
                 .addQueryParameter("reference_id", reference_id)
                 .addQueryParameter("auth_success_redirect_url", auth_success_redirect_url)
                 .addQueryParameter("auth_failure_redirect_url", auth_failure_redirect_url)
                 .build();
-        RequestBody body = RequestBody.create(new byte[0]);
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).post(body).build();
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).post(new byte[0]).build();
         return performAsyncCall(request, null, "auth_url", AuthenticationResponse.class);
     }
 
-    Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers) {
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers) {
         var url = HttpUrl.parse(baseUrl + "/auth/generateWidgetSession").newBuilder()
                 .addQueryParameter("providers", providers)
                 .build();
 
-        RequestBody body = RequestBody.create(new byte[0]);
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).post(body).build();
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).post(new byte[0]).build();
         return performAsyncCall(request, null, "url", GenerateWidgetResponse.class);
     }
 
-    Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id) {
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id) {
         var url = HttpUrl.parse(baseUrl + "/auth/generateWidgetSession").newBuilder()
                 .addQueryParameter("providers", providers)
                 .addQueryParameter("reference_id", reference_id)
                 .build();
 
-        RequestBody body = RequestBody.create(new byte[0]);
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).post(body).build();
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).post(new byte[0]).build();
         return performAsyncCall(request, null, "url", GenerateWidgetResponse.class);
     }
 
-    Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url) {
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url) {
         var url = HttpUrl.parse(baseUrl + "/auth/generateWidgetSession").newBuilder()
                 .addQueryParameter("providers", providers)
                 .addQueryParameter("reference_id", reference_id)
                 .addQueryParameter("auth_success_redirect_url", auth_success_redirect_url)
                 .build();
 
-        RequestBody body = RequestBody.create(new byte[0]);
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).post(body).build();
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).post(new byte[0]).build();
         return performAsyncCall(request, null, "url", GenerateWidgetResponse.class);
     }
 
-    Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url) {
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url) {
         var url = HttpUrl.parse(baseUrl + "/auth/generateWidgetSession").newBuilder()
                 .addQueryParameter("providers", providers)
                 .addQueryParameter("reference_id", reference_id)
@@ -222,11 +662,10 @@ public class RestClientV2 {
                 .addQueryParameter("auth_failure_redirect_url", auth_failure_redirect_url)
                 .build();
 
-        RequestBody body = RequestBody.create(new byte[0]);
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).post(body).build();
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).post(new byte[0]).build();
         return performAsyncCall(request, null, "url", GenerateWidgetResponse.class);
     }
-    Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url, String language) {
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url, String language) {
         var url = HttpUrl.parse(baseUrl + "/auth/generateWidgetSession").newBuilder()
                 .addQueryParameter("providers", providers)
                 .addQueryParameter("reference_id", reference_id)
@@ -235,12 +674,11 @@ public class RestClientV2 {
                 .addQueryParameter("language", language) 
                 .build();
 
-        RequestBody body = RequestBody.create(new byte[0]);
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).post(body).build();
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).post(new byte[0]).build();
         return performAsyncCall(request, null, "url", GenerateWidgetResponse.class);
     }
 
-    Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url, String language, boolean show_disconnect) {
+    CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url, String language, boolean show_disconnect) {
         var url = HttpUrl.parse(baseUrl + "/auth/generateWidgetSession").newBuilder()
                 .addQueryParameter("providers", providers)
                 .addQueryParameter("reference_id", reference_id)
@@ -250,79 +688,136 @@ public class RestClientV2 {
                 .addQueryParameter("show_disconnect", Boolean.toString(show_disconnect))
                 .build();
 
-        RequestBody body = RequestBody.create(new byte[0]);
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).post(body).build();
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).post(new byte[0]).build();
         return performAsyncCall(request, null, "url", GenerateWidgetResponse.class);
     }
 
-    Future<TerraApiResponse<Void>> deauthenticateUser(PartialUser user) {
+    CompletableFuture<TerraApiResponse<Void>> deauthenticateUser(PartialUser user) {
         var url = HttpUrl.parse(baseUrl + "/auth/deauthenticateUser").newBuilder()
                 .addQueryParameter("user_id", user.getId())
                 .build();
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).delete().build();
-        return performAsyncCall(request, null, null, Void.class);
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).delete().build();
+        return performAsyncCall(request, null, null, Void.class)
+                .whenComplete((response, ex) -> responseCache.invalidateIf(cacheKey -> isCachedForUser(cacheKey, user.getId())));
+    }
+
+    /**
+     * Checks whether a cache key belongs to a request made by this client that would change once the given
+     * user is deauthenticated, i.e. a request about that user or the listing of all users.
+     */
+    private boolean isCachedForUser(String cacheKey, String userId) {
+        var prefix = coalescingPrefix() + "|";
+        if (!cacheKey.startsWith(prefix)) {
+            return false;
+        }
+        // The URL is encoded, so the separator after it is the first one
+        int end = cacheKey.indexOf('|', prefix.length());
+        var url = HttpUrl.parse(cacheKey.substring(prefix.length(), end < 0 ? cacheKey.length() : end));
+        if (url == null) {
+            return false;
+        }
+        return userId.equals(url.queryParameter("user_id")) || url.encodedPath().endsWith("/subscriptions");
     }
 
-    Future<TerraApiResponse<Athlete>> getAthleteForUser(PartialUser user, RequestConfig requestConfig) {
+    CompletableFuture<TerraApiResponse<Athlete>> getAthleteForUser(PartialUser user, RequestConfig requestConfig) {
         var url = HttpUrl.parse(baseUrl + "/athlete").newBuilder()
                 .addQueryParameter("user_id", user.getId())
                 .addQueryParameter("to_webhook", requestConfig.isToWebhook() ? "true" : "false")
                 .build();
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url).build();
-        return performAsyncCall(request, user, "athlete", Athlete.class);
+        var request = addAuthHeadersToBuilder(TransportRequest.builder()).url(url.toString()).tag(PartialUser.class, user).build();
+        if (requestConfig.isToWebhook()) {
+            return performAsyncCall(request, user, "athlete", Athlete.class, requestConfig);
+        }
+        return performCachedCall("/athlete", request, user, "athlete", Athlete.class, requestConfig);
     }
 
-    Future<TerraApiResponse<Activity>> getActivityForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
-        var url = HttpUrl.parse(baseUrl + "/activity").newBuilder()
-                .addQueryParameter("user_id", user.getId());
-        addQueryParametersToBuilder(url, requestConfig, startTime, endTime);
+    CompletableFuture<TerraApiResponse<Activity>> getActivityForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return performDataCall("/activity", user, startTime, endTime, requestConfig, Activity.class,
+                ItemIdentity.of(Activity::getMetadata, m -> m.getSummaryId(), m -> m.getStartTime(), m -> m.getEndTime()));
+    }
 
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url.build()).build();
-        return performAsyncCall(request, user, "data", Activity.class);
+    Flow.Publisher<BulkResult<Activity>> getActivityForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime, BulkOptions options) {
+        var requestConfig = options.getRequestConfig() == null ? defaultRequestConfig : options.getRequestConfig();
+        return performBulkCall(users, options, user -> getActivityForUser(user, startTime, endTime, requestConfig));
     }
 
-    Future<TerraApiResponse<Body>> getBodyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
-        var url = HttpUrl.parse(baseUrl + "/body").newBuilder()
-                .addQueryParameter("user_id", user.getId());
-        addQueryParametersToBuilder(url, requestConfig, startTime, endTime);
+    CompletableFuture<TerraDataStream<Activity>> streamActivityForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        var request = buildDataRequest("/activity", user, startTime, endTime, requestConfig);
+        return performStreamingCall(request, "data", Activity.class, requestConfig);
+    }
 
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url.build()).build();
-        return performAsyncCall(request, user, "data", Body.class);
+    CompletableFuture<TerraApiResponse<Body>> getBodyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return performDataCall("/body", user, startTime, endTime, requestConfig, Body.class,
+                ItemIdentity.of(Body::getMetadata, m -> m.getStartTime(), m -> m.getEndTime()));
     }
 
-    Future<TerraApiResponse<Daily>> getDailyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
-        var url = HttpUrl.parse(baseUrl + "/daily").newBuilder()
-                .addQueryParameter("user_id", user.getId());
-        addQueryParametersToBuilder(url, requestConfig, startTime, endTime);
+    Flow.Publisher<BulkResult<Body>> getBodyForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime, BulkOptions options) {
+        var requestConfig = options.getRequestConfig() == null ? defaultRequestConfig : options.getRequestConfig();
+        return performBulkCall(users, options, user -> getBodyForUser(user, startTime, endTime, requestConfig));
+    }
 
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url.build()).build();
-        return performAsyncCall(request, user, "data", Daily.class);
+    CompletableFuture<TerraDataStream<Body>> streamBodyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        var request = buildDataRequest("/body", user, startTime, endTime, requestConfig);
+        return performStreamingCall(request, "data", Body.class, requestConfig);
     }
 
-    Future<TerraApiResponse<Menstruation>> getMenstruationForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
-        var url = HttpUrl.parse(baseUrl + "/menstruation").newBuilder()
-                .addQueryParameter("user_id", user.getId());
-        addQueryParametersToBuilder(url, requestConfig, startTime, endTime);
+    CompletableFuture<TerraApiResponse<Daily>> getDailyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return performDataCall("/daily", user, startTime, endTime, requestConfig, Daily.class,
+                ItemIdentity.of(Daily::getMetadata, m -> m.getStartTime(), m -> m.getEndTime()));
+    }
 
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url.build()).build();
-        return performAsyncCall(request, user, "data", Menstruation.class);
+    Flow.Publisher<BulkResult<Daily>> getDailyForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime, BulkOptions options) {
+        var requestConfig = options.getRequestConfig() == null ? defaultRequestConfig : options.getRequestConfig();
+        return performBulkCall(users, options, user -> getDailyForUser(user, startTime, endTime, requestConfig));
     }
 
-    Future<TerraApiResponse<Nutrition>> getNutritionForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
-        var url = HttpUrl.parse(baseUrl + "/nutrition").newBuilder()
-                .addQueryParameter("user_id", user.getId());
-        addQueryParametersToBuilder(url, requestConfig, startTime, endTime);
+    CompletableFuture<TerraDataStream<Daily>> streamDailyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        var request = buildDataRequest("/daily", user, startTime, endTime, requestConfig);
+        return performStreamingCall(request, "data", Daily.class, requestConfig);
+    }
 
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url.build()).build();
-        return performAsyncCall(request, user, "data", Nutrition.class);
+    CompletableFuture<TerraApiResponse<Menstruation>> getMenstruationForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return performDataCall("/menstruation", user, startTime, endTime, requestConfig, Menstruation.class,
+                ItemIdentity.of(Menstruation::getMetadata, m -> m.getStartTime(), m -> m.getEndTime()));
     }
 
-    Future<TerraApiResponse<Sleep>> getSleepForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
-        var url = HttpUrl.parse(baseUrl + "/sleep").newBuilder()
-                .addQueryParameter("user_id", user.getId());
-        addQueryParametersToBuilder(url, requestConfig, startTime, endTime);
+    Flow.Publisher<BulkResult<Menstruation>> getMenstruationForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime, BulkOptions options) {
+        var requestConfig = options.getRequestConfig() == null ? defaultRequestConfig : options.getRequestConfig();
+        return performBulkCall(users, options, user -> getMenstruationForUser(user, startTime, endTime, requestConfig));
+    }
+
+    CompletableFuture<TerraDataStream<Menstruation>> streamMenstruationForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        var request = buildDataRequest("/menstruation", user, startTime, endTime, requestConfig);
+        return performStreamingCall(request, "data", Menstruation.class, requestConfig);
+    }
+
+    CompletableFuture<TerraApiResponse<Nutrition>> getNutritionForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return performDataCall("/nutrition", user, startTime, endTime, requestConfig, Nutrition.class,
+                ItemIdentity.of(Nutrition::getMetadata, m -> m.getStartTime(), m -> m.getEndTime()));
+    }
+
+    Flow.Publisher<BulkResult<Nutrition>> getNutritionForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime, BulkOptions options) {
+        var requestConfig = options.getRequestConfig() == null ? defaultRequestConfig : options.getRequestConfig();
+        return performBulkCall(users, options, user -> getNutritionForUser(user, startTime, endTime, requestConfig));
+    }
+
+    CompletableFuture<TerraDataStream<Nutrition>> streamNutritionForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        var request = buildDataRequest("/nutrition", user, startTime, endTime, requestConfig);
+        return performStreamingCall(request, "data", Nutrition.class, requestConfig);
+    }
+
+    CompletableFuture<TerraApiResponse<Sleep>> getSleepForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return performDataCall("/sleep", user, startTime, endTime, requestConfig, Sleep.class,
+                ItemIdentity.of(Sleep::getMetadata, m -> m.getStartTime(), m -> m.getEndTime()));
+    }
+
+    Flow.Publisher<BulkResult<Sleep>> getSleepForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime, BulkOptions options) {
+        var requestConfig = options.getRequestConfig() == null ? defaultRequestConfig : options.getRequestConfig();
+        return performBulkCall(users, options, user -> getSleepForUser(user, startTime, endTime, requestConfig));
+    }
 
-        var request = addAuthHeadersToBuilder(new Request.Builder()).url(url.build()).build();
-        return performAsyncCall(request, user, "data", Sleep.class);
+    CompletableFuture<TerraDataStream<Sleep>> streamSleepForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        var request = buildDataRequest("/sleep", user, startTime, endTime, requestConfig);
+        return performStreamingCall(request, "data", Sleep.class, requestConfig);
     }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.tryterra.terraclient.impl.v2;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of retries that can be sent relative to the number of requests, over a
+ * sliding window of ten seconds. This stops an outage from turning every failed request into
+ * several more requests.
+ */
+public class RetryBudget {
+    static final int WINDOW_SECONDS = 10;
+
+    private final double ratio;
+    private final int minRetriesPerSecond;
+    private final LongSupplier nanoClock;
+
+    private final long[] requests = new long[WINDOW_SECONDS];
+    private final long[] retries = new long[WINDOW_SECONDS];
+    private long currentSecond;
+
+    /**
+     * Creates a new retry budget.
+     *
+     * @param ratio the number of retries allowed per request, e.g. {@code 0.2} allows one retry for every five requests
+     * @param minRetriesPerSecond the number of retries that are always allowed each second, regardless of request volume
+     */
+    public RetryBudget(double ratio, int minRetriesPerSecond) {
+        this(ratio, minRetriesPerSecond, System::nanoTime);
+    }
+
+    RetryBudget(double ratio, int minRetriesPerSecond, LongSupplier nanoClock) {
+        if (ratio < 0 || minRetriesPerSecond < 0) {
+            throw new IllegalArgumentException("ratio and minRetriesPerSecond cannot be negative");
+        }
+        this.ratio = ratio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.nanoClock = nanoClock;
+        this.currentSecond = TimeUnit.NANOSECONDS.toSeconds(nanoClock.getAsLong());
+    }
+
+    private void advance() {
+        long now = TimeUnit.NANOSECONDS.toSeconds(nanoClock.getAsLong());
+        long elapsed = Math.min(now - currentSecond, WINDOW_SECONDS);
+        for (long i = 1; i <= elapsed; i++) {
+            int slot = Math.floorMod(currentSecond + i, WINDOW_SECONDS);
+            requests[slot] = 0;
+            retries[slot] = 0;
+        }
+        if (now > currentSecond) {
+            currentSecond = now;
+        }
+    }
+
+    /**
+     * Records that a new request (not a retry) has been sent.
+     */
+    public synchronized void recordRequest() {
+        advance();
+        requests[Math.floorMod(currentSecond, WINDOW_SECONDS)]++;
+    }
+
+    /**
+     * Attempts to withdraw a retry from the budget.
+     *
+     * @return whether the retry can be sent
+     */
+    public synchronized boolean tryAcquireRetry() {
+        advance();
+        long totalRequests = 0;
+        long totalRetries = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            totalRequests += requests[i];
+            totalRetries += retries[i];
+        }
+        if (totalRetries + 1 > totalRequests * ratio + (long) minRetriesPerSecond * WINDOW_SECONDS) {
+            return false;
+        }
+        retries[Math.floorMod(currentSecond, WINDOW_SECONDS)]++;
+        return true;
+    }
+}
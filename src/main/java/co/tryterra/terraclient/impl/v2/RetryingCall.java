@@ -0,0 +1,181 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.RequestConfig;
+import co.tryterra.terraclient.transport.TransportRequest;
+import co.tryterra.terraclient.transport.TransportResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Sends a request, retrying it with exponential backoff if it fails in a way that is likely
+ * to be temporary. Retries are scheduled on a timer rather than blocking a thread, and are
+ * only sent while the shared {@link RetryBudget} allows it.
+ */
+class RetryingCall {
+    private static final Logger logger = LoggerFactory.getLogger(RetryingCall.class);
+
+    private final Function<TransportRequest, CompletableFuture<TransportResponse>> send;
+    private final TransportRequest request;
+    private final RequestConfig requestConfig;
+    private final RetryBudget retryBudget;
+    private final ScheduledExecutorService scheduler;
+    private final CompletableFuture<TransportResponse> out = new CompletableFuture<>();
+    private volatile CompletableFuture<TransportResponse> current;
+
+    RetryingCall(
+            Function<TransportRequest, CompletableFuture<TransportResponse>> send,
+            TransportRequest request,
+            RequestConfig requestConfig,
+            RetryBudget retryBudget,
+            ScheduledExecutorService scheduler
+    ) {
+        this.send = send;
+        this.request = request;
+        this.requestConfig = requestConfig;
+        this.retryBudget = retryBudget;
+        this.scheduler = scheduler;
+    }
+
+    CompletableFuture<TransportResponse> execute() {
+        out.whenComplete((response, ex) -> {
+            var attemptFuture = current;
+            if (out.isCancelled() && attemptFuture != null) {
+                attemptFuture.cancel(false);
+            }
+        });
+        attempt(1);
+        return out;
+    }
+
+    private void attempt(int attempt) {
+        if (out.isDone()) {
+            return;
+        }
+        var attemptFuture = send.apply(request);
+        current = attemptFuture;
+        if (out.isCancelled()) {
+            attemptFuture.cancel(false);
+        }
+        attemptFuture.whenComplete((response, ex) -> {
+            if (out.isDone()) {
+                if (response != null) {
+                    response.close();
+                }
+                return;
+            }
+
+            var cause = AdaptiveRangeFetcher.unwrap(ex);
+            if (attempt < requestConfig.getMaxAttempts() && isRetryable(response, cause)) {
+                long delay = computeDelayMillis(attempt, response);
+                if (delay >= 0 && retryBudget.tryAcquireRetry()) {
+                    logger.debug("Retrying request to {} in {}ms (attempt {})", request.getPath(), delay, attempt + 1);
+                    if (response != null) {
+                        response.close();
+                    }
+                    try {
+                        scheduler.schedule(() -> attempt(attempt + 1), delay, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException rejected) {
+                        out.completeExceptionally(rejected);
+                    }
+                    return;
+                }
+                logger.debug("Not retrying request to {}, retry budget exhausted or delay too long", request.getPath());
+            }
+
+            if (cause != null) {
+                out.completeExceptionally(cause);
+            } else {
+                out.complete(response);
+            }
+        });
+    }
+
+    boolean isRetryable(TransportResponse response, Throwable cause) {
+        if (cause != null) {
+            return cause instanceof IOException && !request.getMethod().equals("POST");
+        }
+        int code = response.code();
+        return code == 429 || code == 502 || code == 503 || code == 504;
+    }
+
+    /**
+     * Computes the delay before the next attempt.
+     *
+     * @param attempt the number of the attempt that just failed
+     * @param response the response of that attempt, if there was one
+     * @return the delay in milliseconds, or {@code -1} if the API asked for a delay longer than the backoff cap
+     */
+    long computeDelayMillis(int attempt, TransportResponse response) {
+        long cap = requestConfig.getRetryBackoffCap().toMillis();
+        long backoff = requestConfig.getRetryBackoffBase().toMillis() << Math.min(attempt - 1, 30);
+        if (backoff < 0 || backoff > cap) {
+            backoff = cap;
+        }
+        if (requestConfig.isRetryJitter()) {
+            backoff = ThreadLocalRandom.current().nextLong(backoff + 1);
+        }
+
+        if (response != null && requestConfig.isRespectRetryAfter()) {
+            var requested = parseRetryAfter(response);
+            if (requested != null) {
+                if (requested.toMillis() > cap) {
+                    return -1;
+                }
+                backoff = Math.max(backoff, requested.toMillis());
+            }
+        }
+        return backoff;
+    }
+
+    static Duration parseRetryAfter(TransportResponse response) {
+        var retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            retryAfter = response.header("RateLimit-Reset");
+        }
+        if (retryAfter == null) {
+            return null;
+        }
+        retryAfter = retryAfter.trim();
+
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter)));
+        } catch (NumberFormatException ignored) {
+            // Not a number of seconds, so try parsing it as an HTTP date
+        }
+        try {
+            var date = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME);
+            var delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException ex) {
+            logger.debug("Could not parse Retry-After header value {}", retryAfter);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * A call whose result is shared between several callers. Each caller receives its own copy of the
+ * call's future, and the call itself is only cancelled once every caller has cancelled their copy.
+ *
+ * @param <T> the type of the call result
+ */
+class SharedCall<T> {
+    private final CompletableFuture<T> source;
+    private int callers = 0;
+    private boolean abandoned = false;
+
+    SharedCall(CompletableFuture<T> source) {
+        this.source = source;
+    }
+
+    /**
+     * Cancels {@code upstream} when {@code downstream} is cancelled.
+     *
+     * @param downstream the future returned to the caller
+     * @param upstream the future that {@code downstream} is derived from
+     * @param <T> the type of the downstream result
+     * @return {@code downstream}, for chaining
+     */
+    static <T> CompletableFuture<T> propagateCancellation(CompletableFuture<T> downstream, Future<?> upstream) {
+        downstream.whenComplete((result, ex) -> {
+            if (downstream.isCancelled()) {
+                upstream.cancel(false);
+            }
+        });
+        return downstream;
+    }
+
+    /**
+     * Completes {@code downstream} with the result of a call, or closes the result if
+     * {@code downstream} has already been completed, e.g. because it was cancelled or timed out.
+     *
+     * @param downstream the future returned to the caller
+     * @param result the result of the call
+     * @param <T> the type of the result
+     */
+    static <T> void completeOrClose(CompletableFuture<T> downstream, T result) {
+        if (!downstream.complete(result)) {
+            closeQuietly(result);
+        }
+    }
+
+    /**
+     * Closes a call result that was never handed to a caller, if it is {@link Closeable}.
+     *
+     * @param result the unused result
+     */
+    static void closeQuietly(Object result) {
+        if (result instanceof Closeable) {
+            try {
+                ((Closeable) result).close();
+            } catch (IOException ignored) {
+                // The result was never handed to the caller, so there is nobody to report this to
+            }
+        }
+    }
+
+    /**
+     * Joins the call as a new caller.
+     *
+     * @return the caller's copy of the call's future, or {@code null} if every previous caller
+     *         has already cancelled the call
+     */
+    CompletableFuture<T> join() {
+        synchronized (this) {
+            if (abandoned) {
+                return null;
+            }
+            callers++;
+        }
+        var copy = source.copy();
+        copy.whenComplete((result, ex) -> {
+            if (copy.isCancelled()) {
+                leave();
+            }
+        });
+        return copy;
+    }
+
+    private void leave() {
+        synchronized (this) {
+            callers--;
+            if (callers > 0 || source.isDone()) {
+                return;
+            }
+            abandoned = true;
+        }
+        source.cancel(false);
+    }
+
+    CompletableFuture<T> getSource() {
+        return source;
+    }
+}
@@ -16,10 +16,14 @@
 
 package co.tryterra.terraclient.impl.v2;
 
+import co.tryterra.terraclient.BulkOptions;
 import co.tryterra.terraclient.RequestConfig;
+import co.tryterra.terraclient.api.BulkResult;
+import co.tryterra.terraclient.api.ClientStats;
 import co.tryterra.terraclient.api.PartialUser;
 import co.tryterra.terraclient.api.TerraApiResponse;
-import co.tryterra.terraclient.api.TerraClientV2;
+import co.tryterra.terraclient.api.TerraClientV2Async;
+import co.tryterra.terraclient.api.TerraDataStream;
 import co.tryterra.terraclient.api.User;
 import co.tryterra.terraclient.impl.PartialUserImpl;
 import co.tryterra.terraclient.models.Athlete;
@@ -34,21 +38,24 @@ import co.tryterra.terraclient.models.v2.nutrition.Nutrition;
 import co.tryterra.terraclient.models.v2.sleep.Sleep;
 
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Objects;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
-public class TerraClientV2Impl implements TerraClientV2 {
+public class TerraClientV2Impl implements TerraClientV2Async {
     private final RestClientV2 restClient;
 
     private final RequestConfig defaultRequestConfig;
 
     public TerraClientV2Impl(String xApiKey, String devId, String apiUrl, RequestConfig requestConfig) {
-        if (apiUrl == null) {
-            this.restClient = new RestClientV2(xApiKey, devId);
-        } else {
-            this.restClient = new RestClientV2(xApiKey, devId, apiUrl);
-        }
+        this(xApiKey, devId, apiUrl, requestConfig, ClientResources.createDefault());
+    }
+
+    public TerraClientV2Impl(String xApiKey, String devId, String apiUrl, RequestConfig requestConfig, ClientResources resources) {
+        this.restClient = new RestClientV2(xApiKey, devId, apiUrl, resources, requestConfig);
         this.defaultRequestConfig = requestConfig;
     }
 
@@ -59,147 +66,294 @@ public class TerraClientV2Impl implements TerraClientV2 {
     }
 
     @Override
-    public Future<? extends TerraApiResponse<? extends User>> getAllUsers() {
+    public CompletableFuture<? extends TerraApiResponse<? extends User>> getAllUsers() {
         return restClient.getAllUsers();
     }
 
     @Override
-    public Future<? extends TerraApiResponse<? extends User>> getUser(String userId) {
+    public CompletableFuture<? extends TerraApiResponse<? extends User>> getUser(String userId) {
         return restClient.getUser(userId);
     }
 
     @Override
-    public Future<? extends TerraApiResponse<? extends User>> getUser(PartialUser user) {
+    public CompletableFuture<? extends TerraApiResponse<? extends User>> getUser(PartialUser user) {
         return this.getUser(user.getId());
     }
 
     @Override
-    public Future<TerraApiResponse<ProvidersResponse>> listProviders() {
+    public CompletableFuture<TerraApiResponse<ProvidersResponse>> listProviders() {
         return restClient.listProviders();
     }
     
     @Override
-    public Future<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource) {
+    public CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource) {
         return restClient.generateAuthenticationURL(resource);
     }
 
     @Override
-    public Future<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id) {
+    public CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id) {
         return restClient.generateAuthenticationURL(resource, reference_id);
     }
 
     @Override
-    public Future<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id, String auth_success_redirect_url) {
+    public CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id, String auth_success_redirect_url) {
         return restClient.generateAuthenticationURL(resource, reference_id, auth_success_redirect_url);
     }
 
     @Override
-    public Future<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url) {
+    public CompletableFuture<TerraApiResponse<AuthenticationResponse>> generateAuthenticationURL(String resource, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url) {
         return restClient.generateAuthenticationURL(resource, reference_id, auth_success_redirect_url, auth_failure_redirect_url);
     }
 
     @Override
-    public Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers) {
+    public CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers) {
         return restClient.generateWidgetSession(providers);
     }
 
     @Override
-    public Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id) {
+    public CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id) {
         return restClient.generateWidgetSession(providers, reference_id);
     }
 
     @Override
-    public Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url) {
+    public CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url) {
         return restClient.generateWidgetSession(providers, reference_id, auth_success_redirect_url);
     }
 
     @Override
-    public Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url) {
+    public CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url) {
         return restClient.generateWidgetSession(providers, reference_id, auth_success_redirect_url, auth_failure_redirect_url);
     }
 
     @Override
-    public Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url, String language) {
+    public CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url, String language) {
         return restClient.generateWidgetSession(providers, reference_id, auth_success_redirect_url, auth_failure_redirect_url, language);
     }
 
     @Override
-    public Future<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url, String language, boolean show_disconnect) {
+    public CompletableFuture<TerraApiResponse<GenerateWidgetResponse>> generateWidgetSession(String providers, String reference_id, String auth_success_redirect_url, String auth_failure_redirect_url, String language, boolean show_disconnect) {
         return restClient.generateWidgetSession(providers, reference_id, auth_success_redirect_url, auth_failure_redirect_url, language, show_disconnect);
     }
 
     @Override
-    public Future<TerraApiResponse<Void>> deauthenticateUser(PartialUser user) {
+    public CompletableFuture<TerraApiResponse<Void>> deauthenticateUser(PartialUser user) {
         return restClient.deauthenticateUser(user);
     }
 
     @Override
-    public Future<TerraApiResponse<Athlete>> getAthleteForUser(PartialUser user) {
+    public CompletableFuture<TerraApiResponse<Athlete>> getAthleteForUser(PartialUser user) {
         return this.getAthleteForUser(user, this.defaultRequestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Athlete>> getAthleteForUser(PartialUser user, RequestConfig requestConfig) {
+    public CompletableFuture<TerraApiResponse<Athlete>> getAthleteForUser(PartialUser user, RequestConfig requestConfig) {
         return restClient.getAthleteForUser(user, requestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Activity>> getActivityForUser(PartialUser user, Instant startTime, Instant endTime) {
+    public CompletableFuture<TerraApiResponse<Activity>> getActivityForUser(PartialUser user, Instant startTime, Instant endTime) {
         return this.getActivityForUser(user, startTime, endTime, this.defaultRequestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Activity>> getActivityForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+    public CompletableFuture<TerraApiResponse<Activity>> getActivityForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
         return restClient.getActivityForUser(user, startTime, endTime, requestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Body>> getBodyForUser(PartialUser user, Instant startTime, Instant endTime) {
+    public CompletableFuture<TerraApiResponse<Body>> getBodyForUser(PartialUser user, Instant startTime, Instant endTime) {
         return this.getBodyForUser(user, startTime, endTime, this.defaultRequestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Body>> getBodyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+    public CompletableFuture<TerraApiResponse<Body>> getBodyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
         return restClient.getBodyForUser(user, startTime, endTime, requestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Daily>> getDailyForUser(PartialUser user, Instant startTime, Instant endTime) {
+    public CompletableFuture<TerraApiResponse<Daily>> getDailyForUser(PartialUser user, Instant startTime, Instant endTime) {
         return this.getDailyForUser(user, startTime, endTime, this.defaultRequestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Daily>> getDailyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+    public CompletableFuture<TerraApiResponse<Daily>> getDailyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
         return restClient.getDailyForUser(user, startTime, endTime, requestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Menstruation>> getMenstruationForUser(PartialUser user, Instant startTime, Instant endTime) {
+    public CompletableFuture<TerraApiResponse<Menstruation>> getMenstruationForUser(PartialUser user, Instant startTime, Instant endTime) {
         return this.getMenstruationForUser(user, startTime, endTime, this.defaultRequestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Menstruation>> getMenstruationForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+    public CompletableFuture<TerraApiResponse<Menstruation>> getMenstruationForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
         return restClient.getMenstruationForUser(user, startTime, endTime, requestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Nutrition>> getNutritionForUser(PartialUser user, Instant startTime, Instant endTime) {
+    public CompletableFuture<TerraApiResponse<Nutrition>> getNutritionForUser(PartialUser user, Instant startTime, Instant endTime) {
         return this.getNutritionForUser(user, startTime, endTime, this.defaultRequestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Nutrition>> getNutritionForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+    public CompletableFuture<TerraApiResponse<Nutrition>> getNutritionForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
         return restClient.getNutritionForUser(user, startTime, endTime, requestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Sleep>> getSleepForUser(PartialUser user, Instant startTime, Instant endTime) {
+    public CompletableFuture<TerraApiResponse<Sleep>> getSleepForUser(PartialUser user, Instant startTime, Instant endTime) {
         return this.getSleepForUser(user, startTime, endTime, this.defaultRequestConfig);
     }
 
     @Override
-    public Future<TerraApiResponse<Sleep>> getSleepForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+    public CompletableFuture<TerraApiResponse<Sleep>> getSleepForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
         return restClient.getSleepForUser(user, startTime, endTime, requestConfig);
     }
+
+    @Override
+    public Flow.Publisher<BulkResult<Activity>> getActivityForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime) {
+        return this.getActivityForUsers(users, startTime, endTime, BulkOptions.builder().build());
+    }
+
+    @Override
+    public Flow.Publisher<BulkResult<Activity>> getActivityForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime,
+                                                      BulkOptions options) {
+        Objects.requireNonNull(options, "options cannot be null");
+        return restClient.getActivityForUsers(users, startTime, endTime, options);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Activity>> streamActivityForUser(PartialUser user, Instant startTime, Instant endTime) {
+        return this.streamActivityForUser(user, startTime, endTime, this.defaultRequestConfig);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Activity>> streamActivityForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return restClient.streamActivityForUser(user, startTime, endTime, requestConfig);
+    }
+
+    @Override
+    public Flow.Publisher<BulkResult<Body>> getBodyForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime) {
+        return this.getBodyForUsers(users, startTime, endTime, BulkOptions.builder().build());
+    }
+
+    @Override
+    public Flow.Publisher<BulkResult<Body>> getBodyForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime,
+                                                      BulkOptions options) {
+        Objects.requireNonNull(options, "options cannot be null");
+        return restClient.getBodyForUsers(users, startTime, endTime, options);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Body>> streamBodyForUser(PartialUser user, Instant startTime, Instant endTime) {
+        return this.streamBodyForUser(user, startTime, endTime, this.defaultRequestConfig);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Body>> streamBodyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return restClient.streamBodyForUser(user, startTime, endTime, requestConfig);
+    }
+
+    @Override
+    public Flow.Publisher<BulkResult<Daily>> getDailyForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime) {
+        return this.getDailyForUsers(users, startTime, endTime, BulkOptions.builder().build());
+    }
+
+    @Override
+    public Flow.Publisher<BulkResult<Daily>> getDailyForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime,
+                                                      BulkOptions options) {
+        Objects.requireNonNull(options, "options cannot be null");
+        return restClient.getDailyForUsers(users, startTime, endTime, options);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Daily>> streamDailyForUser(PartialUser user, Instant startTime, Instant endTime) {
+        return this.streamDailyForUser(user, startTime, endTime, this.defaultRequestConfig);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Daily>> streamDailyForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return restClient.streamDailyForUser(user, startTime, endTime, requestConfig);
+    }
+
+    @Override
+    public Flow.Publisher<BulkResult<Menstruation>> getMenstruationForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime) {
+        return this.getMenstruationForUsers(users, startTime, endTime, BulkOptions.builder().build());
+    }
+
+    @Override
+    public Flow.Publisher<BulkResult<Menstruation>> getMenstruationForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime,
+                                                      BulkOptions options) {
+        Objects.requireNonNull(options, "options cannot be null");
+        return restClient.getMenstruationForUsers(users, startTime, endTime, options);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Menstruation>> streamMenstruationForUser(PartialUser user, Instant startTime, Instant endTime) {
+        return this.streamMenstruationForUser(user, startTime, endTime, this.defaultRequestConfig);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Menstruation>> streamMenstruationForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return restClient.streamMenstruationForUser(user, startTime, endTime, requestConfig);
+    }
+
+    @Override
+    public Flow.Publisher<BulkResult<Nutrition>> getNutritionForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime) {
+        return this.getNutritionForUsers(users, startTime, endTime, BulkOptions.builder().build());
+    }
+
+    @Override
+    public Flow.Publisher<BulkResult<Nutrition>> getNutritionForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime,
+                                                      BulkOptions options) {
+        Objects.requireNonNull(options, "options cannot be null");
+        return restClient.getNutritionForUsers(users, startTime, endTime, options);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Nutrition>> streamNutritionForUser(PartialUser user, Instant startTime, Instant endTime) {
+        return this.streamNutritionForUser(user, startTime, endTime, this.defaultRequestConfig);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Nutrition>> streamNutritionForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return restClient.streamNutritionForUser(user, startTime, endTime, requestConfig);
+    }
+
+    @Override
+    public Flow.Publisher<BulkResult<Sleep>> getSleepForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime) {
+        return this.getSleepForUsers(users, startTime, endTime, BulkOptions.builder().build());
+    }
+
+    @Override
+    public Flow.Publisher<BulkResult<Sleep>> getSleepForUsers(Collection<? extends PartialUser> users, Instant startTime, Instant endTime,
+                                                      BulkOptions options) {
+        Objects.requireNonNull(options, "options cannot be null");
+        return restClient.getSleepForUsers(users, startTime, endTime, options);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Sleep>> streamSleepForUser(PartialUser user, Instant startTime, Instant endTime) {
+        return this.streamSleepForUser(user, startTime, endTime, this.defaultRequestConfig);
+    }
+
+    @Override
+    public CompletableFuture<TerraDataStream<Sleep>> streamSleepForUser(PartialUser user, Instant startTime, Instant endTime, RequestConfig requestConfig) {
+        return restClient.streamSleepForUser(user, startTime, endTime, requestConfig);
+    }
+
+    @Override
+    public ClientStats getStats() {
+        return new ClientStatsImpl(restClient);
+    }
+
+    @Override
+    public CompletableFuture<Void> warmUp(int connections) {
+        return restClient.warmUp(connections);
+    }
+
+    @Override
+    public boolean shutdown(Duration drainTimeout) {
+        return restClient.shutdown(drainTimeout);
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals the number of response body bytes received and decoded for each endpoint, so that the
+ * compression ratio of each endpoint can be reported.
+ */
+class TransferStats {
+    private final Map<String, Totals> totals = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long wireBytes, long decodedBytes) {
+        var endpointTotals = totals.computeIfAbsent(endpoint, ignored -> new Totals());
+        endpointTotals.wireBytes.add(wireBytes);
+        endpointTotals.decodedBytes.add(decodedBytes);
+    }
+
+    Map<String, Long> getWireBytes() {
+        var out = new HashMap<String, Long>();
+        totals.forEach((endpoint, endpointTotals) -> out.put(endpoint, endpointTotals.wireBytes.sum()));
+        return out;
+    }
+
+    Map<String, Long> getDecodedBytes() {
+        var out = new HashMap<String, Long>();
+        totals.forEach((endpoint, endpointTotals) -> out.put(endpoint, endpointTotals.decodedBytes.sum()));
+        return out;
+    }
+
+    private static class Totals {
+        private final LongAdder wireBytes = new LongAdder();
+        private final LongAdder decodedBytes = new LongAdder();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.TerraApiResponse;
+import co.tryterra.terraclient.api.User;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Fetches a time range as a series of fixed size windows, with a bounded number of windows
+ * in flight at once, and merges the results into a single response.
+ *
+ * @param <T> the type of the data items
+ */
+class WindowedRangeFetcher<T> {
+    private final BiFunction<Instant, Instant, CompletableFuture<TerraApiResponse<T>>> fetchWindow;
+    private final ItemIdentity<T> identity;
+
+    WindowedRangeFetcher(BiFunction<Instant, Instant, CompletableFuture<TerraApiResponse<T>>> fetchWindow, ItemIdentity<T> identity) {
+        this.fetchWindow = fetchWindow;
+        this.identity = identity;
+    }
+
+    static List<Instant[]> splitRange(Instant startTime, Instant endTime, Duration window) {
+        var windows = new ArrayList<Instant[]>();
+        var windowStart = startTime;
+        while (windowStart.isBefore(endTime)) {
+            var windowEnd = windowStart.plus(window);
+            if (windowEnd.isAfter(endTime)) {
+                windowEnd = endTime;
+            }
+            windows.add(new Instant[]{windowStart, windowEnd});
+            windowStart = windowEnd;
+        }
+        if (windows.isEmpty()) {
+            windows.add(new Instant[]{startTime, endTime});
+        }
+        return windows;
+    }
+
+    CompletableFuture<TerraApiResponse<T>> fetch(Instant startTime, Instant endTime, Duration window, int maxConcurrency) {
+        var windows = splitRange(startTime, endTime, window);
+        var results = new AtomicReferenceArray<TerraApiResponse<T>>(windows.size());
+        var nextWindow = new AtomicInteger(0);
+        var remaining = new AtomicInteger(windows.size());
+        var out = new CompletableFuture<TerraApiResponse<T>>();
+        Set<CompletableFuture<?>> running = ConcurrentHashMap.newKeySet();
+        out.whenComplete((response, ex) -> running.forEach(windowFuture -> windowFuture.cancel(false)));
+
+        // Windows that complete straight away, e.g. from the cache, ask for the next one from inside the
+        // loop that launched them. Only one thread runs the loop at a time, and it picks up those
+        // requests instead of recursing, so that the stack doesn't grow with the number of windows.
+        var pendingLaunches = new AtomicInteger(0);
+        Runnable[] launchNext = new Runnable[1];
+        Runnable launchOne = () -> {
+            int index = nextWindow.getAndIncrement();
+            if (index >= windows.size() || out.isDone()) {
+                return;
+            }
+            var bounds = windows.get(index);
+            var windowFuture = fetchWindow.apply(bounds[0], bounds[1]);
+            running.add(windowFuture);
+            if (out.isDone()) {
+                windowFuture.cancel(false);
+            }
+            windowFuture.whenComplete((response, ex) -> {
+                running.remove(windowFuture);
+                if (ex != null) {
+                    out.completeExceptionally(ex);
+                    return;
+                }
+                results.set(index, response);
+                if (remaining.decrementAndGet() == 0) {
+                    try {
+                        var ordered = new ArrayList<TerraApiResponse<T>>(windows.size());
+                        for (int i = 0; i < windows.size(); i++) {
+                            ordered.add(results.get(i));
+                        }
+                        out.complete(merge(ordered, identity));
+                    } catch (RuntimeException mergeEx) {
+                        out.completeExceptionally(mergeEx);
+                    }
+                } else {
+                    launchNext[0].run();
+                }
+            });
+        };
+        launchNext[0] = () -> {
+            if (pendingLaunches.getAndIncrement() > 0) {
+                return;
+            }
+            do {
+                launchOne.run();
+            } while (pendingLaunches.decrementAndGet() > 0);
+        };
+        for (int i = 0; i < Math.min(maxConcurrency, windows.size()); i++) {
+            launchNext[0].run();
+        }
+        return out;
+    }
+
+    /**
+     * Merges the responses for consecutive windows of a time range. If any window was unsuccessful,
+     * the first such response is returned instead.
+     *
+     * @param results the responses, ordered by the start of their window
+     * @param identity the identity used to order and de-duplicate items
+     * @param <T> the type of the data items
+     * @return the merged response
+     */
+    static <T> TerraApiResponse<T> merge(List<TerraApiResponse<T>> results, ItemIdentity<T> identity) {
+        for (var response : results) {
+            if (!response.isSuccessful()) {
+                return response;
+            }
+        }
+
+        var first = results.get(0);
+        var items = new ArrayList<T>();
+        var seen = new HashSet<String>();
+        boolean anyData = false;
+        User user = null;
+        for (var response : results) {
+            if (user == null) {
+                user = response.getUser();
+            }
+            if (response.getParsedData() == null) {
+                continue;
+            }
+            anyData = true;
+            for (var item : response.getParsedData()) {
+                var key = identity.keyOf(item);
+                if (key == null || seen.add(key)) {
+                    items.add(item);
+                }
+            }
+        }
+        items.sort(Comparator.comparing(identity::startTimeOf, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        var rawBody = JsonNodeFactory.instance.objectNode();
+        first.getRawBody().fields().forEachRemaining(field -> {
+            if (!field.getKey().equals("data")) {
+                rawBody.set(field.getKey(), field.getValue());
+            }
+        });
+        return new MergedTerraApiResponse<>(first, anyData ? items : null, rawBody, user,
+                sumBytes(results, TerraApiResponse::getWireBytes), sumBytes(results, TerraApiResponse::getDecodedBytes));
+    }
+
+    /**
+     * Sums a byte count over several responses, which is unknown if it is unknown for any of them.
+     */
+    private static <T> long sumBytes(List<TerraApiResponse<T>> results, ToLongFunction<TerraApiResponse<T>> bytes) {
+        long total = 0;
+        for (var response : results) {
+            long value = bytes.applyAsLong(response);
+            if (value < 0) {
+                return -1;
+            }
+            total += value;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.transport;
+
+import okhttp3.Dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * OkHttp {@link Dns} which caches the addresses of each host for a fixed time, so that new
+ * connections to the API don't each wait for a DNS lookup. Failed lookups are not cached.
+ */
+public class CachingDns implements Dns {
+    private final Dns delegate;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new cache in front of the system resolver.
+     *
+     * @param ttl how long the addresses of a host are cached for
+     */
+    public CachingDns(Duration ttl) {
+        this(Dns.SYSTEM, ttl);
+    }
+
+    /**
+     * Creates a new cache in front of the given resolver.
+     *
+     * @param delegate the resolver to look up hosts that are not cached with
+     * @param ttl how long the addresses of a host are cached for
+     */
+    public CachingDns(Dns delegate, Duration ttl) {
+        this(delegate, ttl, System::nanoTime);
+    }
+
+    CachingDns(Dns delegate, Duration ttl, LongSupplier nanoClock) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+        Objects.requireNonNull(ttl, "ttl cannot be null");
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        long now = nanoClock.getAsLong();
+        var entry = cache.get(hostname);
+        if (entry != null && now - entry.resolvedAt < ttlNanos) {
+            return entry.addresses;
+        }
+        var addresses = List.copyOf(delegate.lookup(hostname));
+        cache.put(hostname, new Entry(addresses, now));
+        return addresses;
+    }
+
+    private static class Entry {
+        private final List<InetAddress> addresses;
+        private final long resolvedAt;
+
+        Entry(List<InetAddress> addresses, long resolvedAt) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+}
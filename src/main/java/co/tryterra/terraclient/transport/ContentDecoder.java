@@ -0,0 +1,56 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes response bodies that were compressed by the API with a content coding, such as
+ * {@code gzip}. Every registered decoder is advertised in the {@code Accept-Encoding} header of
+ * requests, and responses are decoded as they are read, so that the JSON parser never has to wait
+ * for the whole body to be decompressed. Decoders for codings that need extra libraries, such as
+ * {@code br} or {@code zstd}, can be provided by implementing this interface.
+ */
+public interface ContentDecoder {
+    /**
+     * The name of the content coding that this decoder decodes, as used in the
+     * {@code Accept-Encoding} and {@code Content-Encoding} headers.
+     *
+     * @return the content coding name, e.g. {@code gzip}
+     */
+    String encoding();
+
+    /**
+     * Wraps an encoded body in a stream of its decoded bytes. This is only called once the body
+     * starts to be read.
+     *
+     * @param encoded the encoded body
+     * @return the decoded body
+     * @throws IOException if the body could not be decoded
+     */
+    InputStream decode(InputStream encoded) throws IOException;
+
+    /**
+     * The decoder for the {@code gzip} content coding, which is registered by default.
+     *
+     * @return the gzip decoder
+     */
+    static ContentDecoder gzip() {
+        return GzipContentDecoder.INSTANCE;
+    }
+}
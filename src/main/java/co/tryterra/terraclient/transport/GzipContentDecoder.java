@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+final class GzipContentDecoder implements ContentDecoder {
+    static final GzipContentDecoder INSTANCE = new GzipContentDecoder();
+    private static final int BUFFER_SIZE = 8192;
+
+    private GzipContentDecoder() {}
+
+    @Override
+    public String encoding() {
+        return "gzip";
+    }
+
+    @Override
+    public InputStream decode(InputStream encoded) throws IOException {
+        return new GZIPInputStream(encoded, BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.transport;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The HTTP client that requests to the Terra API are sent through. {@link OkHttpTransport} is used
+ * by default, and {@link JdkHttpTransport} is provided as an alternative. Other HTTP clients can be
+ * used by implementing this interface and passing the implementation to
+ * {@link co.tryterra.terraclient.TerraClientFactory.Builder#transport(HttpTransport)}.
+ * <br>
+ * Implementations must be thread safe and must not block the calling thread while sending. They
+ * should multiplex concurrent requests over HTTP/2 where the server supports it, as the API does,
+ * so that large numbers of concurrent requests share a few connections.
+ */
+public interface HttpTransport {
+    /**
+     * Sends a request. The returned future completes once the response headers have arrived, and the
+     * body is then read from the response by the caller, who closes it. Cancelling the future must
+     * abort the exchange, and a response that arrives after the future has been cancelled must be
+     * closed by the transport.
+     *
+     * @param request the request to send
+     * @return future that completes with the response, or exceptionally with an {@link java.io.IOException}
+     * if the request could not be sent or the response could not be received
+     */
+    CompletableFuture<TransportResponse> send(TransportRequest request);
+
+    /**
+     * The number of requests that the transport will run at once against a single host before it starts
+     * queueing them. This is used to size the default bulkheads so that some of the transport's capacity
+     * is always left for cheap requests.
+     *
+     * @return the number of concurrent requests per host, or {@link Integer#MAX_VALUE} if it is unlimited
+     */
+    default int getMaxRequestsPerHost() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Opens connections to a host ahead of time, so that the first real requests don't wait for DNS,
+     * TCP and TLS setup. The default implementation sends concurrent {@code HEAD} requests to the URL,
+     * whose responses are ignored. Over HTTP/2 these share a single connection.
+     *
+     * @param url the URL to connect to
+     * @param connections the number of connections to open
+     * @return future that completes once every request has completed
+     */
+    default CompletableFuture<Void> warmUp(String url, int connections) {
+        var request = TransportRequest.builder().url(url).method("HEAD", null).build();
+        var futures = new CompletableFuture<?>[connections];
+        for (int i = 0; i < connections; i++) {
+            futures[i] = send(request).thenAccept(TransportResponse::close);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Releases the transport's resources once the clients using it have shut down, by closing its
+     * idle connections and stopping any threads that it owns. Requests sent afterwards may fail.
+     * The default implementation does nothing.
+     */
+    default void shutdown() {
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * An {@link HttpTransport} which sends requests with the {@link HttpClient} built into the JDK. By
+ * default it prefers HTTP/2, so that concurrent requests to the API are multiplexed over a single
+ * connection where the server supports it.
+ * <br>
+ * The JDK client does not support a connect timeout per request, so only the connect timeout of
+ * the client itself is used. The read timeout of a request is applied as the time allowed for its
+ * response headers to arrive. Timeouts are reported as an {@link InterruptedIOException}, the same
+ * as with OkHttp, so that they are recognised as timeouts whichever transport is used.
+ */
+public class JdkHttpTransport implements HttpTransport {
+    private final HttpClient httpClient;
+
+    /**
+     * Creates a new transport with a client that prefers HTTP/2.
+     */
+    public JdkHttpTransport() {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build());
+    }
+
+    /**
+     * Creates a new transport which sends requests with the given client.
+     *
+     * @param httpClient the HTTP client to send requests with
+     */
+    public JdkHttpTransport(HttpClient httpClient) {
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient cannot be null");
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> send(TransportRequest request) {
+        var builder = HttpRequest.newBuilder(URI.create(request.getUrl()))
+                .method(request.getMethod(), request.getBody() == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(request.getBody()));
+        request.getHeaders().forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+        if (request.getReadTimeout() != null) {
+            builder.timeout(request.getReadTimeout());
+        }
+
+        var exchange = httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        var out = new CompletableFuture<TransportResponse>();
+        exchange.whenComplete((response, ex) -> {
+            if (ex != null) {
+                out.completeExceptionally(mapTimeout(ex));
+            } else if (!out.complete(new JdkResponse(response))) {
+                closeQuietly(response.body());
+            }
+        });
+        out.whenComplete((response, ex) -> {
+            if (out.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return out;
+    }
+
+    private static Throwable mapTimeout(Throwable ex) {
+        var cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (!(cause instanceof HttpTimeoutException)) {
+            return ex;
+        }
+        var timeout = new InterruptedIOException(cause.getMessage());
+        timeout.initCause(cause);
+        return timeout;
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // Closing only releases the connection, so there is nothing to do if it fails
+        }
+    }
+
+    private static class JdkResponse implements TransportResponse {
+        private final HttpResponse<InputStream> response;
+
+        JdkResponse(HttpResponse<InputStream> response) {
+            this.response = response;
+        }
+
+        @Override
+        public int code() {
+            return response.statusCode();
+        }
+
+        @Override
+        public String header(String name) {
+            return response.headers().firstValue(name).orElse(null);
+        }
+
+        @Override
+        public InputStream body() {
+            return response.body();
+        }
+
+        @Override
+        public long contentLength() {
+            return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(response.body());
+        }
+    }
+}
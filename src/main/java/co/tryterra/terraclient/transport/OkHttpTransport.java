@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.transport;
+
+import co.tryterra.terraclient.impl.OkHttp3AsyncCall;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The default {@link HttpTransport}, which sends requests with an {@link OkHttpClient}.
+ * <br>
+ * OkHttp negotiates HTTP/2 with the API through ALPN unless the client's protocols have been
+ * restricted, in which case every concurrent request to the API is multiplexed over a single
+ * connection. The number of concurrent requests is still capped by the dispatcher's per-host
+ * limit, which can be raised without opening more connections.
+ */
+public class OkHttpTransport implements HttpTransport {
+    private final OkHttpClient httpClient;
+    private final boolean ownsDispatcher;
+    private final Map<List<Duration>, OkHttpClient> timeoutClients = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new transport with a default {@link OkHttpClient}.
+     */
+    public OkHttpTransport() {
+        this(new OkHttpClient(), true);
+    }
+
+    /**
+     * Creates a new transport which sends requests with the given client. Shutting the transport
+     * down closes the client's idle connections, but leaves its dispatcher running.
+     *
+     * @param httpClient the HTTP client to send requests with
+     */
+    public OkHttpTransport(OkHttpClient httpClient) {
+        this(httpClient, false);
+    }
+
+    /**
+     * Creates a new transport which sends requests with the given client.
+     *
+     * @param httpClient the HTTP client to send requests with
+     * @param ownsDispatcher whether shutting the transport down should also stop the threads of the
+     *                       client's dispatcher, which must then not be shared with other clients
+     */
+    public OkHttpTransport(OkHttpClient httpClient, boolean ownsDispatcher) {
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient cannot be null");
+        this.ownsDispatcher = ownsDispatcher;
+    }
+
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    @Override
+    public int getMaxRequestsPerHost() {
+        return httpClient.dispatcher().getMaxRequestsPerHost();
+    }
+
+    @Override
+    public void shutdown() {
+        if (ownsDispatcher) {
+            httpClient.dispatcher().executorService().shutdown();
+        }
+        httpClient.connectionPool().evictAll();
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> send(TransportRequest request) {
+        var builder = new Request.Builder().url(request.getUrl());
+        request.getHeaders().forEach((name, values) -> values.forEach(value -> builder.addHeader(name, value)));
+        builder.method(request.getMethod(), request.getBody() == null ? null : RequestBody.create(request.getBody()));
+
+        var exchange = new OkHttp3AsyncCall(clientFor(request).newCall(builder.build()))
+                .asCompletionStage()
+                .toCompletableFuture();
+        var out = new CompletableFuture<TransportResponse>();
+        exchange.whenComplete((response, ex) -> {
+            if (ex != null) {
+                out.completeExceptionally(ex);
+            } else if (!out.complete(new OkHttpResponse(response))) {
+                response.close();
+            }
+        });
+        out.whenComplete((response, ex) -> {
+            if (out.isCancelled()) {
+                exchange.cancel(false);
+            }
+        });
+        return out;
+    }
+
+    OkHttpClient clientFor(TransportRequest request) {
+        var connectTimeout = request.getConnectTimeout();
+        var readTimeout = request.getReadTimeout();
+        if (connectTimeout == null && readTimeout == null) {
+            return httpClient;
+        }
+        // Derived clients share the connection pool and dispatcher of the original
+        return timeoutClients.computeIfAbsent(Arrays.asList(connectTimeout, readTimeout), ignored -> {
+            var builder = httpClient.newBuilder();
+            if (connectTimeout != null) {
+                builder.connectTimeout(connectTimeout);
+            }
+            if (readTimeout != null) {
+                builder.readTimeout(readTimeout);
+            }
+            return builder.build();
+        });
+    }
+
+    private static class OkHttpResponse implements TransportResponse {
+        private final Response response;
+
+        OkHttpResponse(Response response) {
+            this.response = response;
+        }
+
+        @Override
+        public int code() {
+            return response.code();
+        }
+
+        @Override
+        public String header(String name) {
+            return response.header(name);
+        }
+
+        @Override
+        public InputStream body() {
+            return response.body() == null ? null : response.body().byteStream();
+        }
+
+        @Override
+        public long contentLength() {
+            return response.body() == null ? -1 : response.body().contentLength();
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+}
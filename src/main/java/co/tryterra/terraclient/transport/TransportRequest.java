@@ -0,0 +1,220 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.transport;
+
+import co.tryterra.terraclient.api.annotations.Nullable;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An immutable request to be sent by an {@link HttpTransport}.
+ */
+public final class TransportRequest {
+    private final String method;
+    private final String url;
+    private final String path;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final Map<Class<?>, Object> tags;
+
+    TransportRequest(Builder builder) {
+        this.method = builder.method;
+        this.url = Objects.requireNonNull(builder.url, "url cannot be null");
+        this.path = URI.create(url).getRawPath();
+        var copiedHeaders = new LinkedHashMap<String, List<String>>();
+        builder.headers.forEach((name, values) -> copiedHeaders.put(name, List.copyOf(values)));
+        this.headers = Collections.unmodifiableMap(copiedHeaders);
+        this.body = builder.body;
+        this.connectTimeout = builder.connectTimeout;
+        this.readTimeout = builder.readTimeout;
+        this.tags = Map.copyOf(builder.tags);
+    }
+
+    /**
+     * Builder class for {@link TransportRequest} instances.
+     */
+    public static class Builder {
+        private String method = "GET";
+        private String url;
+        private final Map<String, List<String>> headers = new LinkedHashMap<>();
+        private byte[] body = null;
+        private Duration connectTimeout = null;
+        private Duration readTimeout = null;
+        private final Map<Class<?>, Object> tags = new HashMap<>();
+
+        Builder() {}
+
+        public TransportRequest build() {
+            return new TransportRequest(this);
+        }
+
+        /**
+         * Set the URL of the request, which must already be encoded.
+         *
+         * @param value the URL
+         * @return this builder object for method chaining
+         */
+        public Builder url(String value) {
+            this.url = Objects.requireNonNull(value, "url cannot be null");
+            return this;
+        }
+
+        public Builder header(String name, String value) {
+            Objects.requireNonNull(name, "name cannot be null");
+            Objects.requireNonNull(value, "value cannot be null");
+            this.headers.computeIfAbsent(name, ignored -> new ArrayList<>()).add(value);
+            return this;
+        }
+
+        public Builder get() {
+            return method("GET", null);
+        }
+
+        public Builder post(byte[] value) {
+            return method("POST", Objects.requireNonNull(value, "value cannot be null"));
+        }
+
+        public Builder delete() {
+            return method("DELETE", null);
+        }
+
+        /**
+         * Set the method and body of the request.
+         *
+         * @param method the HTTP method
+         * @param body the body, or {@code null} if the request has no body
+         * @return this builder object for method chaining
+         */
+        public Builder method(String method, @Nullable byte[] body) {
+            this.method = Objects.requireNonNull(method, "method cannot be null");
+            this.body = body;
+            return this;
+        }
+
+        /**
+         * Set the timeout for establishing a connection, overriding the transport's default.
+         *
+         * @param value the connect timeout, or {@code null} to use the transport's default
+         * @return this builder object for method chaining
+         */
+        public Builder connectTimeout(@Nullable Duration value) {
+            this.connectTimeout = value;
+            return this;
+        }
+
+        /**
+         * Set the maximum time to wait for data once connected, overriding the transport's default.
+         *
+         * @param value the read timeout, or {@code null} to use the transport's default
+         * @return this builder object for method chaining
+         */
+        public Builder readTimeout(@Nullable Duration value) {
+            this.readTimeout = value;
+            return this;
+        }
+
+        /**
+         * Attach an object to the request, which is not sent but can be read back by whoever handles
+         * the request.
+         *
+         * @param type the type to attach the object as
+         * @param value the object to attach, or {@code null} to remove any object attached as the type
+         * @return this builder object for method chaining
+         */
+        public <T> Builder tag(Class<? super T> type, @Nullable T value) {
+            Objects.requireNonNull(type, "type cannot be null");
+            if (value == null) {
+                this.tags.remove(type);
+            } else {
+                this.tags.put(type, value);
+            }
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a builder with every setting of this request.
+     *
+     * @return the created builder
+     */
+    public Builder newBuilder() {
+        var builder = new Builder();
+        builder.method = method;
+        builder.url = url;
+        headers.forEach((name, values) -> builder.headers.put(name, new ArrayList<>(values)));
+        builder.body = body;
+        builder.connectTimeout = connectTimeout;
+        builder.readTimeout = readTimeout;
+        builder.tags.putAll(tags);
+        return builder;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * The encoded path of the URL.
+     *
+     * @return the path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    @Nullable
+    public byte[] getBody() {
+        return body;
+    }
+
+    @Nullable
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    @Nullable
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    @Nullable
+    public <T> T getTag(Class<? extends T> type) {
+        return type.cast(tags.get(type));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.transport;
+
+import co.tryterra.terraclient.api.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.InputStream;
+
+/**
+ * A response received by an {@link HttpTransport}, whose body has not been read yet. Closing the
+ * response releases its connection.
+ */
+public interface TransportResponse extends Closeable {
+    /**
+     * The HTTP status code of the response.
+     *
+     * @return the status code
+     */
+    int code();
+
+    /**
+     * Whether the status code of the response is in the range 200-299.
+     *
+     * @return whether the response is successful
+     */
+    default boolean isSuccessful() {
+        return code() >= 200 && code() < 300;
+    }
+
+    /**
+     * The first value of a response header.
+     *
+     * @param name the case-insensitive name of the header
+     * @return the header value, or {@code null} if the response does not have the header
+     */
+    @Nullable
+    String header(String name);
+
+    /**
+     * The body of the response, which can only be read once.
+     *
+     * @return the body, or {@code null} if the response does not have one
+     */
+    @Nullable
+    InputStream body();
+
+    /**
+     * The length of the body in bytes, as sent by the API.
+     *
+     * @return the body length, or {@code -1} if it is not known
+     */
+    long contentLength();
+
+    @Override
+    void close();
+}
@@ -18,6 +18,7 @@ module co.tryterra.terraclient {
     requires static lombok;
 
     requires okhttp3;
+    requires java.net.http;
     requires com.fasterxml.jackson.databind;
     requires org.slf4j;
 
@@ -26,6 +27,7 @@ module co.tryterra.terraclient {
     exports co.tryterra.terraclient.api.annotations;
     exports co.tryterra.terraclient.exceptions;
     exports co.tryterra.terraclient.models;
+    exports co.tryterra.terraclient.transport;
     exports co.tryterra.terraclient.models.v2.activity;
     exports co.tryterra.terraclient.models.v2.body;
     exports co.tryterra.terraclient.models.v2.common;
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient;
+
+import co.tryterra.terraclient.impl.v2.ClientResources;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TestTerraClientFactory {
+    @Test
+    void testBuilderSharesResourcesBetweenClients() {
+        var builder = TerraClientFactory.builder();
+        var resources = builder.getResources();
+        builder.getClientV2("foo", "bar");
+        builder.getClientV2("baz", "qux");
+        assertThat(builder.getResources()).isSameAs(resources);
+    }
+
+    @Test
+    void testBuilderCreatesNewResourcesOnceLastClientIsShutDown() {
+        var builder = TerraClientFactory.builder();
+        var client = builder.getClientV2("foo", "bar");
+        var resources = builder.getResources();
+        client.close();
+
+        assertThat(resources.isShutdown()).isTrue();
+        builder.getClientV2("baz", "qux");
+        assertThat(builder.getResources()).isNotSameAs(resources);
+        assertThat(builder.getResources().isShutdown()).isFalse();
+    }
+
+    @Test
+    void testBuilderAppliesDispatcherLimits() {
+        var httpClient = TerraClientFactory.builder()
+                .maxRequests(128)
+                .maxRequestsPerHost(32)
+                .getResources()
+                .getHttpClient();
+        assertThat(httpClient.dispatcher().getMaxRequests()).isEqualTo(128);
+        assertThat(httpClient.dispatcher().getMaxRequestsPerHost()).isEqualTo(32);
+    }
+
+    @Test
+    void testBuilderSharesSuppliedHttpClientPool() {
+        var supplied = new OkHttpClient();
+        var httpClient = TerraClientFactory.builder()
+                .httpClient(supplied)
+                .getResources()
+                .getHttpClient();
+        assertThat(httpClient.connectionPool()).isSameAs(supplied.connectionPool());
+        assertThat(httpClient.dispatcher()).isSameAs(supplied.dispatcher());
+    }
+
+    @Test
+    void testBuilderRejectsChangesAfterClientCreated() {
+        var builder = TerraClientFactory.builder();
+        builder.getClientV2("foo", "bar");
+        assertThatThrownBy(() -> builder.maxRequests(10)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> builder.warmUpConnections(2)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testConnectionsAreWarmedUpOncePerBuilder() throws Exception {
+        try (var server = new MockWebServer()) {
+            for (int i = 0; i < 6; i++) {
+                server.enqueue(new MockResponse());
+            }
+            var builder = TerraClientFactory.builder()
+                    .apiUrl(server.url("/v2").toString())
+                    .warmUpConnections(2);
+            builder.getClientV2("foo", "bar");
+            builder.getClientV2("baz", "qux");
+            builder.getAsyncClientV2("quux", "corge");
+
+            assertThat(server.takeRequest(1, TimeUnit.SECONDS).getMethod()).isEqualTo("HEAD");
+            assertThat(server.takeRequest(1, TimeUnit.SECONDS).getMethod()).isEqualTo("HEAD");
+            assertThat(server.takeRequest(500, TimeUnit.MILLISECONDS)).isNull();
+        }
+    }
+
+    @Test
+    void testBulkheadsAndCircuitBreakersAreOptIn() {
+        var plain = TerraClientFactory.builder().getResources();
+        assertThat(plain.getCircuitBreaker()).isNull();
+        assertThat(startedDataCalls(plain, 10)).isEqualTo(10);
+
+        var guarded = TerraClientFactory.builder()
+                .maxRequestsPerHost(4)
+                .dataBulkhead()
+                .circuitBreaker()
+                .getResources();
+        assertThat(guarded.getCircuitBreaker()).isNotNull();
+        assertThat(startedDataCalls(guarded, 10)).isEqualTo(3);
+    }
+
+    private static int startedDataCalls(ClientResources resources, int calls) {
+        var started = new AtomicInteger();
+        for (int i = 0; i < calls; i++) {
+            resources.getBulkheads().run("/activity", () -> {
+                started.incrementAndGet();
+                return new CompletableFuture<>();
+            });
+        }
+        return started.get();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestTerraExecutors {
+    @Test
+    void testVirtualThreadSupportMatchesJdkVersion() {
+        assertThat(TerraExecutors.isVirtualThreadSupported()).isEqualTo(Runtime.version().feature() >= 21);
+    }
+
+    @Test
+    void testVirtualThreadExecutorRunsTasksOnAnyJdk() throws Exception {
+        var executor = TerraExecutors.newVirtualThreadExecutor();
+        try {
+            var thread = executor.submit(Thread::currentThread).get(1, TimeUnit.SECONDS);
+            assertThat(thread).isNotEqualTo(Thread.currentThread());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
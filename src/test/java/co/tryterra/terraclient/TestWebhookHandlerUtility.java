@@ -16,9 +16,22 @@
 
 package co.tryterra.terraclient;
 
+import co.tryterra.terraclient.api.TypedPayload;
+import co.tryterra.terraclient.exceptions.WebhookQueueFullException;
+import co.tryterra.terraclient.models.v2.activity.Activity;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class TestWebhookHandlerUtility {
     @Test
@@ -62,4 +75,172 @@ class TestWebhookHandlerUtility {
         assertThat(parsed.getUser().isPresent()).isTrue();
         assertThat(parsed.getUser().get().getId()).isEqualTo("bar");
     }
+
+    @Test
+    void testShutdownWaitsForRunningHandlersThenRejectsPayloads() throws Exception {
+        var started = new CountDownLatch(1);
+        var finished = new AtomicBoolean(false);
+        var handler = new WebhookHandlerUtility("foo").addDefaultEventHandler(payload -> {
+            started.countDown();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            finished.set(true);
+        });
+
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"bar\"}");
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(handler.shutdown(Duration.ofSeconds(5))).isTrue();
+        assertThat(finished).isTrue();
+        assertThatThrownBy(() -> handler.parseAndDispatchWebhookPayload("{\"type\":\"bar\"}"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testDuplicatePayloadsAreDispatchedOnce() throws Exception {
+        var handled = new AtomicInteger();
+        var handler = new WebhookHandlerUtility("foo")
+                .enableDeduplication(100, Duration.ofMinutes(10))
+                .addDefaultEventHandler(payload -> handled.incrementAndGet());
+
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"bar\"}");
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"bar\"}");
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"baz\"}");
+        assertThat(handler.shutdown(Duration.ofSeconds(5))).isTrue();
+        assertThat(handled).hasValue(2);
+        assertThat(handler.getDuplicatePayloadCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testReplayProtectionRejectsOldSignatures() {
+        var handler = new WebhookHandlerUtility("foo").enableReplayProtection(Duration.ofMinutes(5));
+        assertThat(handler.verifySignature(
+                "t=12345678,v1=599aa529690b885a43f184327c582375068d70705b7a471af15e10682c6f5313",
+                "{'bar':'baz'}"
+        )).isFalse();
+    }
+
+    @Test
+    void testPayloadsWithoutHandlerAreDroppedBeforeFullParse() throws Exception {
+        var handled = new AtomicInteger();
+        var handler = new WebhookHandlerUtility("foo").addEventHandler("sleep", payload -> handled.incrementAndGet());
+
+        // Malformed after the type, which is never read as there is no handler for activity
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"activity\",\"data\":[");
+        handler.parseAndDispatchWebhookPayload("{\"data\":[{\"type\":\"sleep\"}],\"type\":\"sleep\"}");
+        assertThat(handler.shutdown(Duration.ofSeconds(5))).isTrue();
+        assertThat(handled).hasValue(1);
+    }
+
+    @Test
+    void testTypedHandlerReceivesBoundData() {
+        var received = new AtomicReference<TypedPayload<List<Activity>>>();
+        var handler = new WebhookHandlerUtility("foo").onActivity(received::set);
+
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"activity\",\"data\":["
+                + "{\"metadata\":{\"summary_id\":\"a\"}},{\"metadata\":{\"summary_id\":\"b\"}}],"
+                + "\"user\":{\"user_id\":\"bar\",\"provider\":\"GARMIN\",\"last_webhook_update\":null,\"scopes\":null},"
+                + "\"version\":\"2022-03-16\"}");
+        assertThat(handler.shutdown(Duration.ofSeconds(5))).isTrue();
+
+        var payload = received.get();
+        assertThat(payload.getType()).isEqualTo("activity");
+        assertThat(payload.getData()).extracting(a -> a.getMetadata().getSummaryId()).containsExactly("a", "b");
+        assertThat(payload.getUser().get().getId()).isEqualTo("bar");
+        assertThat(payload.getEnvelope().get("version").asText()).isEqualTo("2022-03-16");
+        assertThat(payload.getEnvelope().has("data")).isFalse();
+    }
+
+    @Test
+    void testParsedPayloadBindsEachViewOnce() {
+        var handler = new WebhookHandlerUtility("foo");
+        var parsed = handler.parseWebhookPayload("{\"type\":\"activity\",\"data\":[{\"metadata\":{\"summary_id\":\"a\"}}],"
+                + "\"user\":{\"user_id\":\"bar\",\"provider\":\"baz\",\"last_webhook_update\":null,\"scopes\":null}}");
+
+        assertThat(parsed.asActivityV2().get()).hasSize(1).isSameAs(parsed.asActivityV2().get());
+        assertThat(parsed.getUser().get()).isSameAs(parsed.getUser().get());
+        assertThat(parsed.asSleepV2()).isEmpty();
+    }
+
+    @Test
+    void testFullDispatchQueueThrowsAndAllowsRetry() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var handled = new CountDownLatch(3);
+        var executor = Executors.newSingleThreadExecutor();
+        var handler = new WebhookHandlerUtility("foo", executor)
+                .enableDeduplication(100, Duration.ofMinutes(10))
+                .configureDispatchQueue(1, WebhookHandlerUtility.OverflowPolicy.THROW)
+                .addDefaultEventHandler(payload -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    handled.countDown();
+                });
+
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"a\"}");
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"b\"}");
+        assertThat(handler.getDispatchQueueDepth()).isEqualTo(1);
+        // Reconfiguring keeps the payload that is already queued
+        handler.configureDispatchQueue(1, WebhookHandlerUtility.OverflowPolicy.THROW);
+        assertThat(handler.getDispatchQueueDepth()).isEqualTo(1);
+        assertThatThrownBy(() -> handler.parseAndDispatchWebhookPayload("{\"type\":\"c\"}"))
+                .isInstanceOf(WebhookQueueFullException.class);
+        assertThat(handler.getRejectedPayloadCount()).isEqualTo(1);
+
+        release.countDown();
+        // Terra's retry of the rejected payload is not treated as a duplicate
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (handler.getDispatchQueueDepth() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(handler.getDispatchQueueDepth()).isZero();
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"c\"}");
+        assertThat(handled.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(handler.getDuplicatePayloadCount()).isZero();
+        assertThat(handler.getMaxDispatchQueueWait()).isPositive();
+        assertThat(handler.shutdown(Duration.ofSeconds(5))).isTrue();
+        executor.shutdown();
+    }
+
+    @Test
+    void testFullDispatchQueueRunsHandlerOnCallingThread() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var callerThreads = new AtomicInteger();
+        var caller = Thread.currentThread();
+        var executor = Executors.newSingleThreadExecutor();
+        var handler = new WebhookHandlerUtility("foo", executor)
+                .configureDispatchQueue(1, WebhookHandlerUtility.OverflowPolicy.CALLER_RUNS)
+                .addDefaultEventHandler(payload -> {
+                    if (Thread.currentThread() == caller) {
+                        callerThreads.incrementAndGet();
+                        return;
+                    }
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"a\"}");
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"b\"}");
+        handler.parseAndDispatchWebhookPayload("{\"type\":\"c\"}");
+        assertThat(callerThreads).hasValue(1);
+        assertThat(handler.getCallerRunsPayloadCount()).isEqualTo(1);
+        assertThat(handler.getRejectedPayloadCount()).isZero();
+
+        release.countDown();
+        assertThat(handler.shutdown(Duration.ofSeconds(5))).isTrue();
+        executor.shutdown();
+    }
 }
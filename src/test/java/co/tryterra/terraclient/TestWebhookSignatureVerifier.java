@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TestWebhookSignatureVerifier {
+    private static final String HEADER = "t=12345678,v1=599aa529690b885a43f184327c582375068d70705b7a471af15e10682c6f5313";
+    private static final byte[] BODY = "{'bar':'baz'}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testVerifyAcceptsValidSignatureForEveryBodyType() {
+        var verifier = new WebhookSignatureVerifier("foo");
+        assertThat(verifier.verify(HEADER, BODY)).isTrue();
+        assertThat(verifier.verify(HEADER, "{'bar':'baz'}")).isTrue();
+
+        var buffer = ByteBuffer.allocateDirect(BODY.length + 2);
+        buffer.put((byte) 'x').put(BODY).put((byte) 'x').flip().position(1).limit(BODY.length + 1);
+        assertThat(verifier.verify(HEADER, buffer)).isTrue();
+        assertThat(buffer.position()).isEqualTo(1);
+        assertThat(verifier.verify(HEADER, buffer)).isTrue();
+    }
+
+    @Test
+    void testVerifyRejectsTamperedOrMalformedHeaders() {
+        var verifier = new WebhookSignatureVerifier("foo");
+        assertThat(verifier.verify(HEADER.replace("t=12345678", "t=12345679"), BODY)).isFalse();
+        assertThat(verifier.verify(HEADER.replace("v1=5", "v1=6"), BODY)).isFalse();
+        assertThat(verifier.verify(HEADER.toUpperCase(), BODY)).isFalse();
+        assertThat(verifier.verify(HEADER + "00", BODY)).isFalse();
+        assertThat(verifier.verify("t=,v1=599aa529", BODY)).isFalse();
+        assertThat(verifier.verify("t=1234,s=aef6655db12", BODY)).isFalse();
+        assertThat(verifier.verify(null, BODY)).isFalse();
+        assertThat(new WebhookSignatureVerifier("bar").verify(HEADER, BODY)).isFalse();
+    }
+
+    @Test
+    void testEmptySecretIsRejected() {
+        assertThatThrownBy(() -> new WebhookSignatureVerifier("")).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testReplayWindowRejectsStaleAndFutureTimestamps() {
+        long signedAt = 12345678;
+        assertThat(new WebhookSignatureVerifier("foo", Duration.ofMinutes(5), () -> signedAt + 300).verify(HEADER, BODY)).isTrue();
+        assertThat(new WebhookSignatureVerifier("foo", Duration.ofMinutes(5), () -> signedAt + 301).verify(HEADER, BODY)).isFalse();
+        assertThat(new WebhookSignatureVerifier("foo", Duration.ofMinutes(5), () -> signedAt - 301).verify(HEADER, BODY)).isFalse();
+        assertThat(new WebhookSignatureVerifier("foo", Duration.ofMinutes(5), () -> signedAt).verify(
+                "t=1234567890123456789012,v1=599aa529690b885a43f184327c582375068d70705b7a471af15e10682c6f5313", BODY)).isFalse();
+    }
+}
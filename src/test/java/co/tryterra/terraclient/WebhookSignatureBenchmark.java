@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the throughput of {@link WebhookSignatureVerifier} against the way signatures used to be
+ * verified, which compiled the header pattern, created and keyed a new {@link Mac}, and compared hex
+ * strings for every webhook. This is not run as part of the test suite, run it with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=co.tryterra.terraclient.WebhookSignatureBenchmark
+ * </pre>
+ * This is a plain timing loop rather than a JMH benchmark, as the build does not depend on JMH. It
+ * warms up the JIT and keeps results alive in a sink, but runs every case in one JVM and reports no
+ * error bounds, so differences of a few percent between runs are noise. If JMH is added as a
+ * test-scoped dependency, each case maps onto a {@code @Benchmark} method over a {@code @State} that
+ * holds the verifier, header and body.
+ */
+public class WebhookSignatureBenchmark {
+    private static final String SECRET = "benchmark-secret";
+    private static final int[] BODY_SIZES = {512, 16 * 1024, 256 * 1024};
+    private static final long RUN_NANOS = 2_000_000_000L;
+    private static final byte[] HEX_ARRAY = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    // Keeps results alive so that the JIT can't remove the work being measured
+    private static int sink;
+
+    public static void main(String[] args) throws Exception {
+        var verifier = new WebhookSignatureVerifier(SECRET);
+        for (int size : BODY_SIZES) {
+            var body = "{\"type\":\"activity\",\"data\":\"" + "x".repeat(size) + "\"}";
+            var bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+            var header = "t=1700000000,v1=" + sign("1700000000", body);
+            if (!verifyLegacy(header, body) || !verifier.verify(header, bodyBytes)) {
+                throw new IllegalStateException("Benchmark signature does not verify");
+            }
+
+            // The first pass of each warms up the JIT
+            for (int pass = 0; pass < 2; pass++) {
+                double legacy = measure(() -> verifyLegacy(header, body));
+                double string = measure(() -> verifier.verify(header, body));
+                double bytes = measure(() -> verifier.verify(header, bodyBytes));
+                if (pass == 1) {
+                    System.out.printf("body %7d bytes: legacy %10.0f ops/s, verifier(String) %10.0f ops/s (x%.2f), "
+                                    + "verifier(byte[]) %10.0f ops/s (x%.2f)%n",
+                            bodyBytes.length, legacy, string, string / legacy, bytes, bytes / legacy);
+                }
+            }
+        }
+        if (sink == 0) {
+            throw new IllegalStateException("No signatures were verified");
+        }
+    }
+
+    private interface Op {
+        boolean run();
+    }
+
+    private static double measure(Op op) {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 100; i++) {
+                sink += op.run() ? 1 : 0;
+            }
+            ops += 100;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < RUN_NANOS);
+        return ops / (elapsed / 1e9);
+    }
+
+    private static String sign(String timestamp, String body) throws InvalidKeyException {
+        var mac = WebhookHandlerUtility.getMacInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        mac.update((timestamp + "." + body).getBytes(StandardCharsets.UTF_8));
+        return bytesToHex(mac.doFinal()).toLowerCase();
+    }
+
+    private static String bytesToHex(byte[] bytes) {
+        byte[] hexChars = new byte[bytes.length * 2];
+        for (int j = 0; j < bytes.length; j++) {
+            int v = bytes[j] & 0xFF;
+            hexChars[j * 2] = HEX_ARRAY[v >>> 4];
+            hexChars[j * 2 + 1] = HEX_ARRAY[v & 0x0F];
+        }
+        return new String(hexChars, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The previous implementation of {@link WebhookHandlerUtility#verifySignature(String, String)}.
+     */
+    private static boolean verifyLegacy(String signatureHeader, String requestBody) {
+        var pattern = Pattern.compile("t=(?<t>\\d+),v1=(?<s>[\\da-f]+)");
+        var matcher = pattern.matcher(signatureHeader);
+        if (!matcher.matches()) {
+            return false;
+        }
+
+        String timestamp = matcher.group("t");
+        String signature = matcher.group("s");
+
+        SecretKeySpec secretKeySpec = new SecretKeySpec(
+                SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"
+        );
+
+        Mac digest = WebhookHandlerUtility.getMacInstance("HmacSHA256");
+        try {
+            digest.init(secretKeySpec);
+        } catch (InvalidKeyException ex) {
+            throw new IllegalStateException("Secret key is invalid", ex);
+        }
+
+        digest.update(timestamp.getBytes(StandardCharsets.UTF_8));
+        digest.update(".".getBytes(StandardCharsets.UTF_8));
+        digest.update(requestBody.getBytes(StandardCharsets.UTF_8));
+
+        String encodedSignature = bytesToHex(digest.doFinal()).toLowerCase();
+        return encodedSignature.equals(signature);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestDeduplicationCache {
+    private static byte[] payload(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testRepeatedPayloadIsDuplicateUntilItExpires() {
+        var clock = new AtomicLong();
+        var cache = new DeduplicationCache(10, Duration.ofSeconds(60), clock::get);
+
+        assertThat(cache.markSeen(payload("a"))).isTrue();
+        assertThat(cache.markSeen(payload("b"))).isTrue();
+        assertThat(cache.markSeen(payload("a"))).isFalse();
+        assertThat(cache.getDuplicates()).isEqualTo(1);
+
+        clock.addAndGet(Duration.ofSeconds(60).toNanos());
+        assertThat(cache.markSeen(payload("a"))).isTrue();
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testOldestPayloadIsForgottenWhenFull() {
+        var cache = new DeduplicationCache(2, Duration.ofHours(1));
+
+        assertThat(cache.markSeen(payload("a"))).isTrue();
+        assertThat(cache.markSeen(payload("b"))).isTrue();
+        assertThat(cache.markSeen(payload("c"))).isTrue();
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.markSeen(payload("c"))).isFalse();
+        assertThat(cache.markSeen(payload("a"))).isTrue();
+    }
+}
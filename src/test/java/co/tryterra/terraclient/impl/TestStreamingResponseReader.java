@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl;
+
+import co.tryterra.terraclient.exceptions.BodyParsingException;
+import co.tryterra.terraclient.models.v2.activity.Activity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TestStreamingResponseReader {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private StreamingResponseReader<Activity> readerFor(String body) throws IOException {
+        return new StreamingResponseReader<>(
+                objectMapper.getFactory().createParser(body), objectMapper, "data", Activity.class);
+    }
+
+    private List<Activity> readAll(StreamingResponseReader<Activity> reader) throws BodyParsingException {
+        var out = new ArrayList<Activity>();
+        Activity item;
+        while ((item = reader.readNext()) != null) {
+            out.add(item);
+        }
+        return out;
+    }
+
+    @Test
+    void testReadsItemsAndEnvelopeInAnyOrder() throws Exception {
+        var reader = readerFor("{\"type\":\"activity\",\"data\":["
+                + "{\"metadata\":{\"summary_id\":\"a\"}},{\"metadata\":{\"summary_id\":\"b\"}}"
+                + "],\"user\":{\"user_id\":\"foo\"}}");
+        var items = readAll(reader);
+        assertThat(items).extracting(a -> a.getMetadata().getSummaryId()).containsExactly("a", "b");
+        assertThat(reader.isKeyFound()).isTrue();
+        assertThat(reader.getEnvelope().get("type").asText()).isEqualTo("activity");
+        assertThat(reader.getEnvelope().get("user").get("user_id").asText()).isEqualTo("foo");
+        assertThat(reader.getEnvelope().has("data")).isFalse();
+    }
+
+    @Test
+    void testSkipsItemsThatCannotBeBound() throws Exception {
+        var reader = readerFor("{\"data\":["
+                + "{\"metadata\":{\"summary_id\":\"a\"}},"
+                + "{\"metadata\":{\"upload_type\":{\"nested\":[1,2]}}},"
+                + "\"foo\","
+                + "{\"metadata\":{\"summary_id\":\"c\"}}"
+                + "]}");
+        assertThat(readAll(reader)).extracting(a -> a.getMetadata().getSummaryId()).containsExactly("a", "c");
+    }
+
+    @Test
+    void testMissingKeyIsReported() throws Exception {
+        var reader = readerFor("{\"status\":\"success\",\"data\":null}");
+        assertThat(readAll(reader)).isEmpty();
+        assertThat(reader.isKeyFound()).isFalse();
+    }
+
+    @Test
+    void testMalformedBodyThrows() throws Exception {
+        var reader = readerFor("[1, 2]");
+        assertThatThrownBy(reader::readNext).isInstanceOf(BodyParsingException.class);
+    }
+}
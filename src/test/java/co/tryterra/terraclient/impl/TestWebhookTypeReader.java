@@ -0,0 +1,50 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TestWebhookTypeReader {
+    private final JsonFactory factory = new JsonFactory();
+
+    @Test
+    void testReadTypeSkipsEarlierFieldsAndStopsAtType() throws IOException {
+        var payload = "{\"user\":{\"user_id\":\"foo\",\"type\":\"nested\"},\"data\":[{\"type\":\"x\"}],"
+                + "\"type\":\"activity\",\"after\": this is never read";
+        assertThat(WebhookTypeReader.readType(factory, payload)).isEqualTo("activity");
+        assertThat(WebhookTypeReader.readType(factory, payload.getBytes(StandardCharsets.UTF_8))).isEqualTo("activity");
+    }
+
+    @Test
+    void testReadTypeReturnsNullWithoutTopLevelType() throws IOException {
+        assertThat(WebhookTypeReader.readType(factory, "{\"user\":{\"type\":\"nested\"}}")).isNull();
+        assertThat(WebhookTypeReader.readType(factory, "{\"type\":null}")).isNull();
+    }
+
+    @Test
+    void testReadTypeFailsForNonObjectPayloads() {
+        assertThatThrownBy(() -> WebhookTypeReader.readType(factory, "[\"type\"]")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> WebhookTypeReader.readType(factory, "bar")).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestAdaptiveConcurrencyLimiter {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static void runBatch(AdaptiveConcurrencyLimiter limiter, long rttNanos, AdaptiveConcurrencyLimiter.Outcome outcome) {
+        var slots = new ArrayList<CompletableFuture<Void>>();
+        int limit = limiter.getLimit();
+        for (int i = 0; i < limit; i++) {
+            slots.add(limiter.acquire());
+        }
+        for (var slot : slots) {
+            assertThat(slot).isDone();
+            limiter.release(rttNanos, outcome);
+        }
+    }
+
+    @Test
+    void testLimitGrowsWhileResponsesStayFast() {
+        var limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyLimiter.Config(10, 1, 100));
+        for (int i = 0; i < 5; i++) {
+            runBatch(limiter, FAST, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        }
+        assertThat(limiter.getLimit()).isGreaterThan(10);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void testLimitShrinksWhenResponsesSlowDownOrAreRejected() {
+        var limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyLimiter.Config(50, 1, 100));
+        runBatch(limiter, FAST, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        int afterFast = limiter.getLimit();
+        runBatch(limiter, SLOW, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        assertThat(limiter.getLimit()).isLessThan(afterFast);
+
+        int beforeDrop = limiter.getLimit();
+        limiter.acquire();
+        limiter.release(FAST, AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+        assertThat(limiter.getLimit()).isLessThanOrEqualTo((int) ((beforeDrop + 1) * AdaptiveConcurrencyLimiter.DROP_BACKOFF_RATIO));
+    }
+
+    @Test
+    void testWaitersAreReleasedAsSlotsFree() {
+        var limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyLimiter.Config(1, 1, 1));
+        assertThat(limiter.acquire()).isDone();
+        var waiter = limiter.acquire();
+        assertThat(waiter).isNotDone();
+
+        limiter.release(FAST, AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+        assertThat(waiter).isDone();
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+    }
+}
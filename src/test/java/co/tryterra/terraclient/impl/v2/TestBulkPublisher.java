@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.BulkResult;
+import co.tryterra.terraclient.api.PartialUser;
+import co.tryterra.terraclient.api.TerraApiResponse;
+import co.tryterra.terraclient.impl.PartialUserImpl;
+import co.tryterra.terraclient.impl.UserImpl;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TestBulkPublisher {
+    private static class RecordingSubscriber implements Flow.Subscriber<BulkResult<Object>> {
+        private final List<BulkResult<Object>> results = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private boolean completed = false;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(BulkResult<Object> item) {
+            results.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throw new AssertionError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static TerraApiResponse<Object> response() {
+        @SuppressWarnings("unchecked")
+        TerraApiResponse<Object> response = mock(TerraApiResponse.class);
+        return response;
+    }
+
+    @Test
+    void testUsersAreInterleavedByProvider() {
+        var users = List.of(
+                new UserImpl(null, "a1", "A", null, null, null),
+                new UserImpl(null, "a2", "A", null, null, null),
+                new UserImpl(null, "a3", "A", null, null, null),
+                new UserImpl(null, "b1", "B", null, null, null),
+                new UserImpl(null, "c1", "C", null, null, null)
+        );
+
+        assertThat(BulkPublisher.interleaveByProvider(users))
+                .extracting(PartialUser::getId)
+                .containsExactly("a1", "b1", "c1", "a2", "a3");
+    }
+
+    @Test
+    void testFetchesAreLimitedByConcurrencyAndDemand() {
+        Map<String, CompletableFuture<TerraApiResponse<Object>>> started = new LinkedHashMap<>();
+        var users = List.<PartialUser>of(new PartialUserImpl("1"), new PartialUserImpl("2"), new PartialUserImpl("3"));
+        var publisher = new BulkPublisher<>(users, user -> {
+            var future = new CompletableFuture<TerraApiResponse<Object>>();
+            started.put(user.getId(), future);
+            return future;
+        }, 2);
+        var subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        assertThat(started).containsOnlyKeys("1", "2");
+
+        // An undelivered result still takes up a slot until the subscriber asks for it
+        started.get("1").complete(response());
+        assertThat(started).containsOnlyKeys("1", "2");
+
+        subscriber.subscription.request(10);
+        assertThat(subscriber.results).extracting(r -> r.getUser().getId()).containsExactly("1");
+        assertThat(started).containsOnlyKeys("1", "2", "3");
+
+        started.get("3").completeExceptionally(new IOException("boom"));
+        started.get("2").complete(response());
+        assertThat(subscriber.results).extracting(r -> r.getUser().getId()).containsExactly("1", "3", "2");
+        assertThat(subscriber.results.get(1).getError()).isInstanceOf(IOException.class);
+        assertThat(subscriber.results.get(1).getResponse()).isNull();
+        assertThat(subscriber.completed).isTrue();
+    }
+}
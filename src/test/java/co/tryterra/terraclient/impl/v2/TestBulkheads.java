@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.EndpointClass;
+import co.tryterra.terraclient.exceptions.BulkheadFullException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TestBulkheads {
+    @Test
+    void testEndpointsAreClassified() {
+        assertThat(Bulkheads.classify("/activity")).isEqualTo(EndpointClass.DATA);
+        assertThat(Bulkheads.classify("/athlete")).isEqualTo(EndpointClass.DATA);
+        assertThat(Bulkheads.classify("/userInfo")).isEqualTo(EndpointClass.METADATA);
+        assertThat(Bulkheads.classify("/auth/generateWidgetSession")).isEqualTo(EndpointClass.AUTH);
+    }
+
+    @Test
+    void testFullBulkheadQueuesThenRejectsWithoutAffectingOtherClasses() {
+        var bulkheads = new Bulkheads(Map.of(EndpointClass.DATA, new Bulkheads.Limit(1, 1)));
+        var running = new CompletableFuture<String>();
+        var queued = new CompletableFuture<String>();
+
+        var first = bulkheads.run("/activity", () -> running);
+        var second = bulkheads.run("/sleep", () -> queued);
+        var third = bulkheads.run("/daily", () -> CompletableFuture.completedFuture("c"));
+        var auth = bulkheads.run("/auth/authenticateUser", () -> CompletableFuture.completedFuture("auth"));
+
+        assertThat(auth).isCompletedWithValue("auth");
+        assertThatThrownBy(third::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(BulkheadFullException.class);
+        assertThat(bulkheads.getRejectedRequests()).isEqualTo(1);
+
+        running.complete("a");
+        assertThat(first).isCompletedWithValue("a");
+        assertThat(second).isNotDone();
+        queued.complete("b");
+        assertThat(second).isCompletedWithValue("b");
+    }
+
+    @Test
+    void testCancelledQueuedCallIsNeverStarted() {
+        var bulkheads = new Bulkheads(Map.of(EndpointClass.DATA, new Bulkheads.Limit(1, 10)));
+        var running = new CompletableFuture<String>();
+        var started = new boolean[1];
+
+        bulkheads.run("/activity", () -> running);
+        var queued = bulkheads.run("/activity", () -> {
+            started[0] = true;
+            return CompletableFuture.completedFuture("b");
+        });
+        queued.cancel(false);
+        running.complete("a");
+
+        assertThat(started[0]).isFalse();
+        assertThat(bulkheads.run("/activity", () -> CompletableFuture.completedFuture("c"))).isCompletedWithValue("c");
+    }
+
+    @Test
+    void testCancelledQueuedCallGivesUpItsQueueSlot() {
+        var bulkheads = new Bulkheads(Map.of(EndpointClass.DATA, new Bulkheads.Limit(1, 1)));
+
+        bulkheads.run("/activity", CompletableFuture::new);
+        bulkheads.run("/activity", CompletableFuture::new).cancel(false);
+        assertThat(bulkheads.run("/activity", CompletableFuture::new)).isNotDone();
+        assertThat(bulkheads.getRejectedRequests()).isZero();
+    }
+
+    @Test
+    void testLongQueueOfFailingCallsDoesNotOverflowTheStack() {
+        var bulkheads = new Bulkheads(Map.of(EndpointClass.DATA, new Bulkheads.Limit(1, Integer.MAX_VALUE)));
+        var running = new CompletableFuture<String>();
+        var queued = new ArrayList<CompletableFuture<String>>();
+
+        bulkheads.run("/activity", () -> running);
+        for (int i = 0; i < 100_000; i++) {
+            queued.add(bulkheads.run("/activity", () -> CompletableFuture.failedFuture(new IllegalStateException())));
+        }
+        running.complete("a");
+
+        assertThat(queued).allMatch(CompletableFuture::isCompletedExceptionally);
+        assertThat(bulkheads.run("/activity", () -> CompletableFuture.completedFuture("b"))).isCompletedWithValue("b");
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestCircuitBreaker {
+    private final AtomicLong clock = new AtomicLong(0);
+    private final CircuitBreaker breaker = new CircuitBreaker(
+            new CircuitBreaker.Config(0.5, 4, 4, Duration.ofSeconds(10)), clock::get
+    );
+
+    @Test
+    void testCircuitOpensOnceFailureRateIsReached() {
+        breaker.tryAcquire("/activity").onSuccess();
+        breaker.tryAcquire("/activity").onFailure();
+        breaker.tryAcquire("/activity").onSuccess();
+        assertThat(breaker.tryAcquire("/sleep")).isNotNull();
+        breaker.tryAcquire("/activity").onFailure();
+
+        assertThat(breaker.tryAcquire("/activity")).isNull();
+        assertThat(breaker.tryAcquire("/sleep")).isNotNull();
+        assertThat(breaker.getRejectedRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void testHalfOpenCircuitLetsSingleProbeThrough() {
+        for (int i = 0; i < 4; i++) {
+            breaker.tryAcquire("/activity").onFailure();
+        }
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        var probe = breaker.tryAcquire("/activity");
+        assertThat(probe).isNotNull();
+        assertThat(breaker.tryAcquire("/activity")).isNull();
+        probe.onFailure();
+        assertThat(breaker.tryAcquire("/activity")).isNull();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        breaker.tryAcquire("/activity").onSuccess();
+        assertThat(breaker.tryAcquire("/activity")).isNotNull();
+        assertThat(breaker.tryAcquire("/activity")).isNotNull();
+    }
+
+    @Test
+    void testOutcomesFromBeforeCircuitOpenedAreIgnored() {
+        var late = breaker.tryAcquire("/activity");
+        for (int i = 0; i < 4; i++) {
+            breaker.tryAcquire("/activity").onFailure();
+        }
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        var probe = breaker.tryAcquire("/activity");
+
+        late.onSuccess();
+        assertThat(breaker.tryAcquire("/activity")).isNull();
+        probe.release();
+        assertThat(breaker.tryAcquire("/activity")).isNotNull();
+    }
+}
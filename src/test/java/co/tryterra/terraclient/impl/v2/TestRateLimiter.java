@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TestRateLimiter {
+    private final ScheduledExecutorService scheduler = ClientResources.createDefaultScheduler();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testRequestsOverBurstAreDelayed() throws Exception {
+        var limiter = new RateLimiter(Map.of("/activity", new RateLimiter.Limit(20, 1)), null, scheduler);
+
+        assertThat(limiter.acquire("dev", "/activity", null)).isDone();
+        var delayed = limiter.acquire("dev", "/activity", null);
+        assertThat(delayed).isNotDone();
+        assertThat(limiter.getQueueDepth()).isEqualTo(1);
+
+        delayed.get(1, TimeUnit.SECONDS);
+        assertThat(limiter.getQueueDepth()).isZero();
+        assertThat(limiter.getDelayedRequests()).isEqualTo(1);
+        assertThat(limiter.getMaxWaitNanos()).isPositive();
+    }
+
+    @Test
+    void testBucketsAreSeparatePerDevIdAndEndpoint() {
+        var limiter = new RateLimiter(Map.of("/activity", new RateLimiter.Limit(1, 1)), null, scheduler);
+
+        assertThat(limiter.acquire("dev", "/activity", null)).isDone();
+        assertThat(limiter.acquire("other-dev", "/activity", null)).isDone();
+        assertThat(limiter.acquire("dev", "/sleep", null)).isDone();
+        assertThat(limiter.acquire("dev", "/activity", null)).isNotDone();
+    }
+
+    @Test
+    void testProviderLimitAppliesOnlyWhenProviderIsKnown() {
+        var limiter = new RateLimiter(Map.of(), new RateLimiter.Limit(1, 1), scheduler);
+
+        assertThat(limiter.acquire("dev", "/activity", "FITBIT")).isDone();
+        assertThat(limiter.acquire("dev", "/sleep", "GARMIN")).isDone();
+        assertThat(limiter.acquire("dev", "/sleep", null)).isDone();
+        assertThat(limiter.acquire("dev", "/sleep", "FITBIT")).isNotDone();
+    }
+
+    @Test
+    void testCancelledRequestDoesNotTakeProviderToken() throws Exception {
+        var now = new AtomicLong();
+        var limiter = new RateLimiter(Map.of("/activity", new RateLimiter.Limit(10, 10)), new RateLimiter.Limit(10, 1),
+                scheduler, now::get);
+
+        assertThat(limiter.acquire("dev", "/activity", "FITBIT")).isDone();
+        // Passes the endpoint bucket at once and waits on the provider bucket
+        var cancelled = limiter.acquire("dev", "/activity", "FITBIT");
+        cancelled.cancel(false);
+        var next = limiter.acquire("dev", "/sleep", "FITBIT");
+
+        // Only one more provider token ever becomes available, which must go to the request still waiting
+        now.set(TimeUnit.MILLISECONDS.toNanos(100));
+        next.get(1, TimeUnit.SECONDS);
+        assertThat(limiter.getQueueDepth()).isZero();
+    }
+
+    @Test
+    void testWaitersFailOnceSchedulerIsShutDown() {
+        var limiter = new RateLimiter(Map.of("/activity", new RateLimiter.Limit(0.1, 1)), null, scheduler);
+
+        assertThat(limiter.acquire("dev", "/activity", null)).isDone();
+        var queued = limiter.acquire("dev", "/activity", null);
+        limiter.failWaiters(new IllegalStateException("shut down"));
+        assertThatThrownBy(queued::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+
+        scheduler.shutdownNow();
+        assertThatThrownBy(() -> limiter.acquire("dev", "/activity", null).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(limiter.getQueueDepth()).isZero();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.TerraApiResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TestResponseCache {
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Supplier<CompletableFuture<TerraApiResponse<Object>>> loader(boolean successful) {
+        return () -> {
+            loads.incrementAndGet();
+            @SuppressWarnings("unchecked")
+            TerraApiResponse<Object> response = mock(TerraApiResponse.class);
+            when(response.isSuccessful()).thenReturn(successful);
+            return CompletableFuture.completedFuture(response);
+        };
+    }
+
+    @Test
+    void testHitReturnsSameResponseUntilExpiry() throws Exception {
+        var cache = new ResponseCache(Map.of("/userInfo", Duration.ofSeconds(10)), 10, clock::get);
+
+        var first = cache.get("/userInfo", "a", loader(true)).get();
+        assertThat(cache.get("/userInfo", "a", loader(true)).get()).isSameAs(first);
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertThat(cache.get("/userInfo", "a", loader(true)).get()).isNotSameAs(first);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testCallerCannotReplaceCachedResponse() throws Exception {
+        var cache = new ResponseCache(Map.of("/userInfo", Duration.ofSeconds(10)), 10, clock::get);
+
+        var first = cache.get("/userInfo", "a", loader(true)).get();
+        cache.get("/userInfo", "a", loader(true)).obtrudeValue(null);
+        assertThat(cache.get("/userInfo", "a", loader(true)).get()).isSameAs(first);
+    }
+
+    @Test
+    void testHitNearExpiryRefreshesInBackground() throws Exception {
+        var cache = new ResponseCache(Map.of("/userInfo", Duration.ofSeconds(10)), 10, clock::get);
+
+        var first = cache.get("/userInfo", "a", loader(true)).get();
+        clock.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertThat(cache.get("/userInfo", "a", loader(true)).get()).isSameAs(first);
+        assertThat(loads.get()).isEqualTo(2);
+
+        // The refreshed response replaces the old one with a new time-to-live
+        clock.addAndGet(Duration.ofSeconds(5).toNanos());
+        var refreshed = cache.get("/userInfo", "a", loader(true)).get();
+        assertThat(refreshed).isNotSameAs(first);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testUnsuccessfulAndUncachedEndpointsAreNotCached() throws Exception {
+        var cache = new ResponseCache(Map.of("/userInfo", Duration.ofSeconds(10)), 10, clock::get);
+
+        cache.get("/userInfo", "a", loader(false)).get();
+        cache.get("/userInfo", "a", loader(false)).get();
+        cache.get("/integrations", "b", loader(true)).get();
+        cache.get("/integrations", "b", loader(true)).get();
+        assertThat(loads.get()).isEqualTo(4);
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        var cache = new ResponseCache(Map.of("/userInfo", Duration.ofSeconds(10)), 2, clock::get);
+
+        cache.get("/userInfo", "a", loader(true)).get();
+        cache.get("/userInfo", "b", loader(true)).get();
+        cache.get("/userInfo", "a", loader(true)).get();
+        cache.get("/userInfo", "c", loader(true)).get();
+        assertThat(loads.get()).isEqualTo(3);
+
+        cache.get("/userInfo", "a", loader(true)).get();
+        assertThat(loads.get()).isEqualTo(3);
+        cache.get("/userInfo", "b", loader(true)).get();
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    @Test
+    void testInvalidateIfOnlyRemovesMatchingKeys() throws Exception {
+        var cache = new ResponseCache(Map.of("/userInfo", Duration.ofSeconds(10)), 10, clock::get);
+
+        var kept = cache.get("/userInfo", "a", loader(true)).get();
+        cache.get("/userInfo", "b", loader(true)).get();
+        cache.invalidateIf("b"::equals);
+        assertThat(cache.get("/userInfo", "a", loader(true)).get()).isSameAs(kept);
+        cache.get("/userInfo", "b", loader(true)).get();
+        assertThat(loads.get()).isEqualTo(3);
+    }
+}
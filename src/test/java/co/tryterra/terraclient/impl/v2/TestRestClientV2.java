@@ -0,0 +1,569 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.RequestConfig;
+import co.tryterra.terraclient.exceptions.CircuitOpenException;
+import co.tryterra.terraclient.exceptions.DeadlineExceededException;
+import co.tryterra.terraclient.impl.PartialUserImpl;
+import co.tryterra.terraclient.impl.UserImpl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSink;
+import okio.Okio;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TestRestClientV2 {
+    private static final String ACTIVITY_BODY = "{\"status\":\"success\",\"type\":\"activity\",\"data\":["
+            + "{\"metadata\":{\"summary_id\":\"a\",\"start_time\":\"2022-01-01T00:00:00+00:00\"}},"
+            + "{\"metadata\":{\"summary_id\":\"b\",\"start_time\":\"2022-01-02T00:00:00+00:00\"}}"
+            + "],\"user\":{\"user_id\":\"foo\",\"provider\":\"GARMIN\",\"last_webhook_update\":null,"
+            + "\"scopes\":null,\"reference_id\":null}}";
+
+    private MockWebServer server;
+    private RestClientV2 restClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        restClient = new RestClientV2("key", "dev", server.url("/v2").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void testGetActivityParsesDataInBothParseModes() throws Exception {
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY));
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY));
+        var user = new PartialUserImpl("foo");
+
+        for (var mode : RequestConfig.ParseMode.values()) {
+            var config = RequestConfig.builder().parseMode(mode).build();
+            var response = restClient.getActivityForUser(user, Instant.EPOCH, null, config).get();
+            assertThat(response.getParsedData())
+                    .extracting(a -> a.getMetadata().getSummaryId())
+                    .containsExactly("a", "b");
+            assertThat(response.getUser().getProvider()).isEqualTo("GARMIN");
+            assertThat(response.getType()).isEqualTo("activity");
+        }
+    }
+
+    @Test
+    void testStreamActivityReadsItemsLazily() throws Exception {
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY));
+        var config = RequestConfig.builder().build();
+
+        try (var stream = restClient.streamActivityForUser(
+                new PartialUserImpl("foo"), Instant.EPOCH, null, config).get()) {
+            assertThat(stream.isSuccessful()).isTrue();
+            assertThat(stream.next().getMetadata().getSummaryId()).isEqualTo("a");
+            assertThat(stream.getUser()).isNull();
+            assertThat(stream.next().getMetadata().getSummaryId()).isEqualTo("b");
+            assertThat(stream.hasNext()).isFalse();
+            assertThat(stream.getUser().getId()).isEqualTo("foo");
+        }
+    }
+
+    @Test
+    void testStreamActivityIsEmptyForUnsuccessfulResponse() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404).setBody("{\"status\":\"error\",\"message\":\"nope\"}"));
+        var config = RequestConfig.builder().build();
+
+        try (var stream = restClient.streamActivityForUser(
+                new PartialUserImpl("foo"), Instant.EPOCH, null, config).get()) {
+            assertThat(stream.isSuccessful()).isFalse();
+            assertThat(stream.stream().count()).isZero();
+            assertThat(stream.getRawBody().get("message").asText()).isEqualTo("nope");
+        }
+    }
+
+    @Test
+    void testRangeWindowSplitsRequestAndMergesInOrderWithoutDuplicates() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                var start = Long.parseLong(request.getRequestUrl().queryParameter("start_date"));
+                // The second window repeats the item that ends the first window
+                var body = start == 0
+                        ? "{\"type\":\"activity\",\"data\":["
+                                + "{\"metadata\":{\"summary_id\":\"b\",\"start_time\":\"1970-01-05T00:00:00+00:00\"}},"
+                                + "{\"metadata\":{\"summary_id\":\"a\",\"start_time\":\"1970-01-02T00:00:00+00:00\"}}]}"
+                        : "{\"type\":\"activity\",\"data\":["
+                                + "{\"metadata\":{\"summary_id\":\"b\",\"start_time\":\"1970-01-05T00:00:00+00:00\"}},"
+                                + "{\"metadata\":{\"summary_id\":\"c\",\"start_time\":\"1970-01-09T00:00:00+00:00\"}}]}";
+                return new MockResponse().setBody(body);
+            }
+        });
+        var config = RequestConfig.builder()
+                .rangeWindow(Duration.ofDays(7))
+                .maxConcurrentWindows(2)
+                .build();
+
+        var response = restClient.getActivityForUser(
+                new PartialUserImpl("foo"), Instant.EPOCH, Instant.EPOCH.plus(Duration.ofDays(14)), config).get();
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(response.getType()).isEqualTo("activity");
+        assertThat(response.getParsedData())
+                .extracting(a -> a.getMetadata().getSummaryId())
+                .containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void testRangeWindowReturnsFirstUnsuccessfulWindow() throws Exception {
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY));
+        server.enqueue(new MockResponse().setResponseCode(400).setBody("{\"status\":\"error\"}"));
+        var config = RequestConfig.builder()
+                .rangeWindow(Duration.ofDays(1))
+                .maxConcurrentWindows(1)
+                .build();
+
+        var response = restClient.getActivityForUser(
+                new PartialUserImpl("foo"), Instant.EPOCH, Instant.EPOCH.plus(Duration.ofDays(2)), config).get();
+        assertThat(response.isSuccessful()).isFalse();
+        assertThat(response.getResponseCode()).isEqualTo(400);
+    }
+
+    @Test
+    void testAdaptiveRangeWindowBisectsWindowsThatFail() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                var start = Long.parseLong(request.getRequestUrl().queryParameter("start_date"));
+                var end = Long.parseLong(request.getRequestUrl().queryParameter("end_date"));
+                if (end - start > Duration.ofDays(2).getSeconds()) {
+                    return new MockResponse().setResponseCode(503);
+                }
+                return new MockResponse().setBody("{\"type\":\"activity\",\"data\":[{\"metadata\":{\"summary_id\":\""
+                        + start + "\",\"start_time\":\"" + Instant.ofEpochSecond(start) + "\"}}]}");
+            }
+        });
+        var config = RequestConfig.builder()
+                .rangeWindow(Duration.ofDays(4))
+                .adaptiveRangeWindow(Duration.ofDays(1), Duration.ofDays(30))
+                .maxConcurrentWindows(1)
+                .build();
+
+        var response = restClient.getActivityForUser(
+                new PartialUserImpl("foo"), Instant.EPOCH, Instant.EPOCH.plus(Duration.ofDays(4)), config).get();
+        assertThat(server.getRequestCount()).isEqualTo(3);
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(response.getParsedData())
+                .extracting(a -> a.getMetadata().getSummaryId())
+                .containsExactly("0", String.valueOf(Duration.ofDays(2).getSeconds()));
+    }
+
+    @Test
+    void testAdaptiveRangeWindowGrowsWindowsForSmallFastResponses() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody("{\"type\":\"activity\",\"data\":[]}");
+            }
+        });
+        var config = RequestConfig.builder()
+                .rangeWindow(Duration.ofDays(1))
+                .adaptiveRangeWindow(Duration.ofDays(1), Duration.ofDays(30))
+                .targetWindowSize(1024 * 1024, Duration.ofMinutes(1))
+                .maxConcurrentWindows(1)
+                .build();
+
+        var response = restClient.getActivityForUser(
+                new PartialUserImpl("foo"), Instant.EPOCH, Instant.EPOCH.plus(Duration.ofDays(15)), config).get();
+        // Windows of 1, 2, 4 and 8 days
+        assertThat(server.getRequestCount()).isEqualTo(4);
+        assertThat(response.getParsedData()).isEmpty();
+    }
+
+    @Test
+    void testRateLimitedRequestIsRetried() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY));
+        var config = RequestConfig.builder()
+                .maxAttempts(3)
+                .retryBackoff(Duration.ZERO, Duration.ofSeconds(1))
+                .build();
+
+        var response = restClient.getActivityForUser(new PartialUserImpl("foo"), Instant.EPOCH, null, config).get();
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(response.getParsedData()).hasSize(2);
+    }
+
+    @Test
+    void testRequestIsNotRetriedWhenRetryAfterExceedsCap() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "3600"));
+        var config = RequestConfig.builder()
+                .maxAttempts(3)
+                .retryBackoff(Duration.ZERO, Duration.ofSeconds(1))
+                .build();
+
+        var response = restClient.getActivityForUser(new PartialUserImpl("foo"), Instant.EPOCH, null, config).get();
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        assertThat(response.getResponseCode()).isEqualTo(429);
+    }
+
+    @Test
+    void testConcurrentIdenticalRequestsShareOneExchange() throws Exception {
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        var user = new PartialUserImpl("foo");
+        var config = RequestConfig.builder().coalesce(true).build();
+
+        var first = restClient.getActivityForUser(user, Instant.EPOCH, null, config);
+        var second = restClient.getActivityForUser(user, Instant.EPOCH, null, config);
+        assertThat(first.get().getParsedData()).hasSize(2);
+        assertThat(second.get().getParsedData()).isSameAs(first.get().getParsedData());
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        assertThat(restClient.getCoalescedRequests()).isEqualTo(1);
+        // The response is shared, so one caller can't change the data seen by the other
+        assertThatThrownBy(() -> first.get().getParsedData().clear()).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void testContainedRangeIsServedFromWiderInFlightRange() throws Exception {
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        var user = new PartialUserImpl("foo");
+        var config = RequestConfig.builder().toWebhook(false).coalesce(true).build();
+        var start = Instant.parse("2022-01-01T00:00:00Z");
+
+        var wide = restClient.getActivityForUser(user, start, start.plus(Duration.ofDays(7)), config);
+        var narrow = restClient.getActivityForUser(user, start.plus(Duration.ofDays(1)), start.plus(Duration.ofDays(2)), config);
+        assertThat(wide.get().getParsedData()).hasSize(2);
+        assertThat(narrow.get().getParsedData())
+                .extracting(a -> a.getMetadata().getSummaryId())
+                .containsExactly("b");
+        assertThat(narrow.get().getUser().getId()).isEqualTo("foo");
+        assertThatThrownBy(() -> narrow.get().getParsedData().clear()).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(narrow.get().getWireBytes()).isEqualTo(ACTIVITY_BODY.length());
+        assertThat(narrow.get().getDecodedBytes()).isEqualTo(ACTIVITY_BODY.length());
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testCancellingFutureCancelsHttpCall() throws Exception {
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY).setHeadersDelay(2, TimeUnit.SECONDS));
+        var resources = ClientResources.createDefault();
+        var client = new RestClientV2("key", "dev", server.url("/v2").toString(), resources, null);
+        var dispatcher = resources.getHttpClient().dispatcher();
+
+        var future = client.getActivityForUser(new PartialUserImpl("foo"), Instant.EPOCH, null, RequestConfig.builder().build());
+        assertThat(server.takeRequest(1, TimeUnit.SECONDS)).isNotNull();
+        assertThat(dispatcher.runningCallsCount()).isEqualTo(1);
+
+        future.cancel(true);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (dispatcher.runningCallsCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(dispatcher.runningCallsCount()).isZero();
+    }
+
+    @Test
+    void testCancellingOneCoalescedCallerKeepsTheSharedCall() throws Exception {
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        var user = new PartialUserImpl("foo");
+        var config = RequestConfig.builder().coalesce(true).build();
+
+        var first = restClient.getActivityForUser(user, Instant.EPOCH, null, config);
+        var second = restClient.getActivityForUser(user, Instant.EPOCH, null, config);
+        first.cancel(true);
+        assertThat(second.get().getParsedData()).hasSize(2);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testParsePolicyDecidesWhetherParseExecutorIsUsed() throws Exception {
+        var executed = new AtomicInteger();
+        Executor countingExecutor = task -> {
+            executed.incrementAndGet();
+            task.run();
+        };
+        var user = new PartialUserImpl("foo");
+
+        var expectations = Map.of(
+                RequestConfig.ParsePolicy.EXECUTOR, 1,
+                RequestConfig.ParsePolicy.INLINE, 0,
+                RequestConfig.ParsePolicy.SIZE_THRESHOLD, 0
+        );
+        for (var expectation : expectations.entrySet()) {
+            server.enqueue(new MockResponse().setBody(ACTIVITY_BODY));
+            executed.set(0);
+            var config = RequestConfig.builder()
+                    .parsePolicy(expectation.getKey())
+                    .parseExecutor(countingExecutor)
+                    .build();
+            assertThat(restClient.getActivityForUser(user, Instant.EPOCH, null, config).get().getParsedData()).hasSize(2);
+            assertThat(executed.get()).as(expectation.getKey().name()).isEqualTo(expectation.getValue());
+        }
+
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY));
+        executed.set(0);
+        var config = RequestConfig.builder()
+                .parsePolicy(RequestConfig.ParsePolicy.SIZE_THRESHOLD)
+                .inlineParseThreshold(16)
+                .parseExecutor(countingExecutor)
+                .build();
+        assertThat(restClient.getActivityForUser(user, Instant.EPOCH, null, config).get().getParsedData()).hasSize(2);
+        assertThat(executed.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testDeadlineFailsSlowRequest() {
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY).setHeadersDelay(1, TimeUnit.SECONDS));
+        var config = RequestConfig.builder().deadline(Duration.ofMillis(100)).build();
+
+        var future = restClient.getActivityForUser(new PartialUserImpl("foo"), Instant.EPOCH, null, config);
+        assertThatThrownBy(future::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(DeadlineExceededException.class);
+    }
+
+    @Test
+    void testHedgedRequestIsUsedWhenFirstIsSlow() throws Exception {
+        var requests = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                var response = new MockResponse().setBody(ACTIVITY_BODY);
+                if (requests.incrementAndGet() == 1) {
+                    response.setHeadersDelay(1, TimeUnit.SECONDS);
+                }
+                return response;
+            }
+        });
+        var config = RequestConfig.builder().hedge(0.95, Duration.ofMillis(50)).build();
+
+        long startedAt = System.nanoTime();
+        var response = restClient.getActivityForUser(new PartialUserImpl("foo"), Instant.EPOCH, null, config).get();
+        assertThat(response.getParsedData()).hasSize(2);
+        assertThat(System.nanoTime() - startedAt).isLessThan(TimeUnit.MILLISECONDS.toNanos(900));
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(restClient.getHedgedRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void testHedgesFollowRetryBudgetWithoutRetries() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(ACTIVITY_BODY).setHeadersDelay(300, TimeUnit.MILLISECONDS);
+            }
+        });
+        var resources = ClientResources.builder().retryBudget(new RetryBudget(0.5, 0)).build();
+        var client = new RestClientV2("key", "dev", server.url("/v2").toString(), resources, null);
+        var config = RequestConfig.builder().hedge(0.95, Duration.ofMillis(20)).maxAttempts(1).build();
+
+        var futures = new ArrayList<CompletableFuture<?>>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(client.getActivityForUser(new PartialUserImpl("foo"), Instant.EPOCH, null, config));
+        }
+        for (var future : futures) {
+            future.get();
+        }
+        assertThat(client.getHedgedRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void testDeauthenticatingUserOnlyInvalidatesTheirCachedResponses() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                var user = "{\"user_id\":\"foo\",\"provider\":\"GARMIN\",\"last_webhook_update\":null,"
+                        + "\"scopes\":null,\"reference_id\":null}";
+                return new MockResponse().setBody("{\"status\":\"success\",\"users\":[" + user + "],\"user\":" + user + "}");
+            }
+        });
+        var resources = ClientResources.builder()
+                .cacheTtl("/userInfo", Duration.ofMinutes(1))
+                .cacheTtl("/subscriptions", Duration.ofMinutes(1))
+                .build();
+        var client = new RestClientV2("key", "dev", server.url("/v2").toString(), resources, null);
+        client.getUser("foo").get();
+        client.getUser("bar").get();
+        client.getAllUsers().get();
+        assertThat(server.getRequestCount()).isEqualTo(3);
+
+        client.deauthenticateUser(new PartialUserImpl("foo")).get();
+        assertThat(server.getRequestCount()).isEqualTo(4);
+        client.getUser("bar").get();
+        assertThat(server.getRequestCount()).isEqualTo(4);
+        client.getUser("foo").get();
+        client.getAllUsers().get();
+        assertThat(server.getRequestCount()).isEqualTo(6);
+    }
+
+    @Test
+    void testTransportThatThrowsFailsRequestAndGivesBackSlot() throws Exception {
+        var resources = ClientResources.builder()
+                .transport(request -> {
+                    throw new IllegalStateException("boom");
+                })
+                .circuitBreaker(new CircuitBreaker.Config(0.5, 2, 2, Duration.ofSeconds(30)))
+                .adaptiveConcurrencyLimit(new AdaptiveConcurrencyLimiter.Config(1, 1, 1))
+                .build();
+        var client = new RestClientV2("key", "dev", server.url("/v2").toString(), resources, null);
+        var user = new UserImpl(null, "foo", "GARMIN", null, null, null);
+
+        for (int i = 0; i < 3; i++) {
+            var future = client.getActivityForUser(user, Instant.EPOCH, null, RequestConfig.builder().build());
+            assertThatThrownBy(() -> future.get(1, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+        }
+        assertThat(resources.getConcurrencyLimiter().getInFlight()).isZero();
+    }
+
+    @Test
+    void testWarmUpOpensConnectionsWithoutAuthentication() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        restClient.warmUp(2).get();
+        for (int i = 0; i < 2; i++) {
+            var request = server.takeRequest(1, TimeUnit.SECONDS);
+            assertThat(request.getMethod()).isEqualTo("HEAD");
+            assertThat(request.getPath()).isEqualTo("/v2");
+            assertThat(request.getHeader("X-API-Key")).isNull();
+        }
+    }
+
+    @Test
+    void testGzipResponseIsDecodedWhileParsingAndCounted() throws Exception {
+        var encoded = new Buffer();
+        try (var sink = Okio.buffer(new GzipSink(encoded))) {
+            sink.writeUtf8(ACTIVITY_BODY);
+        }
+        long wireSize = encoded.size();
+        server.enqueue(new MockResponse().setBody(encoded.clone()).addHeader("Content-Encoding", "gzip"));
+        server.enqueue(new MockResponse().setBody(encoded.clone()).addHeader("Content-Encoding", "gzip"));
+        var user = new PartialUserImpl("foo");
+
+        for (var mode : RequestConfig.ParseMode.values()) {
+            var config = RequestConfig.builder().parseMode(mode).build();
+            var response = restClient.getActivityForUser(user, Instant.EPOCH, null, config).get();
+            assertThat(response.getParsedData()).hasSize(2);
+            assertThat(response.getWireBytes()).isEqualTo(wireSize);
+            assertThat(response.getDecodedBytes()).isEqualTo(ACTIVITY_BODY.length());
+        }
+        assertThat(server.takeRequest().getHeader("Accept-Encoding")).isEqualTo("gzip");
+
+        var stats = new ClientStatsImpl(restClient);
+        assertThat(stats.getWireBytesByEndpoint()).containsEntry("/activity", 2 * wireSize);
+        assertThat(stats.getDecodedBytesByEndpoint()).containsEntry("/activity", 2L * ACTIVITY_BODY.length());
+    }
+
+    @Test
+    void testShutdownDrainsRequestsInFlightThenRejectsNewOnes() throws Exception {
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY).setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        var resources = ClientResources.createDefault();
+        var client = new RestClientV2("key", "dev", server.url("/v2").toString(), resources, null);
+        var config = RequestConfig.builder().build();
+
+        var inFlight = client.getActivityForUser(new PartialUserImpl("foo"), Instant.EPOCH, null, config);
+        assertThat(server.takeRequest(1, TimeUnit.SECONDS)).isNotNull();
+
+        assertThat(client.shutdown(Duration.ofSeconds(5))).isTrue();
+        assertThat(inFlight).isCompleted();
+        assertThat(inFlight.get().getParsedData()).hasSize(2);
+        assertThat(resources.isShutdown()).isTrue();
+        assertThat(resources.getExecutorService().isShutdown()).isTrue();
+        assertThatThrownBy(() -> client.getActivityForUser(new PartialUserImpl("foo"), Instant.EPOCH, null, config).get())
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testShutdownFailsRequestsThatDoNotDrainInTime() throws Exception {
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY));
+        var resources = ClientResources.builder()
+                .endpointRateLimit("/activity", new RateLimiter.Limit(0.1, 1))
+                .build();
+        var client = new RestClientV2("key", "dev", server.url("/v2").toString(), resources, null);
+        var config = RequestConfig.builder().build();
+
+        client.getActivityForUser(new PartialUserImpl("foo"), Instant.EPOCH, null, config).get();
+        var waiting = client.getActivityForUser(new PartialUserImpl("foo"), Instant.EPOCH, null, config);
+        assertThat(client.shutdown(Duration.ofMillis(100))).isFalse();
+        assertThatThrownBy(() -> waiting.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(resources.getRateLimiter().getQueueDepth()).isZero();
+    }
+
+    @Test
+    void testSharedResourcesOutliveAllButTheLastClient() {
+        var resources = ClientResources.createDefault();
+        var first = new RestClientV2("key", "dev", server.url("/v2").toString(), resources, null);
+        var second = new RestClientV2("key", "dev", server.url("/v2").toString(), resources, null);
+
+        assertThat(first.shutdown(Duration.ZERO)).isTrue();
+        assertThat(resources.isShutdown()).isFalse();
+        assertThat(second.shutdown(Duration.ZERO)).isTrue();
+        assertThat(resources.isShutdown()).isTrue();
+        assertThatThrownBy(() -> new RestClientV2("key", "dev", server.url("/v2").toString(), resources, null))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testFailuresForOneProviderLeaveOtherCircuitsClosed() throws Exception {
+        var resources = ClientResources.builder()
+                .circuitBreaker(new CircuitBreaker.Config(0.5, 2, 2, Duration.ofSeconds(30)))
+                .build();
+        var client = new RestClientV2("key", "dev", server.url("/v2").toString(), resources, null);
+        var garmin = new UserImpl(null, "foo", "GARMIN", null, null, null);
+        var fitbit = new UserImpl(null, "bar", "FITBIT", null, null, null);
+        var config = RequestConfig.builder().build();
+
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY));
+        server.enqueue(new MockResponse().setBody(ACTIVITY_BODY));
+        client.getActivityForUser(garmin, Instant.EPOCH, null, config).get();
+        client.getActivityForUser(garmin, Instant.EPOCH, null, config).get();
+
+        assertThatThrownBy(() -> client.getActivityForUser(garmin, Instant.EPOCH, null, config).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(CircuitOpenException.class);
+        assertThat(client.getActivityForUser(fitbit, Instant.EPOCH, null, config).get().isSuccessful()).isTrue();
+        // Users without a known provider don't share a circuit with anyone
+        assertThat(client.getActivityForUser(new PartialUserImpl("baz"), Instant.EPOCH, null, config).get().isSuccessful()).isTrue();
+        assertThat(server.getRequestCount()).isEqualTo(4);
+        resources.shutdown();
+    }
+}
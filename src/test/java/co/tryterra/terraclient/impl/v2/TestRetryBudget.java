@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.tryterra.terraclient.impl.v2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestRetryBudget {
+    @Test
+    void testRetriesAreLimitedByRatioOfRequests() {
+        var budget = new RetryBudget(0.5, 0, () -> 0L);
+        for (int i = 0; i < 4; i++) {
+            budget.recordRequest();
+        }
+        assertThat(budget.tryAcquireRetry()).isTrue();
+        assertThat(budget.tryAcquireRetry()).isTrue();
+        assertThat(budget.tryAcquireRetry()).isFalse();
+    }
+
+    @Test
+    void testMinimumRetriesAreAllowedWithoutRequests() {
+        var budget = new RetryBudget(0, 1, () -> 0L);
+        for (int i = 0; i < RetryBudget.WINDOW_SECONDS; i++) {
+            assertThat(budget.tryAcquireRetry()).isTrue();
+        }
+        assertThat(budget.tryAcquireRetry()).isFalse();
+    }
+
+    @Test
+    void testBudgetRecoversAfterWindowPasses() {
+        var clock = new AtomicLong(0);
+        var budget = new RetryBudget(1, 0, clock::get);
+        budget.recordRequest();
+        assertThat(budget.tryAcquireRetry()).isTrue();
+        assertThat(budget.tryAcquireRetry()).isFalse();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(RetryBudget.WINDOW_SECONDS));
+        assertThat(budget.tryAcquireRetry()).isFalse();
+        budget.recordRequest();
+        assertThat(budget.tryAcquireRetry()).isTrue();
+    }
+
+    @Test
+    void testBudgetWorksWithNegativeClock() {
+        var clock = new AtomicLong(TimeUnit.SECONDS.toNanos(-25));
+        var budget = new RetryBudget(1, 0, clock::get);
+        budget.recordRequest();
+        assertThat(budget.tryAcquireRetry()).isTrue();
+        assertThat(budget.tryAcquireRetry()).isFalse();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        budget.recordRequest();
+        assertThat(budget.tryAcquireRetry()).isTrue();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(RetryBudget.WINDOW_SECONDS));
+        assertThat(budget.tryAcquireRetry()).isFalse();
+    }
+}
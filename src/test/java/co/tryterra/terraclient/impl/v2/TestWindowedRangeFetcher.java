@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.impl.v2;
+
+import co.tryterra.terraclient.api.TerraApiResponse;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TestWindowedRangeFetcher {
+    private static TerraApiResponse<Object> response(long wireBytes, long decodedBytes) {
+        @SuppressWarnings("unchecked")
+        TerraApiResponse<Object> response = mock(TerraApiResponse.class);
+        when(response.isSuccessful()).thenReturn(true);
+        when(response.getRawBody()).thenReturn(JsonNodeFactory.instance.objectNode());
+        when(response.getWireBytes()).thenReturn(wireBytes);
+        when(response.getDecodedBytes()).thenReturn(decodedBytes);
+        return response;
+    }
+
+    @Test
+    void testWindowsCompletingStraightAwayDoNotGrowTheStack() {
+        @SuppressWarnings("unchecked")
+        TerraApiResponse<Object> response = mock(TerraApiResponse.class);
+        when(response.isSuccessful()).thenReturn(true);
+        when(response.getRawBody()).thenReturn(JsonNodeFactory.instance.objectNode());
+        var fetched = new AtomicInteger();
+        var fetcher = new WindowedRangeFetcher<Object>((start, end) -> {
+            fetched.incrementAndGet();
+            return CompletableFuture.completedFuture(response);
+        }, ItemIdentity.<Object, Object>of(item -> null, metadata -> null, metadata -> null));
+
+        var start = Instant.EPOCH;
+        var merged = fetcher.fetch(start, start.plus(Duration.ofMinutes(100_000)), Duration.ofMinutes(1), 4);
+
+        assertThat(merged).isCompleted();
+        assertThat(fetched).hasValue(100_000);
+    }
+
+    @Test
+    void testMergedResponseReportsBytesOfEveryWindow() {
+        var identity = ItemIdentity.<Object, Object>of(item -> null, metadata -> null, metadata -> null);
+
+        var merged = WindowedRangeFetcher.merge(List.of(response(10, 30), response(20, 50)), identity);
+        assertThat(merged.getWireBytes()).isEqualTo(30);
+        assertThat(merged.getDecodedBytes()).isEqualTo(80);
+
+        var unknown = WindowedRangeFetcher.merge(List.of(response(10, 30), response(-1, -1)), identity);
+        assertThat(unknown.getWireBytes()).isEqualTo(-1);
+        assertThat(unknown.getDecodedBytes()).isEqualTo(-1);
+    }
+}
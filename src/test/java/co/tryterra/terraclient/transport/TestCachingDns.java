@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TestCachingDns {
+    @Test
+    void testAddressesAreCachedUntilTtlPasses() throws Exception {
+        var lookups = new AtomicInteger();
+        var clock = new AtomicLong(0);
+        var address = InetAddress.getByAddress("api.tryterra.co", new byte[]{127, 0, 0, 1});
+        var dns = new CachingDns(hostname -> {
+            lookups.incrementAndGet();
+            return List.of(address);
+        }, Duration.ofSeconds(30), clock::get);
+
+        assertThat(dns.lookup("api.tryterra.co")).containsExactly(address);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(29));
+        assertThat(dns.lookup("api.tryterra.co")).containsExactly(address);
+        assertThat(lookups.get()).isEqualTo(1);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        dns.lookup("api.tryterra.co");
+        assertThat(lookups.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testFailedLookupsAreNotCached() {
+        var lookups = new AtomicInteger();
+        var dns = new CachingDns(hostname -> {
+            lookups.incrementAndGet();
+            throw new UnknownHostException(hostname);
+        }, Duration.ofSeconds(30));
+
+        assertThatThrownBy(() -> dns.lookup("nope")).isInstanceOf(UnknownHostException.class);
+        assertThatThrownBy(() -> dns.lookup("nope")).isInstanceOf(UnknownHostException.class);
+        assertThat(lookups.get()).isEqualTo(2);
+    }
+}
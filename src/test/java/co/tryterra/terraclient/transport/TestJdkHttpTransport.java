@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.transport;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TestJdkHttpTransport {
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void testBothTransportsSendTheSameRequest() throws Exception {
+        var transports = List.of(
+                new OkHttpTransport(),
+                new JdkHttpTransport(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build())
+        );
+        for (var transport : transports) {
+            server.enqueue(new MockResponse().setResponseCode(201).setHeader("Retry-After", "5").setBody("{\"ok\":true}"));
+            var request = TransportRequest.builder()
+                    .url(server.url("/v2/auth/generateWidgetSession?providers=GARMIN").toString())
+                    .header("dev-id", "dev")
+                    .post("body".getBytes(StandardCharsets.UTF_8))
+                    .build();
+
+            try (var response = transport.send(request).get()) {
+                assertThat(response.code()).isEqualTo(201);
+                assertThat(response.isSuccessful()).isTrue();
+                assertThat(response.header("retry-after")).isEqualTo("5");
+                assertThat(response.contentLength()).isEqualTo(11);
+                assertThat(new String(response.body().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"ok\":true}");
+            }
+
+            var recorded = server.takeRequest(1, TimeUnit.SECONDS);
+            assertThat(recorded.getMethod()).isEqualTo("POST");
+            assertThat(recorded.getPath()).isEqualTo("/v2/auth/generateWidgetSession?providers=GARMIN");
+            assertThat(recorded.getHeader("dev-id")).isEqualTo("dev");
+            assertThat(recorded.getBody().readUtf8()).isEqualTo("body");
+        }
+    }
+
+    @Test
+    void testBothTransportsReportTimeoutsAsInterruptedIOException() {
+        var transports = List.of(
+                new OkHttpTransport(),
+                new JdkHttpTransport(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build())
+        );
+        for (var transport : transports) {
+            server.enqueue(new MockResponse().setBody("{}").setHeadersDelay(2, TimeUnit.SECONDS));
+            var request = TransportRequest.builder()
+                    .url(server.url("/v2/activity").toString())
+                    .readTimeout(Duration.ofMillis(100))
+                    .build();
+
+            assertThatThrownBy(() -> transport.send(request).get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(InterruptedIOException.class);
+        }
+    }
+
+    @Test
+    void testRequestKeepsTagsWhenCopied() {
+        var request = TransportRequest.builder()
+                .url("https://api.tryterra.co/v2/activity?user_id=foo")
+                .tag(String.class, "tag")
+                .build();
+        var copy = request.newBuilder().delete().build();
+
+        assertThat(copy.getPath()).isEqualTo("/v2/activity");
+        assertThat(copy.getMethod()).isEqualTo("DELETE");
+        assertThat(copy.<String>getTag(String.class)).isEqualTo("tag");
+        assertThat(request.getMethod()).isEqualTo("GET");
+    }
+}
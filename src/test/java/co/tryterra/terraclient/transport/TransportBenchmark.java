@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 Terra Enabling Developers Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.tryterra.terraclient.transport;
+
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput and latency of the HTTP transports under concurrent load against a local
+ * stub server. This is not run as part of the test suite, run it with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=co.tryterra.terraclient.transport.TransportBenchmark
+ * </pre>
+ * The stub server only speaks HTTP/1.1 over plain text, so this measures the overhead of each
+ * client rather than the benefit of HTTP/2 multiplexing against the real API.
+ * This is a plain load loop rather than a JMH benchmark, as the build does not depend on JMH. Both
+ * transports run in one JVM after a warm-up batch, with no forking or error bounds, so only large
+ * differences between them are meaningful. With JMH available, each transport would be a
+ * {@code @Benchmark} method sending one request, run with {@code @Threads} set to the concurrency.
+ */
+public class TransportBenchmark {
+    private static final int WARMUP_REQUESTS = 2_000;
+    private static final int REQUESTS = 20_000;
+    private static final int CONCURRENCY = 64;
+    private static final String BODY = "{\"status\":\"success\",\"type\":\"activity\",\"data\":[]}";
+
+    public static void main(String[] args) throws Exception {
+        try (var server = new MockWebServer()) {
+            server.setDispatcher(new okhttp3.mockwebserver.Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    return new MockResponse().setBody(BODY);
+                }
+            });
+            server.start();
+            var url = server.url("/v2/activity?user_id=foo").toString();
+
+            var okHttpDispatcher = new Dispatcher();
+            okHttpDispatcher.setMaxRequests(CONCURRENCY);
+            okHttpDispatcher.setMaxRequestsPerHost(CONCURRENCY);
+            var transports = Map.of(
+                    "okhttp", new OkHttpTransport(new OkHttpClient.Builder().dispatcher(okHttpDispatcher).build()),
+                    "jdk", new JdkHttpTransport(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build())
+            );
+
+            for (var entry : transports.entrySet()) {
+                run(entry.getValue(), url, WARMUP_REQUESTS);
+                long startedAt = System.nanoTime();
+                var latencies = run(entry.getValue(), url, REQUESTS);
+                double seconds = (System.nanoTime() - startedAt) / 1e9;
+                Arrays.sort(latencies);
+                System.out.printf("%-8s %8.0f req/s  p50 %6.2fms  p99 %6.2fms%n",
+                        entry.getKey(),
+                        REQUESTS / seconds,
+                        latencies[latencies.length / 2] / 1e6,
+                        latencies[(int) (latencies.length * 0.99)] / 1e6);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static long[] run(HttpTransport transport, String url, int requests) throws InterruptedException {
+        var request = TransportRequest.builder().url(url).header("dev-id", "benchmark").build();
+        var latencies = new long[requests];
+        var permits = new Semaphore(CONCURRENCY);
+        var futures = new CompletableFuture<?>[requests];
+        for (int i = 0; i < requests; i++) {
+            permits.acquire();
+            int index = i;
+            long sentAt = System.nanoTime();
+            futures[i] = transport.send(request).whenComplete((response, ex) -> {
+                if (response != null) {
+                    try (response) {
+                        response.body().readAllBytes();
+                    } catch (IOException ignored) {
+                        // Failed requests are still timed
+                    }
+                }
+                latencies[index] = System.nanoTime() - sentAt;
+                permits.release();
+            });
+        }
+        CompletableFuture.allOf(futures).join();
+        return latencies;
+    }
+}